@@ -0,0 +1,55 @@
+package edu.ncsu.csc.CoffeeMaker.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import edu.ncsu.csc.CoffeeMaker.CoffeeMakerApplication;
+
+/**
+ * Starts the application for a benchmark against its own in-memory H2
+ * database, so that benchmarks neither need nor disturb a MySQL server.
+ */
+final class BenchmarkApplication {
+
+    /**
+     * Not instantiated.
+     */
+    private BenchmarkApplication () {
+    }
+
+    /**
+     * Starts the application on a fresh, empty database. H2 runs in its MySQL
+     * mode and Hibernate keeps the MySQL dialect, so the statements are the
+     * same as in production; among other things, ids still come from the
+     * hibernate_sequence table. Hibernate creates the schema, since the
+     * migrations are written for MySQL, and the default accounts are not
+     * created.
+     *
+     * @param properties
+     *            extra `key=value` properties for this run
+     * @return the running application; close it when done
+     */
+    static ConfigurableApplicationContext start ( final String... properties ) {
+        final List<String> all = new ArrayList<String>( Arrays.asList(
+                "spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID()
+                        + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "spring.datasource.driver-class-name=org.h2.Driver", "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                "spring.jpa.database-platform=org.hibernate.dialect.MySQL5Dialect", "spring.flyway.enabled=false",
+                "spring.jpa.hibernate.ddl-auto=create", "spring.jpa.show-sql=false",
+                "coffeemaker.seed.mode=off", "server.port=0", "logging.level.root=ERROR" ) );
+        all.addAll( Arrays.asList( properties ) );
+        // As arguments rather than default properties, so they win over
+        // application.yml
+        final String[] args = new String[all.size()];
+        for ( int i = 0; i < args.length; i++ ) {
+            args[i] = "--" + all.get( i );
+        }
+        return new SpringApplicationBuilder( CoffeeMakerApplication.class ).run( args );
+    }
+}
@@ -0,0 +1,108 @@
+package edu.ncsu.csc.CoffeeMaker.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import edu.ncsu.csc.CoffeeMaker.controllers.APICoffeeController;
+import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
+import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.services.IngredientService;
+import edu.ncsu.csc.CoffeeMaker.services.RecipeService;
+
+/**
+ * Brews per second through APICoffeeController, with the inventory either in
+ * the database or in the InventoryLedger. The ingredients are stocked deep
+ * enough that no run can empty them.
+ */
+@State ( Scope.Benchmark )
+@BenchmarkMode ( Mode.Throughput )
+@OutputTimeUnit ( TimeUnit.SECONDS )
+@Warmup ( iterations = 3, time = 2 )
+@Measurement ( iterations = 5, time = 2 )
+@Fork ( 1 )
+public class BrewBenchmark {
+
+    /** Whether the in-memory inventory ledger is on */
+    @Param ( { "false", "true" } )
+    public boolean                         ledger;
+
+    /** The running application */
+    private ConfigurableApplicationContext context;
+
+    /** Controller under test */
+    private APICoffeeController            controller;
+
+    /** Recipe being brewed */
+    private Recipe                         recipe;
+
+    /** Journal of the ledger, deleted afterwards */
+    private File                           journal;
+
+    @Setup
+    public void setup () throws IOException {
+        journal = File.createTempFile( "benchmark", ".journal" );
+        context = BenchmarkApplication.start( "coffeemaker.inventory.ledger.enabled=" + ledger,
+                "coffeemaker.inventory.ledger.journal=" + journal.getPath() );
+        controller = context.getBean( APICoffeeController.class );
+
+        final IngredientService ingredients = context.getBean( IngredientService.class );
+        final RecipeService recipes = context.getBean( RecipeService.class );
+        recipe = new Recipe();
+        recipe.setName( "Mocha" );
+        recipe.setPrice( 50 );
+        recipes.save( recipe );
+        for ( final String name : new String[] { "Coffee", "Milk", "Sugar", "Chocolate" } ) {
+            final Ingredient ingredient = new Ingredient( name, Integer.MAX_VALUE );
+            ingredients.save( ingredient );
+            recipe.addIngredient( ingredient, 1 );
+        }
+        recipes.save( recipe );
+    }
+
+    @TearDown
+    public void teardown () {
+        context.close();
+        for ( final File file : journal.getParentFile().listFiles( ( dir, name ) -> name
+                .startsWith( journal.getName() ) ) ) {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    public boolean checkIngredients () {
+        return controller.checkIngredients( recipe );
+    }
+
+    @Benchmark
+    public int makeCoffee () {
+        return controller.makeCoffee( recipe, 100 );
+    }
+
+    /**
+     * Brews from several threads at once, which is where the ledger's lock
+     * stripes and the database's row locks differ most.
+     *
+     * @return change given
+     */
+    @Benchmark
+    @Threads ( 4 )
+    public int makeCoffeeConcurrent () {
+        return controller.makeCoffee( recipe, 100 );
+    }
+}
@@ -0,0 +1,108 @@
+package edu.ncsu.csc.CoffeeMaker.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+
+import edu.ncsu.csc.CoffeeMaker.models.Orders;
+import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.models.Role;
+import edu.ncsu.csc.CoffeeMaker.models.User;
+import edu.ncsu.csc.CoffeeMaker.services.OrdersService;
+import edu.ncsu.csc.CoffeeMaker.services.RecipeService;
+import edu.ncsu.csc.CoffeeMaker.services.RoleService;
+import edu.ncsu.csc.CoffeeMaker.services.UserService;
+
+/**
+ * Latency of loading the first page of a user's order history, and of loading
+ * the user, as the history grows. Neither should depend on its length.
+ */
+@State ( Scope.Benchmark )
+@BenchmarkMode ( Mode.AverageTime )
+@OutputTimeUnit ( TimeUnit.MICROSECONDS )
+@Warmup ( iterations = 3, time = 2 )
+@Measurement ( iterations = 5, time = 2 )
+@Fork ( 1 )
+public class OrderHistoryBenchmark {
+
+    /** Orders saved per transaction while filling the history */
+    private static final int               CHUNK = 1000;
+
+    /** Number of orders the user has placed */
+    @Param ( { "10", "1000", "100000" } )
+    public int                             orders;
+
+    /** The running application */
+    private ConfigurableApplicationContext context;
+
+    /** Service under test */
+    private OrdersService                  ordersService;
+
+    /** Loads the user */
+    private UserService                    userService;
+
+    /** The user whose history is read */
+    private User                           user;
+
+    @Setup
+    public void setup () {
+        context = BenchmarkApplication.start();
+        ordersService = context.getBean( OrdersService.class );
+        userService = context.getBean( UserService.class );
+
+        final Role role = new Role();
+        role.setRoleName( "Customer" );
+        role.setMakeCoffee( true );
+        context.getBean( RoleService.class ).save( role );
+        user = new User( "customer", "" );
+        user.setRole( role );
+        userService.save( user );
+
+        final Recipe recipe = new Recipe();
+        recipe.setName( "Mocha" );
+        recipe.setPrice( 50 );
+        context.getBean( RecipeService.class ).save( recipe );
+
+        for ( int from = 0; from < orders; from += CHUNK ) {
+            final List<Orders> chunk = new ArrayList<Orders>();
+            for ( int i = from; i < Math.min( from + CHUNK, orders ); i++ ) {
+                final Orders order = new Orders( recipe, "Done" );
+                order.setUser( user );
+                order.setAmountPaid( 100 );
+                order.setAmountChange( 50 );
+                chunk.add( order );
+            }
+            ordersService.saveAll( chunk );
+        }
+    }
+
+    @TearDown
+    public void teardown () {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Orders> firstPage () {
+        return ordersService.findByUser( user, 0, 20 );
+    }
+
+    @Benchmark
+    public User findUser () {
+        return userService.findByName( "customer" );
+    }
+}
@@ -0,0 +1,112 @@
+package edu.ncsu.csc.CoffeeMaker.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.stream.JsonWriter;
+
+import edu.ncsu.csc.CoffeeMaker.models.JsonSerializers;
+import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+
+/**
+ * Writing the whole recipe list: building it as one String, as the API used
+ * to, against streaming each recipe into the response, as it does now. The
+ * response is a writer that only counts characters.
+ */
+@State ( Scope.Benchmark )
+@BenchmarkMode ( Mode.AverageTime )
+@OutputTimeUnit ( TimeUnit.MICROSECONDS )
+@Warmup ( iterations = 3, time = 1 )
+@Measurement ( iterations = 5, time = 1 )
+@Fork ( 1 )
+public class RecipeListBenchmark {
+
+    /** Number of recipes in the list */
+    @Param ( { "100", "10000" } )
+    public int           recipes;
+
+    /** The recipes */
+    private List<Recipe> list;
+
+    @Setup
+    public void setup () {
+        list = new ArrayList<Recipe>();
+        for ( int i = 0; i < recipes; i++ ) {
+            list.add( SerializationBenchmark.sampleRecipe( "Recipe " + i ) );
+        }
+    }
+
+    @Benchmark
+    public long buffered () throws IOException {
+        final CountingWriter body = new CountingWriter();
+        body.write( JsonSerializers.DOMAIN.toJson( list ) );
+        return body.count;
+    }
+
+    @Benchmark
+    public long streamed () throws IOException {
+        final CountingWriter body = new CountingWriter();
+        final JsonWriter out = new JsonWriter( body );
+        out.beginArray();
+        for ( final Recipe recipe : list ) {
+            recipe.writeJson( out );
+        }
+        out.endArray();
+        out.flush();
+        return body.count;
+    }
+
+    /**
+     * Stands in for the response body; counts what is written so the work
+     * cannot be optimised away. Like a servlet writer, it overrides every
+     * write method, so none of them pays for Writer's locking and copying.
+     */
+    private static final class CountingWriter extends Writer {
+
+        /** Characters written */
+        private long count;
+
+        @Override
+        public void write ( final char[] buffer, final int offset, final int length ) {
+            count += length;
+        }
+
+        @Override
+        public void write ( final int c ) {
+            count++;
+        }
+
+        @Override
+        public void write ( final String text ) {
+            count += text.length();
+        }
+
+        @Override
+        public void write ( final String text, final int offset, final int length ) {
+            count += length;
+        }
+
+        @Override
+        public void flush () {
+        }
+
+        @Override
+        public void close () {
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package edu.ncsu.csc.CoffeeMaker.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import edu.ncsu.csc.CoffeeMaker.models.Role;
+import edu.ncsu.csc.CoffeeMaker.models.User;
+import edu.ncsu.csc.CoffeeMaker.security.SecurityUtil;
+
+/**
+ * The authority checks every API call makes. Per thread, because the security
+ * context belongs to the thread that set it.
+ */
+@State ( Scope.Thread )
+@BenchmarkMode ( Mode.AverageTime )
+@OutputTimeUnit ( TimeUnit.NANOSECONDS )
+@Warmup ( iterations = 3, time = 1 )
+@Measurement ( iterations = 5, time = 1 )
+@Fork ( 1 )
+public class SecurityBenchmark {
+
+    /** A manager's role, which has every authority */
+    private Role role;
+
+    @Setup
+    public void setup () {
+        role = new Role();
+        role.setRoleName( "Manager" );
+        role.setMakeCoffee( true );
+        role.setAddIngredients( true );
+        role.setAddIngredientType( true );
+        role.setAddStaffAccount( true );
+
+        final User user = new User( "manager", "" );
+        user.setRole( role );
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken( user, null, user.getAuthorities() ) );
+    }
+
+    @TearDown
+    public void teardown () {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public List<SimpleGrantedAuthority> getAuthorities () {
+        return role.getAuthorities();
+    }
+
+    @Benchmark
+    public boolean hasAuthorityGranted () {
+        return SecurityUtil.hasAuthority( "ADD_STAFF_ACCOUNT" );
+    }
+
+    @Benchmark
+    public boolean hasAuthorityDenied () {
+        return SecurityUtil.hasAuthority( "NOT_AN_AUTHORITY" );
+    }
+}
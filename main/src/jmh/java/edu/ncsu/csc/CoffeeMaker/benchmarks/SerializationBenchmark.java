@@ -0,0 +1,91 @@
+package edu.ncsu.csc.CoffeeMaker.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
+import edu.ncsu.csc.CoffeeMaker.models.Orders;
+import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.models.Role;
+import edu.ncsu.csc.CoffeeMaker.models.User;
+
+/**
+ * Time to turn single domain objects into JSON. Add `-prof gc` to the JMH
+ * arguments to also see the bytes allocated per call.
+ */
+@State ( Scope.Benchmark )
+@BenchmarkMode ( Mode.AverageTime )
+@OutputTimeUnit ( TimeUnit.NANOSECONDS )
+@Warmup ( iterations = 3, time = 1 )
+@Measurement ( iterations = 5, time = 1 )
+@Fork ( 1 )
+public class SerializationBenchmark {
+
+    /** A recipe with four ingredients */
+    private Recipe recipe;
+
+    /** A staff member */
+    private User   user;
+
+    /** An order of the recipe by the user */
+    private Orders order;
+
+    @Setup
+    public void setup () {
+        recipe = sampleRecipe( "Mocha" );
+
+        final Role role = new Role();
+        role.setRoleName( "Staff" );
+        role.setMakeCoffee( true );
+        role.setAddIngredients( true );
+        role.setAddIngredientType( true );
+        user = new User( "staff", "$2a$10$abcdefghijklmnopqrstuuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ" );
+        user.setRole( role );
+
+        order = user.orderCoffee( recipe );
+        order.setAmountPaid( 100 );
+        order.setAmountChange( 50 );
+    }
+
+    /**
+     * Builds a recipe with four ingredients, as the API would return it.
+     *
+     * @param name
+     *            name of the recipe
+     * @return the recipe
+     */
+    static Recipe sampleRecipe ( final String name ) {
+        final Recipe recipe = new Recipe();
+        recipe.setName( name );
+        recipe.setPrice( 50 );
+        for ( final String ingredient : new String[] { "Coffee", "Milk", "Sugar", "Chocolate" } ) {
+            recipe.addIngredient( new Ingredient( ingredient, 100 ), 2 );
+        }
+        return recipe;
+    }
+
+    @Benchmark
+    public String recipeToJson () {
+        return recipe.toJson();
+    }
+
+    @Benchmark
+    public String userToJson () {
+        return user.toJson();
+    }
+
+    @Benchmark
+    public String ordersToJson () {
+        return order.toJson();
+    }
+}
@@ -0,0 +1,86 @@
+package edu.ncsu.csc.CoffeeMaker.controllers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import edu.ncsu.csc.CoffeeMaker.models.User;
+import edu.ncsu.csc.CoffeeMaker.security.SecurityUtil;
+import edu.ncsu.csc.CoffeeMaker.security.TokenAuthenticationFilter;
+import edu.ncsu.csc.CoffeeMaker.security.TokenService;
+import edu.ncsu.csc.CoffeeMaker.services.UserService;
+
+/**
+ * Issues and revokes the bearer tokens used for token authentication. A client
+ * asks for a token once, authenticating with HTTP Basic as usual, and then
+ * sends it as `Authorization: Bearer <token>` on every other request.
+ *
+ * Only available when `coffeemaker.security.token-auth.enabled` is set;
+ * otherwise every endpoint here answers 404.
+ */
+@SuppressWarnings ( { "unchecked", "rawtypes" } )
+@RestController
+public class APIAuthController extends APIController {
+
+    /**
+     * UserService object, used to find the user to issue a token for
+     */
+    @Autowired
+    private UserService  userService;
+
+    /**
+     * Issues and checks tokens; null when token authentication is off
+     */
+    @Autowired ( required = false )
+    private TokenService tokens;
+
+    /**
+     * REST API method to issue a bearer token for the logged-in user.
+     *
+     * @return the token and how many milliseconds it lasts, or 404 if token
+     *         authentication is off
+     */
+    @PostMapping ( BASE_PATH + "/auth/token" )
+    public ResponseEntity issueToken () {
+        if ( tokens == null ) {
+            return new ResponseEntity( errorResponse( "Token authentication is not enabled" ), HttpStatus.NOT_FOUND );
+        }
+        final User user = SecurityUtil.getCurrentUser( userService );
+        if ( user == null ) {
+            return new ResponseEntity( errorResponse( "No user logged in" ), HttpStatus.UNAUTHORIZED );
+        }
+        final Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put( "token", tokens.issue( user ) );
+        body.put( "expiresIn", tokens.getTtl() );
+        return new ResponseEntity( toJson( body ), HttpStatus.OK );
+    }
+
+    /**
+     * REST API method to revoke the bearer token the request was made with,
+     * logging that client out.
+     *
+     * @param request
+     *            the request, carrying the token
+     * @return 200 if the token was revoked, 404 if there was none to revoke or
+     *         token authentication is off
+     */
+    @DeleteMapping ( BASE_PATH + "/auth/token" )
+    public ResponseEntity revokeToken ( final HttpServletRequest request ) {
+        if ( tokens == null ) {
+            return new ResponseEntity( errorResponse( "Token authentication is not enabled" ), HttpStatus.NOT_FOUND );
+        }
+        final String token = TokenAuthenticationFilter.getToken( request );
+        if ( token == null || !tokens.revoke( token ) ) {
+            return new ResponseEntity( errorResponse( "No token to revoke" ), HttpStatus.NOT_FOUND );
+        }
+        return new ResponseEntity( successResponse( "Token revoked" ), HttpStatus.OK );
+    }
+}
@@ -1,6 +1,16 @@
 package edu.ncsu.csc.CoffeeMaker.controllers;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -8,17 +18,29 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
+import com.google.gson.JsonParseException;
+
+import edu.ncsu.csc.CoffeeMaker.models.OrderSummary;
 import edu.ncsu.csc.CoffeeMaker.models.Orders;
 import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.models.RecipeSnapshot;
 import edu.ncsu.csc.CoffeeMaker.models.RecipeToIngredient;
 import edu.ncsu.csc.CoffeeMaker.security.SecurityUtil;
+import edu.ncsu.csc.CoffeeMaker.services.AvailabilityIndex;
+import edu.ncsu.csc.CoffeeMaker.services.FulfillmentQueue;
 import edu.ncsu.csc.CoffeeMaker.services.IngredientService;
+import edu.ncsu.csc.CoffeeMaker.services.InventoryLedger;
+import edu.ncsu.csc.CoffeeMaker.services.OrderBatcher;
+import edu.ncsu.csc.CoffeeMaker.services.OrderEventBroadcaster;
 import edu.ncsu.csc.CoffeeMaker.services.OrdersService;
+import edu.ncsu.csc.CoffeeMaker.services.RecipeCatalog;
 import edu.ncsu.csc.CoffeeMaker.services.RecipeService;
 import edu.ncsu.csc.CoffeeMaker.services.UserService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  *
@@ -35,30 +57,96 @@ import edu.ncsu.csc.CoffeeMaker.services.UserService;
 @RestController
 public class APICoffeeController extends APIController {
 
+    /** Most cups one checkout can brew */
+    private static final int      MAX_CART_CUPS = 100;
+
+    /** Seconds a brew waits for its order to be saved */
+    private static final long     SAVE_TIMEOUT  = 30;
+
     /**
      * InventoryService object, to be autowired in by Spring to allow for
      * manipulating the Inventory model
      */
     @Autowired
-    private IngredientService ingrService;
+    private IngredientService     ingrService;
 
     /** UserService object, used for interactions with userservice. **/
     @Autowired
-    private UserService       userService;
+    private UserService           userService;
 
     /**
      * RecipeService object, to be autowired in by Spring to allow for
      * manipulating the Recipe model
      */
     @Autowired
-    private RecipeService     recipeService;
+    private RecipeService         recipeService;
+
+    /**
+     * Cached recipes, so that brewing does not load the recipe and its
+     * ingredients from the database every time
+     */
+    @Autowired
+    private RecipeCatalog         catalog;
+
+    /**
+     * Cups of each recipe the inventory can make, used to turn away brews
+     * that are certain to fail
+     */
+    @Autowired
+    private AvailabilityIndex     availability;
+
+    /**
+     * OrderBatcher object, to be autowired in by Spring to group-commit the
+     * Orders created by each brew
+     */
+    @Autowired
+    private OrderBatcher          orderBatcher;
 
     /**
-     * OrdersService object, to be autowired in by Spring to allow for
-     * manipulating the Orders model
+     * OrdersService object, to save the orders of a checkout together with
+     * its debit
      */
     @Autowired
-    private OrdersService     ordersService;
+    private OrdersService         ordersService;
+
+    /**
+     * Tells open order screens about new orders
+     */
+    @Autowired
+    private OrderEventBroadcaster events;
+
+    /**
+     * In-memory inventory, only present when
+     * `coffeemaker.inventory.ledger.enabled` is set. When it is, brewing
+     * checks and debits the ledger instead of the database.
+     */
+    @Autowired ( required = false )
+    private InventoryLedger       ledger;
+
+    /** Registry the brew counters are kept in */
+    @Autowired
+    private MeterRegistry         registry;
+
+    /** Coffees brewed */
+    private Counter               brews;
+
+    /** Brews turned away because too little was paid */
+    private Counter               paymentRejections;
+
+    /** Brews turned away because the inventory was short */
+    private Counter               inventoryRejections;
+
+    /**
+     * Registers the brew counters.
+     */
+    @PostConstruct
+    public void registerMeters () {
+        brews = Counter.builder( "coffeemaker.brews" ).description( "Coffees brewed" ).register( registry );
+        paymentRejections = Counter.builder( "coffeemaker.brews.rejected" ).description( "Brews turned away" )
+                .tag( "reason", "payment" ).register( registry );
+        inventoryRejections = Counter.builder( "coffeemaker.brews.rejected" ).description( "Brews turned away" )
+                .tag( "reason", "inventory" ).register( registry );
+    }
 
     /**
      * REST API method to make coffee by completing a POST request with the ID
@@ -69,32 +157,228 @@ public class APICoffeeController extends APIController {
      *            recipe name
      * @param amtPaid
      *            amount paid
+     * @param lane
+     *            lane the order waits in for a barista, walk-in if not given
      * @return The change the customer is due if successful
      */
     @PostMapping ( BASE_PATH + "/makecoffee/{name}" )
-    public ResponseEntity makeCoffee ( @PathVariable final String name, @RequestBody final int amtPaid ) {
-        final Recipe recipe = recipeService.findByName( name );
+    public ResponseEntity makeCoffee ( @PathVariable final String name, @RequestBody final int amtPaid,
+            @RequestParam ( required = false ) final String lane ) {
+        final RecipeSnapshot recipe = catalog.findByName( name );
         final var user = SecurityUtil.getCurrentUser( userService );
+        if ( null != lane && !FulfillmentQueue.isLane( lane ) ) {
+            return new ResponseEntity( errorResponse( "No lane named " + lane ), HttpStatus.BAD_REQUEST );
+        }
         if ( recipe == null ) {
             return new ResponseEntity( errorResponse( "No recipe selected" ), HttpStatus.NOT_FOUND );
         }
         else if ( amtPaid < recipe.getPrice() ) {
+            paymentRejections.increment();
             return new ResponseEntity( errorResponse( "Not enough money paid" ), HttpStatus.CONFLICT );
         }
-        if ( !checkIngredients( recipe ) ) {
+        // The guarded debit is what guarantees there is enough stock; the
+        // index just lets us turn sold out recipes away without locking
+        if ( !availability.canBrew( recipe ) || !debit( recipe ) ) {
+            inventoryRejections.increment();
             return new ResponseEntity( errorResponse( "Not enough ingredients in inventory" ), HttpStatus.BAD_REQUEST );
         }
-        final int change = makeCoffee( recipe, amtPaid );
+        final int change = amtPaid - recipe.getPrice();
 
-        final Orders order = user.orderCoffee( recipe );
+        final Orders order = user.orderCoffee( recipeService.getReference( recipe.getId() ) );
         order.setAmountPaid( amtPaid );
         order.setAmountChange( change );
-        ordersService.save( order );
+        if ( null != lane ) {
+            order.setLane( lane );
+        }
+        final CompletableFuture<Orders> saved = orderBatcher.submit( order );
+        // The ingredients were debited in a transaction of their own, so give
+        // them back if the order is never saved. Either way this runs when the
+        // save finishes, even if we stopped waiting for it.
+        saved.whenComplete( ( done, failure ) -> {
+            if ( failure != null ) {
+                refund( recipe );
+                return;
+            }
+            brews.increment();
+            events.publish( "created", new OrderSummary( order.getId(), order.getStatus(), recipe.getName(),
+                    user.getUsername(), order.getAmountPaid(), order.getAmountChange(), order.getTimePlaced() ) );
+        } );
+        try {
+            saved.get( SAVE_TIMEOUT, TimeUnit.SECONDS );
+        }
+        catch ( final ExecutionException e ) {
+            return new ResponseEntity( errorResponse( "Could not save order" ), HttpStatus.INTERNAL_SERVER_ERROR );
+        }
+        catch ( final TimeoutException e ) {
+            return gaveUp( saved, change );
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return gaveUp( saved, change );
+        }
 
         return new ResponseEntity<String>( successResponse( String.valueOf( change ) ), HttpStatus.OK );
 
     }
 
+    /**
+     * Answers a brew whose order was not saved in time. The order is cancelled
+     * if it can be, which gives back its ingredients; if the order is already
+     * being saved it is too late for that, and the client is told the order
+     * was accepted instead, so that it does not brew again.
+     *
+     * @param saved
+     *            the future of the order being saved
+     * @param change
+     *            the change the customer is due
+     * @return the response to the brew
+     */
+    private ResponseEntity gaveUp ( final CompletableFuture<Orders> saved, final int change ) {
+        if ( saved.cancel( false ) || saved.isCompletedExceptionally() ) {
+            return new ResponseEntity( errorResponse( "Could not save order" ), HttpStatus.INTERNAL_SERVER_ERROR );
+        }
+        if ( saved.isDone() ) {
+            return new ResponseEntity<String>( successResponse( String.valueOf( change ) ), HttpStatus.OK );
+        }
+        return new ResponseEntity( successResponse( "Order is still being saved" ), HttpStatus.ACCEPTED );
+    }
+
+    /**
+     * REST API method to brew a whole cart of drinks at once. The body is a
+     * JSON object whose `lines` each name a `recipe`, a `quantity` and the
+     * `amountPaid` for that line, and may name the `lane` the drinks wait in.
+     * The ingredients every cup needs are added up and debited once, and all
+     * of the orders are saved as one batch in the same transaction: either
+     * every drink is brewed or none is.
+     *
+     * @param body
+     *            the cart
+     * @return the change due on each line and the ids of its orders, plus the
+     *         total change, if successful
+     */
+    @PostMapping ( BASE_PATH + "/orders/checkout" )
+    public ResponseEntity checkout ( @RequestBody final String body ) {
+        Cart cart;
+        try {
+            cart = fromJson( body, Cart.class );
+        }
+        catch ( final JsonParseException e ) {
+            cart = null;
+        }
+        if ( null == cart || null == cart.lines || cart.lines.isEmpty() ) {
+            return new ResponseEntity( errorResponse( "No drinks in cart" ), HttpStatus.BAD_REQUEST );
+        }
+        if ( null != cart.lane && !FulfillmentQueue.isLane( cart.lane ) ) {
+            return new ResponseEntity( errorResponse( "No lane named " + cart.lane ), HttpStatus.BAD_REQUEST );
+        }
+
+        final Map<Long, RecipeSnapshot> recipes = new LinkedHashMap<Long, RecipeSnapshot>();
+        final Map<RecipeSnapshot, Integer> cups = new LinkedHashMap<RecipeSnapshot, Integer>();
+        final List<RecipeSnapshot> lineRecipes = new ArrayList<RecipeSnapshot>();
+        int total = 0;
+        for ( final CartLine line : cart.lines ) {
+            if ( null == line || line.quantity < 1 || line.quantity > MAX_CART_CUPS - total ) {
+                return new ResponseEntity( errorResponse( "Each line must have a quantity between 1 and "
+                        + MAX_CART_CUPS + ", and a cart can hold at most " + MAX_CART_CUPS + " cups" ),
+                        HttpStatus.BAD_REQUEST );
+            }
+            total += line.quantity;
+            final RecipeSnapshot found = null == line.recipe ? null : catalog.findByName( line.recipe );
+            if ( null == found ) {
+                return new ResponseEntity( errorResponse( "No recipe found with name " + line.recipe ),
+                        HttpStatus.NOT_FOUND );
+            }
+            if ( line.amountPaid < (long) found.getPrice() * line.quantity ) {
+                paymentRejections.increment();
+                return new ResponseEntity( errorResponse( "Not enough money paid for " + found.getName() ),
+                        HttpStatus.CONFLICT );
+            }
+            // Lines for the same recipe share one entry in the demand
+            final RecipeSnapshot recipe = recipes.computeIfAbsent( found.getId(), id -> found );
+            cups.merge( recipe, line.quantity, Integer::sum );
+            lineRecipes.add( recipe );
+        }
+        for ( final RecipeSnapshot recipe : cups.keySet() ) {
+            if ( !availability.canBrew( recipe ) ) {
+                inventoryRejections.increment();
+                return new ResponseEntity( errorResponse( "Not enough ingredients in inventory" ),
+                        HttpStatus.BAD_REQUEST );
+            }
+        }
+        try {
+            RecipeSnapshot.demand( cups );
+        }
+        catch ( final ArithmeticException e ) {
+            // More of an ingredient than an amount can hold; no inventory has
+            // that much
+            inventoryRejections.increment();
+            return new ResponseEntity( errorResponse( "Not enough ingredients in inventory" ),
+                    HttpStatus.BAD_REQUEST );
+        }
+
+        final var user = SecurityUtil.getCurrentUser( userService );
+        final List<Orders> orders = new ArrayList<Orders>( total );
+        final CheckoutResult result = new CheckoutResult();
+        for ( int i = 0; i < cart.lines.size(); i++ ) {
+            final CartLine line = cart.lines.get( i );
+            final RecipeSnapshot recipe = lineRecipes.get( i );
+            final CheckoutLine done = new CheckoutLine( recipe.getName(), line.quantity,
+                    line.amountPaid - (long) recipe.getPrice() * line.quantity );
+            for ( int cup = 0; cup < line.quantity; cup++ ) {
+                // The line's payment is spread evenly over its cups
+                final Orders order = user.orderCoffee( recipeService.getReference( recipe.getId() ) );
+                order.setAmountPaid( (float) line.amountPaid / line.quantity );
+                order.setAmountChange( (float) done.change / line.quantity );
+                if ( null != cart.lane ) {
+                    order.setLane( cart.lane );
+                }
+                orders.add( order );
+                done.orderList.add( order );
+            }
+            result.lines.add( done );
+            result.change += done.change;
+        }
+
+        if ( ledger != null ) {
+            if ( !ledger.tryDebit( cups ) ) {
+                inventoryRejections.increment();
+                return new ResponseEntity( errorResponse( "Not enough ingredients in inventory" ),
+                        HttpStatus.BAD_REQUEST );
+            }
+            try {
+                ordersService.saveAll( orders );
+            }
+            catch ( final RuntimeException e ) {
+                // Put back what the ledger took for the drinks not brewed
+                ledger.adjust( RecipeSnapshot.demand( cups ) );
+                return new ResponseEntity( errorResponse( "Could not save order" ), HttpStatus.INTERNAL_SERVER_ERROR );
+            }
+        }
+        else {
+            try {
+                ordersService.checkout( cups, orders );
+            }
+            catch ( final IllegalStateException e ) {
+                inventoryRejections.increment();
+                return new ResponseEntity( errorResponse( "Not enough ingredients in inventory" ),
+                        HttpStatus.BAD_REQUEST );
+            }
+            catch ( final RuntimeException e ) {
+                return new ResponseEntity( errorResponse( "Could not save order" ), HttpStatus.INTERNAL_SERVER_ERROR );
+            }
+        }
+        brews.increment( orders.size() );
+
+        for ( final CheckoutLine done : result.lines ) {
+            for ( final Orders order : done.orderList ) {
+                done.orders.add( order.getId() );
+                events.publish( "created", new OrderSummary( order.getId(), order.getStatus(), done.recipe,
+                        user.getUsername(), order.getAmountPaid(), order.getAmountChange(), order.getTimePlaced() ) );
+            }
+        }
+        return new ResponseEntity( toJson( result ), HttpStatus.OK );
+    }
+
     /**
      * Ensure that there's enough of each ingredient in the inventory to make a
      * recipe
@@ -104,6 +388,9 @@ public class APICoffeeController extends APIController {
      * @return true if there's enough ingredients to make a recipe
      */
     public boolean checkIngredients ( final Recipe toPurchase ) {
+        if ( ledger != null ) {
+            return ledger.canBrew( new RecipeSnapshot( toPurchase ) );
+        }
         final List<RecipeToIngredient> ingrList = toPurchase.getRecipeToIngredients();
         for ( final RecipeToIngredient rti : ingrList ) {
             if ( rti.getCount() > rti.getIngredient().getAmount() ) {
@@ -114,29 +401,132 @@ public class APICoffeeController extends APIController {
     }
 
     /**
-     * Helper method to make coffee
+     * Helper method to make coffee. All of the recipe's ingredients are debited
+     * from the inventory atomically; if any of them is short, nothing is
+     * debited.
      *
      * @param toPurchase
      *            recipe that we want to make
      * @param amtPaid
      *            money that the user has given the machine
-     * @return change if there was enough money to make the coffee, throws
-     *         exceptions if not
+     * @return change if there was enough money to make the coffee, or the full
+     *         amount paid if there were not enough ingredients
      */
     public int makeCoffee ( final Recipe toPurchase, final int amtPaid ) {
-        int change = amtPaid;
-        final List<RecipeToIngredient> ingrList = toPurchase.getRecipeToIngredients();
-        for ( final RecipeToIngredient rti : ingrList ) {
-            final Ingredient ingredient = ingrService.findByName( rti.getIngredient().getName() );
-            if ( ingredient.getAmount() >= rti.getCount() ) {
-                ingredient.setAmount( ingredient.getAmount() - rti.getCount() );
-                ingrService.save( ingredient );
-            }
-            else {
-                return change;
-            }
+        if ( !debit( new RecipeSnapshot( toPurchase ) ) ) {
+            return amtPaid;
+        }
+        return amtPaid - toPurchase.getPrice();
+    }
+
+    /**
+     * Removes one cup's worth of a recipe's ingredients from the inventory,
+     * either from the in-memory ledger or straight from the database.
+     *
+     * @param toPurchase
+     *            recipe being brewed
+     * @return true if the ingredients were debited, false if there was not
+     *         enough of one of them
+     */
+    private boolean debit ( final RecipeSnapshot toPurchase ) {
+        if ( ledger != null ) {
+            return ledger.tryDebit( toPurchase );
+        }
+        try {
+            ingrService.debit( toPurchase );
+            return true;
+        }
+        catch ( final IllegalStateException e ) {
+            return false;
+        }
+    }
+
+    /**
+     * Puts back one cup's worth of a recipe's ingredients, taken by debit for
+     * a drink whose order could not be saved.
+     *
+     * @param recipe
+     *            recipe that was not brewed after all
+     */
+    private void refund ( final RecipeSnapshot recipe ) {
+        final Map<RecipeSnapshot, Integer> cup = Collections.singletonMap( recipe, 1 );
+        if ( ledger != null ) {
+            ledger.adjust( RecipeSnapshot.demand( cup ) );
+        }
+        else {
+            ingrService.credit( cup );
+        }
+    }
+
+    /**
+     * A cart sent to checkout.
+     */
+    private static final class Cart {
+        /** What to brew */
+        private List<CartLine> lines;
+
+        /** Lane the drinks wait in, walk-in if not given */
+        private String         lane;
+    }
+
+    /**
+     * One line of a cart.
+     */
+    private static final class CartLine {
+        /** Name of the recipe */
+        private String recipe;
+
+        /** Number of cups */
+        private int    quantity;
+
+        /** Money paid for all of the cups */
+        private int    amountPaid;
+    }
+
+    /**
+     * Outcome of a checkout, sent back as its response.
+     */
+    private static final class CheckoutResult {
+        /** Each line of the cart, in order */
+        private final List<CheckoutLine> lines = new ArrayList<CheckoutLine>();
+
+        /** Change due for the whole cart */
+        private long                     change;
+    }
+
+    /**
+     * Outcome of one line of a checkout.
+     */
+    private static final class CheckoutLine {
+        /** Name of the recipe */
+        private final String                 recipe;
+
+        /** Number of cups */
+        private final int                    quantity;
+
+        /** Change due for the line */
+        private final long                   change;
+
+        /** Ids of the line's orders */
+        private final List<Long>             orders    = new ArrayList<Long>();
+
+        /** The line's orders, until they have ids */
+        private final transient List<Orders> orderList = new ArrayList<Orders>();
+
+        /**
+         * Records a line of a checkout.
+         *
+         * @param recipe
+         *            name of the recipe
+         * @param quantity
+         *            number of cups
+         * @param change
+         *            change due for the line
+         */
+        private CheckoutLine ( final String recipe, final int quantity, final long change ) {
+            this.recipe = recipe;
+            this.quantity = quantity;
+            this.change = change;
         }
-        change = amtPaid - toPurchase.getPrice();
-        return change;
     }
 }
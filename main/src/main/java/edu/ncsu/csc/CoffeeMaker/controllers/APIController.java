@@ -1,6 +1,19 @@
 package edu.ncsu.csc.CoffeeMaker.controllers;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+
+import edu.ncsu.csc.CoffeeMaker.models.JsonSerializers;
 
 /**
  * Base class for all of the API controllers for manipulating DomainObjects. Add
@@ -30,11 +43,14 @@ public abstract class APIController {
     /** Base path of API */
     static final protected String BASE_PATH = "/api/v1/";
 
+    /** Content type of newline-delimited JSON, one value per line */
+    static final protected String NDJSON    = "application/x-ndjson";
+
     /**
      * Used to serialize data and messages to JSON for transmitting through the
      * REST API
      */
-    static final private Gson     GSON      = new Gson();
+    static final private Gson     GSON      = JsonSerializers.PLAIN;
 
     /**
      * Turns the provided object into JSON
@@ -61,6 +77,130 @@ public abstract class APIController {
         return GSON.toJson( obj, cls );
     }
 
+    /**
+     * Reads an object of the provided class from JSON
+     *
+     * @param <T>
+     *            The type of the object
+     * @param json
+     *            The JSON to read
+     * @param cls
+     *            The class of the object
+     * @return The object, or null if the JSON is empty or `null`
+     * @throws JsonParseException
+     *             if the JSON is not valid or does not fit the class
+     */
+    static final protected <T> T fromJson ( final String json, final Class<T> cls ) {
+        return GSON.fromJson( json, cls );
+    }
+
+    /**
+     * Writes the provided object as JSON straight to a writer, without
+     * building up a String first
+     *
+     * @param obj
+     *            The object to serialize
+     * @param cls
+     *            The class of the object
+     * @param out
+     *            Where to write it
+     */
+    static final protected void toJson ( final Object obj, final Class< ? > cls, final JsonWriter out ) {
+        GSON.toJson( obj, cls, out );
+    }
+
+    /**
+     * Prepares a response for JSON to be written straight into it, rather than
+     * building the whole body up as a String first
+     *
+     * @param response
+     *            The response to write to
+     * @return A writer over the response body
+     * @throws IOException
+     *             if the response cannot be written
+     */
+    static final protected JsonWriter startJsonResponse ( final HttpServletResponse response ) throws IOException {
+        response.setContentType( MediaType.APPLICATION_JSON_VALUE );
+        response.setCharacterEncoding( StandardCharsets.UTF_8.name() );
+        return new JsonWriter( response.getWriter() );
+    }
+
+    /**
+     * Writes a JSON array straight into the response, one item at a time
+     *
+     * @param <T>
+     *            The type of the items
+     * @param response
+     *            The response to write to
+     * @param items
+     *            The items to write
+     * @param writer
+     *            Writes a single item
+     * @throws IOException
+     *             if the response cannot be written
+     */
+    static final protected <T> void writeJsonArray ( final HttpServletResponse response, final Iterable<T> items,
+            final JsonItemWriter<T> writer ) throws IOException {
+        final JsonWriter out = startJsonResponse( response );
+        out.beginArray();
+        for ( final T item : items ) {
+            writer.write( item, out );
+        }
+        out.endArray();
+        out.flush();
+    }
+
+    /**
+     * Writes items straight into the response as newline-delimited JSON, one
+     * item per line, so that a client can process them as they arrive
+     *
+     * @param <T>
+     *            The type of the items
+     * @param response
+     *            The response to write to
+     * @param items
+     *            The items to write
+     * @param writer
+     *            Writes a single item
+     * @throws IOException
+     *             if the response cannot be written
+     */
+    static final protected <T> void writeJsonLines ( final HttpServletResponse response, final Iterable<T> items,
+            final JsonItemWriter<T> writer ) throws IOException {
+        response.setContentType( NDJSON );
+        response.setCharacterEncoding( StandardCharsets.UTF_8.name() );
+        final Writer body = response.getWriter();
+        final JsonWriter out = new JsonWriter( body );
+        // Lenient, so that the writer accepts more than one top-level value
+        out.setLenient( true );
+        for ( final T item : items ) {
+            writer.write( item, out );
+            body.write( '\n' );
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes a message straight into the response, for handlers that write
+     * their own response body
+     *
+     * @param response
+     *            The response to write to
+     * @param status
+     *            The HTTP status to send
+     * @param message
+     *            The message, as built by errorResponse or successResponse
+     * @throws IOException
+     *             if the response cannot be written
+     */
+    static final protected void writeResponse ( final HttpServletResponse response, final HttpStatus status,
+            final String message ) throws IOException {
+        response.setStatus( status.value() );
+        response.setContentType( MediaType.APPLICATION_JSON_VALUE );
+        response.setCharacterEncoding( StandardCharsets.UTF_8.name() );
+        response.getWriter().write( message );
+    }
+
     /**
      * Creates a JSONResponse for sending an error or informational message back
      * to the user.
@@ -99,6 +239,27 @@ public abstract class APIController {
         return responseMessage( "success", message );
     }
 
+    /**
+     * Writes a single item of a JSON array
+     *
+     * @param <T>
+     *            The type of the item
+     */
+    @FunctionalInterface
+    protected interface JsonItemWriter <T> {
+        /**
+         * Writes one item
+         *
+         * @param item
+         *            The item to write
+         * @param out
+         *            Where to write it
+         * @throws IOException
+         *             if writing fails
+         */
+        void write ( T item, JsonWriter out ) throws IOException;
+    }
+
     /**
      * Small class used for creating simple success/error messages to return via
      * the REST API. Contains a status of the action and an message.
@@ -1,13 +1,20 @@
 package edu.ncsu.csc.CoffeeMaker.controllers;
 
 import java.security.Principal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -17,6 +24,7 @@ import org.springframework.web.bind.annotation.RestController;
 import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
 import edu.ncsu.csc.CoffeeMaker.security.SecurityUtil;
 import edu.ncsu.csc.CoffeeMaker.services.IngredientService;
+import edu.ncsu.csc.CoffeeMaker.services.InventoryLedger;
 
 /**
  * This is the controller that holds the REST endpoints that handle CRUD
@@ -35,6 +43,14 @@ public class APIIngredientController extends APIController {
     @Autowired
     private IngredientService ingredientService;
 
+    /**
+     * In-memory inventory, only present when
+     * `coffeemaker.inventory.ledger.enabled` is set. When it is, it owns the
+     * ingredient amounts, so changes must go through it.
+     */
+    @Autowired ( required = false )
+    private InventoryLedger   ledger;
+
     /**
      * REST API method that allows GET access to recipes by name
      *
@@ -68,7 +84,7 @@ public class APIIngredientController extends APIController {
             return new ResponseEntity( HttpStatus.FORBIDDEN );
         }
 
-        if ( null != ingredientService.findByName( ingredient.getName() ) ) {
+        if ( ingredientService.existsByName( ingredient.getName() ) ) {
             return new ResponseEntity( errorResponse( "Ingredient " + ingredient.getName() + " already exists" ),
                     HttpStatus.CONFLICT );
         }
@@ -106,6 +122,9 @@ public class APIIngredientController extends APIController {
             return new ResponseEntity( HttpStatus.NOT_FOUND );
         }
         ingredientService.delete( ingredient );
+        if ( ledger != null ) {
+            ledger.forget( ingredient.getId() );
+        }
         return new ResponseEntity( HttpStatus.OK );
     }
 
@@ -147,8 +166,88 @@ public class APIIngredientController extends APIController {
         if ( null == ingredient ) {
             return new ResponseEntity( HttpStatus.NOT_FOUND );
         }
+        if ( ledger != null ) {
+            ledger.setAmount( ingredient.getId(), count );
+            return new ResponseEntity( HttpStatus.OK );
+        }
         ingredient.setAmount( count );
         ingredientService.save( ingredient );
         return new ResponseEntity( HttpStatus.OK );
     }
+
+    /**
+     * REST API method to provide PATCH access to all ingredients in the system,
+     * adding an amount to any number of ingredients at once. The RequestBody
+     * maps ingredient names to the amount to add (or, if negative, take away).
+     * Either every ingredient is updated or, if any name is unknown or any
+     * amount would drop below zero, none is, so a full restock is a single
+     * request and a single commit.
+     *
+     * @param deltas
+     *            map of ingredient name to the amount to add
+     * @return the response to the request, mapping each updated ingredient to
+     *         its new amount
+     */
+    @PatchMapping ( BASE_PATH + "/ingredients" )
+    public ResponseEntity updateCounts ( @RequestBody final Map<String, Integer> deltas ) {
+        if ( !SecurityUtil.hasAuthority( "ADD_INGREDIENTS" ) ) {
+            return new ResponseEntity( HttpStatus.FORBIDDEN );
+        }
+
+        if ( deltas.containsKey( null ) || deltas.containsValue( null ) ) {
+            return new ResponseEntity( errorResponse( "Every ingredient needs a name and an amount" ),
+                    HttpStatus.BAD_REQUEST );
+        }
+        if ( deltas.isEmpty() ) {
+            return new ResponseEntity( errorResponse( "No ingredients to update" ), HttpStatus.BAD_REQUEST );
+        }
+        try {
+            final Map<String, Integer> amounts = ledger != null ? adjustLedger( deltas )
+                    : ingredientService.adjustAmounts( deltas );
+            return new ResponseEntity( toJson( amounts ), HttpStatus.OK );
+        }
+        catch ( final NoSuchElementException e ) {
+            return new ResponseEntity( errorResponse( e.getMessage() ), HttpStatus.NOT_FOUND );
+        }
+        catch ( final IllegalArgumentException e ) {
+            return new ResponseEntity( errorResponse( e.getMessage() ), HttpStatus.BAD_REQUEST );
+        }
+    }
+
+    /**
+     * Applies a batch of amount changes through the InventoryLedger, which
+     * owns the amounts while it is enabled.
+     *
+     * @param deltas
+     *            map of ingredient name to the amount to add
+     * @return map of ingredient name to its new amount
+     * @throws NoSuchElementException
+     *             if there is no ingredient with one of the names
+     * @throws IllegalArgumentException
+     *             if an ingredient would end up with less than nothing
+     */
+    private Map<String, Integer> adjustLedger ( final Map<String, Integer> deltas ) {
+        final Map<Long, Integer> byId = new HashMap<Long, Integer>();
+        final Map<Long, String> names = new HashMap<Long, String>();
+        for ( final Ingredient ingredient : ingredientService.findByNames( deltas.keySet() ) ) {
+            if ( deltas.containsKey( ingredient.getName() ) ) {
+                byId.put( ingredient.getId(), deltas.get( ingredient.getName() ) );
+                names.put( ingredient.getId(), ingredient.getName() );
+            }
+        }
+        if ( names.size() < deltas.size() ) {
+            final Set<String> missing = new HashSet<String>( deltas.keySet() );
+            missing.removeAll( names.values() );
+            throw new NoSuchElementException( "No ingredient named " + missing.iterator().next() );
+        }
+        final Map<Long, Integer> amounts = ledger.adjust( byId );
+        if ( amounts == null ) {
+            throw new IllegalArgumentException( "Amounts must stay between 0 and " + Integer.MAX_VALUE );
+        }
+        final Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+        for ( final Map.Entry<Long, Integer> a : amounts.entrySet() ) {
+            result.put( names.get( a.getKey() ), a.getValue() );
+        }
+        return result;
+    }
 }
@@ -1,9 +1,15 @@
 package edu.ncsu.csc.CoffeeMaker.controllers;
 
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,9 +17,20 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.google.gson.stream.JsonWriter;
 
+import edu.ncsu.csc.CoffeeMaker.models.OrderSummary;
 import edu.ncsu.csc.CoffeeMaker.models.Orders;
+import edu.ncsu.csc.CoffeeMaker.models.User;
+import edu.ncsu.csc.CoffeeMaker.security.SecurityUtil;
+import edu.ncsu.csc.CoffeeMaker.services.FulfillmentQueue;
+import edu.ncsu.csc.CoffeeMaker.services.OrderClaimer;
+import edu.ncsu.csc.CoffeeMaker.services.OrderEventBroadcaster;
 import edu.ncsu.csc.CoffeeMaker.services.OrdersService;
 import edu.ncsu.csc.CoffeeMaker.services.UserService;
 
@@ -31,27 +48,172 @@ import edu.ncsu.csc.CoffeeMaker.services.UserService;
 @RestController
 public class APIOrderController extends APIController {
 
+    /** Most orders one claim may take */
+    private static final int      MAX_CLAIM = 50;
+
     /**
      * OrderService object, to be autowired in by Spring to allow for
      * manipulating the Order model
      */
     @Autowired
-    private OrdersService service;
+    private OrdersService         service;
 
     /**
      * UserService object used for verifying permissions
      */
     @Autowired
-    private UserService   userService;
+    private UserService           userService;
+
+    /**
+     * Pushes order changes to open order screens
+     */
+    @Autowired
+    private OrderEventBroadcaster events;
+
+    /**
+     * Orders waiting for a barista
+     */
+    @Autowired
+    private FulfillmentQueue      queue;
+
+    /**
+     * Claims waiting orders for baristas on any server
+     */
+    @Autowired
+    private OrderClaimer          claimer;
 
     /**
-     * REST API method to provide GET access to all orders in the system
+     * REST API method to provide GET access to the orders in the system. With
+     * no parameters, every order is returned. If any are given, orders are
+     * filtered and returned oldest first, one page at a time; pass the id of
+     * the last order received as `afterId` to get the next page without the
+     * database having to skip over the earlier ones.
      *
-     * @return JSON representation of all recipes in the system
+     * @param status
+     *            only return orders with this status
+     * @param user
+     *            only return orders placed by this username
+     * @param from
+     *            only return orders placed at or after this time, in
+     *            milliseconds since the epoch
+     * @param to
+     *            only return orders placed before this time, in milliseconds
+     *            since the epoch
+     * @param afterId
+     *            only return orders with a larger id
+     * @param page
+     *            page number, starting at 0
+     * @param size
+     *            number of orders per page, at most 500
+     * @param response
+     *            response to write the orders to
+     * @throws IOException
+     *             if the response cannot be written
      */
     @GetMapping ( BASE_PATH + "/orders" )
-    public ResponseEntity getOrders () {
-        return new ResponseEntity( ordersToJson( service.findAll() ), HttpStatus.OK );
+    public void getOrders ( @RequestParam ( required = false ) final String status,
+            @RequestParam ( required = false ) final String user, @RequestParam ( required = false ) final Long from,
+            @RequestParam ( required = false ) final Long to, @RequestParam ( required = false ) final Long afterId,
+            @RequestParam ( required = false ) final Integer page,
+            @RequestParam ( required = false ) final Integer size, final HttpServletResponse response )
+            throws IOException {
+        if ( status == null && user == null && from == null && to == null && afterId == null && page == null
+                && size == null ) {
+            writeJsonArray( response, service.findAll(), Orders::writeJson );
+            return;
+        }
+        final int pageNum = null == page ? 0 : page;
+        final int pageSize = null == size ? 50 : size;
+        if ( pageNum < 0 || pageSize < 1 || pageSize > 500 ) {
+            writeResponse( response, HttpStatus.BAD_REQUEST, errorResponse( "Invalid page requested" ) );
+            return;
+        }
+        writeJsonArray( response, service.findFiltered( status, user, null == from ? 0 : from,
+                null == to ? Long.MAX_VALUE : to, null == afterId ? 0 : afterId, pageNum, pageSize ),
+                Orders::writeJson );
+    }
+
+    /**
+     * REST API method to stream every order matching the given filters as a
+     * JSON array of order summaries, oldest first. Rows are written to the
+     * response as they are read, so this works for any number of orders.
+     *
+     * @param status
+     *            only return orders with this status
+     * @param user
+     *            only return orders placed by this username
+     * @param from
+     *            only return orders placed at or after this time, in
+     *            milliseconds since the epoch
+     * @param to
+     *            only return orders placed before this time, in milliseconds
+     *            since the epoch
+     * @param response
+     *            response to write the orders to
+     * @throws IOException
+     *             if the response cannot be written
+     */
+    @GetMapping ( BASE_PATH + "/orders/stream" )
+    public void streamOrders ( @RequestParam ( required = false ) final String status,
+            @RequestParam ( required = false ) final String user, @RequestParam ( required = false ) final Long from,
+            @RequestParam ( required = false ) final Long to, final HttpServletResponse response )
+            throws IOException {
+        final JsonWriter out = startJsonResponse( response );
+        out.beginArray();
+        service.streamFiltered( status, user, null == from ? 0 : from, null == to ? Long.MAX_VALUE : to,
+                order -> toJson( order, OrderSummary.class, out ) );
+        out.endArray();
+        out.flush();
+    }
+
+    /**
+     * REST API method to open a stream of server-sent events describing
+     * changes to orders as they happen. Staff hear about every order; anyone
+     * else only hears about their own. Each event's data is a JSON object with
+     * the event `id`, its `type` (created, updated, deleted, or reset when the
+     * client should reload everything) and an `order` summary.
+     *
+     * @param lastEventId
+     *            id of the last event the client saw, sent by the browser when
+     *            it reconnects
+     * @param since
+     *            the same, for clients that cannot set headers
+     * @return the event stream
+     */
+    @GetMapping ( value = BASE_PATH + "/orders/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE )
+    public SseEmitter orderEvents ( @RequestHeader ( value = "Last-Event-ID", required = false ) final Long lastEventId,
+            @RequestParam ( value = "lastEventId", required = false ) final Long since ) {
+        final String user = SecurityUtil.hasAuthority( "ADD_INGREDIENTS" ) ? null : SecurityUtil.getCurrentUsername();
+        return events.subscribe( user, null != lastEventId ? lastEventId : since );
+    }
+
+    /**
+     * REST API method to provide GET access to the logged in user's orders,
+     * newest first, one page at a time
+     *
+     * @param page
+     *            page number, starting at 0
+     * @param size
+     *            number of orders per page, at most 100
+     * @param response
+     *            response to write the orders to
+     * @throws IOException
+     *             if the response cannot be written
+     */
+    @GetMapping ( BASE_PATH + "/users/self/orders" )
+    public void getSelfOrders ( @RequestParam ( defaultValue = "0" ) final int page,
+            @RequestParam ( defaultValue = "20" ) final int size, final HttpServletResponse response )
+            throws IOException {
+        final User user = SecurityUtil.getCurrentUser( userService );
+        if ( user == null ) {
+            writeResponse( response, HttpStatus.NOT_FOUND, errorResponse( "No user logged in" ) );
+            return;
+        }
+        if ( page < 0 || size < 1 || size > 100 ) {
+            writeResponse( response, HttpStatus.BAD_REQUEST, errorResponse( "Invalid page requested" ) );
+            return;
+        }
+        writeJsonArray( response, service.findByUser( user, page, size ), Orders::writeJson );
     }
 
     /**
@@ -83,6 +245,7 @@ public class APIOrderController extends APIController {
     @PostMapping ( BASE_PATH + "/orders" )
     public ResponseEntity createOrder ( @RequestBody final Orders order ) {
         service.save( order );
+        events.publish( "created", order );
         return new ResponseEntity( successResponse( order.getId() + " successfully created" ), HttpStatus.OK );
     }
 
@@ -103,6 +266,7 @@ public class APIOrderController extends APIController {
             return new ResponseEntity( errorResponse( "No order found for id " + id ), HttpStatus.NOT_FOUND );
         }
         service.delete( order );
+        events.publish( "deleted", order );
 
         return new ResponseEntity( successResponse( id + " was deleted successfully" ), HttpStatus.OK );
     }
@@ -132,26 +296,92 @@ public class APIOrderController extends APIController {
         oldOrder.setStatus( newOrder.getStatus() );
 
         service.save( oldOrder );
+        events.publish( "updated", oldOrder );
 
         return new ResponseEntity( successResponse( id + " was updated successfully" ), HttpStatus.OK );
     }
 
     /**
-     * Create a JSON string from a list of orders using the Orders.toJson to
-     * method
+     * REST API method to hand a barista the next order to make. The oldest
+     * order waiting in the given lane, or in the mobile lane and then the
+     * walk-in lane if none is given, is marked Brewing and returned. Staff
+     * only.
      *
-     * @param orders
-     *            the orders to convert
-     * @return a json string
-     */
-    private String ordersToJson ( final List<Orders> orders ) {
-        final StringBuilder sb = new StringBuilder( "[ " );
-        for ( final Orders o : orders ) {
-            sb.append( o.toJson() );
-            sb.append( ", " );
-        }
-        sb.delete( sb.length() - 2, sb.length() );
-        sb.append( " ]" );
-        return sb.toString();
+     * @param lane
+     *            lane to take the order from, optional
+     * @return the order, or NOT_FOUND if no order is waiting
+     */
+    @GetMapping ( BASE_PATH + "/queue/next" )
+    public ResponseEntity nextOrder ( @RequestParam ( required = false ) final String lane ) {
+        if ( !SecurityUtil.hasAuthority( "ADD_INGREDIENTS" ) ) {
+            return new ResponseEntity( HttpStatus.FORBIDDEN );
+        }
+        if ( null != lane && !FulfillmentQueue.isLane( lane ) ) {
+            return new ResponseEntity( errorResponse( "No lane named " + lane ), HttpStatus.BAD_REQUEST );
+        }
+        final Orders order = queue.next( lane );
+        if ( null == order ) {
+            return new ResponseEntity( errorResponse( "No orders waiting" ), HttpStatus.NOT_FOUND );
+        }
+        events.publish( "updated", order );
+        return new ResponseEntity( order.toJson(), HttpStatus.OK );
+    }
+
+    /**
+     * REST API method to see how many orders are waiting in each lane. Staff
+     * only.
+     *
+     * @return the number of waiting orders by lane
+     */
+    @GetMapping ( BASE_PATH + "/queue" )
+    public ResponseEntity getQueue () {
+        if ( !SecurityUtil.hasAuthority( "ADD_INGREDIENTS" ) ) {
+            return new ResponseEntity( HttpStatus.FORBIDDEN );
+        }
+        final Map<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+        for ( final String lane : FulfillmentQueue.LANES ) {
+            sizes.put( lane, queue.size( lane ) );
+        }
+        return new ResponseEntity( toJson( sizes ), HttpStatus.OK );
+    }
+
+    /**
+     * REST API method for a barista station to claim up to `count` waiting
+     * orders at once. The oldest orders in the given lane, or in the mobile
+     * lane and then the walk-in lane if none is given, are marked Brewing and
+     * returned. Any number of stations can claim at the same time without two
+     * of them getting the same order. Staff only.
+     *
+     * @param count
+     *            most orders to claim, 1 by default
+     * @param lane
+     *            lane to claim from, optional
+     * @param response
+     *            response to write the claimed orders, possibly none, to
+     * @throws IOException
+     *             if the response cannot be written
+     */
+    @PostMapping ( BASE_PATH + "/orders/claim" )
+    public void claimOrders ( @RequestParam ( defaultValue = "1" ) final int count,
+            @RequestParam ( required = false ) final String lane, final HttpServletResponse response )
+            throws IOException {
+        if ( !SecurityUtil.hasAuthority( "ADD_INGREDIENTS" ) ) {
+            response.setStatus( HttpStatus.FORBIDDEN.value() );
+            return;
+        }
+        if ( count < 1 || count > MAX_CLAIM ) {
+            writeResponse( response, HttpStatus.BAD_REQUEST,
+                    errorResponse( "Between 1 and " + MAX_CLAIM + " orders can be claimed at once" ) );
+            return;
+        }
+        if ( null != lane && !FulfillmentQueue.isLane( lane ) ) {
+            writeResponse( response, HttpStatus.BAD_REQUEST, errorResponse( "No lane named " + lane ) );
+            return;
+        }
+        final List<Orders> claimed = claimer.claim( lane, count );
+        for ( final Orders order : claimed ) {
+            events.publish( "updated", order );
+        }
+        writeJsonArray( response, claimed, Orders::writeJson );
     }
 }
@@ -1,9 +1,22 @@
 package edu.ncsu.csc.CoffeeMaker.controllers;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -14,11 +27,18 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
 import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
 import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.models.RecipeSnapshot;
 import edu.ncsu.csc.CoffeeMaker.models.RecipeToIngredient;
 import edu.ncsu.csc.CoffeeMaker.security.SecurityUtil;
+import edu.ncsu.csc.CoffeeMaker.services.AvailabilityIndex;
 import edu.ncsu.csc.CoffeeMaker.services.IngredientService;
+import edu.ncsu.csc.CoffeeMaker.services.RecipeCatalog;
 import edu.ncsu.csc.CoffeeMaker.services.RecipeService;
 
 /**
@@ -50,13 +70,125 @@ public class APIRecipeController extends APIController {
     private IngredientService iService;
 
     /**
-     * REST API method to provide GET access to all recipes in the system
+     * Cached recipes, used to answer reads without going to the database
+     */
+    @Autowired
+    private RecipeCatalog     catalog;
+
+    /**
+     * Cups of each recipe the inventory can make
+     */
+    @Autowired
+    private AvailabilityIndex availability;
+
+    /** Most recipes the recipe book holds */
+    @Value ( "${coffeemaker.recipes.capacity:3}" )
+    private int               capacity;
+
+    /** Number of recipe lines an import saves per transaction */
+    @Value ( "${coffeemaker.recipes.import-chunk-size:100}" )
+    private int               importChunkSize;
+
+    /**
+     * REST API method to provide GET access to all recipes in the system. The
+     * recipes are written straight into the response as JSON.
      *
-     * @return JSON representation of all recipes in the system
+     * @param response
+     *            response to write the recipes to
+     * @throws IOException
+     *             if the response cannot be written
      */
     @GetMapping ( BASE_PATH + "/recipes" )
-    public ResponseEntity getRecipes () {
-        return new ResponseEntity( recipesToJSON( service.findAll() ), HttpStatus.OK );
+    public void getRecipes ( final HttpServletResponse response ) throws IOException {
+        writeJsonArray( response, catalog.findAll(), RecipeSnapshot::writeJson );
+    }
+
+    /**
+     * REST API method to export every recipe in the system as
+     * newline-delimited JSON, one recipe per line, in the same form that
+     * importRecipes reads. The recipes are written straight into the
+     * response.
+     *
+     * @param response
+     *            response to write the recipes to
+     * @throws IOException
+     *             if the response cannot be written
+     */
+    @GetMapping ( BASE_PATH + "/recipes/export" )
+    public void exportRecipes ( final HttpServletResponse response ) throws IOException {
+        writeJsonLines( response, catalog.findAll(), RecipeSnapshot::writeJson );
+    }
+
+    /**
+     * REST API method to create many recipes at once from newline-delimited
+     * JSON, one recipe per line in the same form createRecipe takes. The body
+     * is read a line at a time and saved in chunks: each chunk looks up all of
+     * its recipe and ingredient names with one query each and is saved in one
+     * transaction, with its rows inserted in JDBC batches.
+     *
+     * A line that cannot be imported (it is malformed, names a recipe that
+     * already exists or an unknown ingredient, or the recipe book is full) is
+     * skipped and reported with its line number; every other line is still
+     * imported.
+     *
+     * @param request
+     *            the request, whose body holds the recipes
+     * @return how many recipes were imported, and an error for each line that
+     *         was not
+     * @throws IOException
+     *             if the request cannot be read
+     */
+    @PostMapping ( BASE_PATH + "/recipes/import" )
+    public ResponseEntity importRecipes ( final HttpServletRequest request ) throws IOException {
+        if ( !SecurityUtil.hasAuthority( "ADD_INGREDIENTS_TYPE" ) ) {
+            return new ResponseEntity( HttpStatus.FORBIDDEN );
+        }
+
+        final ImportResult result = new ImportResult( (int) Math.max( 0, capacity - service.count() ) );
+        final Map<Integer, Recipe> chunk = new LinkedHashMap<Integer, Recipe>();
+        final BufferedReader in = request.getReader();
+        int number = 0;
+        for ( String line = in.readLine(); line != null; line = in.readLine() ) {
+            number++;
+            if ( line.trim().isEmpty() ) {
+                continue;
+            }
+            Recipe recipe;
+            try {
+                recipe = fromJson( line, Recipe.class );
+            }
+            catch ( final JsonParseException e ) {
+                recipe = null;
+            }
+            if ( recipe == null ) {
+                result.fail( number, "Malformed recipe" );
+                continue;
+            }
+            chunk.put( number, recipe );
+            if ( chunk.size() >= importChunkSize ) {
+                importChunk( chunk, result );
+                chunk.clear();
+            }
+        }
+        if ( !chunk.isEmpty() ) {
+            importChunk( chunk, result );
+        }
+        // Malformed lines are reported as they are read, the rest a chunk
+        // at a time
+        result.errors.sort( ( a, b ) -> Integer.compare( a.line, b.line ) );
+        return new ResponseEntity( toJson( result ), HttpStatus.OK );
+    }
+
+    /**
+     * REST API method to provide GET access to the number of cups of each
+     * recipe the current inventory can make, as a JSON object from recipe name
+     * to cups. Recipes that are sold out are listed with 0.
+     *
+     * @return cups of every recipe
+     */
+    @GetMapping ( BASE_PATH + "/recipes/available" )
+    public ResponseEntity getAvailableRecipes () {
+        return new ResponseEntity( toJson( availability.getAvailable() ), HttpStatus.OK );
     }
 
     /**
@@ -69,7 +201,7 @@ public class APIRecipeController extends APIController {
      */
     @GetMapping ( BASE_PATH + "/recipes/{name}" )
     public ResponseEntity getRecipe ( @PathVariable final String name ) {
-        final Recipe recipe = service.findByName( name );
+        final RecipeSnapshot recipe = catalog.findByName( name );
         return null == recipe
                 ? new ResponseEntity( errorResponse( "No recipe found with name " + name ), HttpStatus.NOT_FOUND )
                 : new ResponseEntity( recipe.toJson(), HttpStatus.OK );
@@ -93,7 +225,7 @@ public class APIRecipeController extends APIController {
             return new ResponseEntity( HttpStatus.FORBIDDEN );
         }
 
-        if ( null != service.findByName( recipe.getName() ) ) {
+        if ( service.existsByName( recipe.getName() ) ) {
             return new ResponseEntity( errorResponse( "Recipe with the name " + recipe.getName() + " already exists" ),
                     HttpStatus.CONFLICT );
         }
@@ -102,7 +234,7 @@ public class APIRecipeController extends APIController {
             return new ResponseEntity( errorResponse( "Recipes must have a name" ), HttpStatus.BAD_REQUEST );
         }
 
-        if ( service.findAll().size() >= 3 ) {
+        if ( service.count() >= capacity ) {
             return new ResponseEntity(
                     errorResponse( "Insufficient space in recipe book for recipe " + recipe.getName() ),
                     HttpStatus.INSUFFICIENT_STORAGE );
@@ -146,35 +278,59 @@ public class APIRecipeController extends APIController {
     }
 
     /**
-     * Edit a recipe
+     * Edit a recipe in place. Its id stays the same, so orders of it are kept,
+     * and only the ingredients that changed are written. Any of the name,
+     * price and ingredient list left out of the body keeps its current value;
+     * an empty ingredient list removes every ingredient.
      *
      * @param name
      *            the name of the recipe to edit
-     * @param recipe
-     *            the new recipe
+     * @param body
+     *            the new recipe, as JSON
      * @param principal
      *            pricipal for recipe
      * @return a response entity
      */
     @PatchMapping ( BASE_PATH + "/recipes/{name}" )
-    public ResponseEntity editRecipe ( @PathVariable final String name, @RequestBody final Recipe recipe,
+    public ResponseEntity editRecipe ( @PathVariable final String name, @RequestBody final String body,
             final Principal principal ) {
         if ( !SecurityUtil.hasAuthority( "ADD_INGREDIENTS_TYPE" ) ) {
             return new ResponseEntity( HttpStatus.FORBIDDEN );
         }
 
-        final Recipe oldRecipe = service.findByName( name );
-        if ( oldRecipe == null ) {
-            return new ResponseEntity( errorResponse( "No recipe found for name " + name ), HttpStatus.NOT_FOUND );
+        final Recipe recipe;
+        try {
+            final JsonObject json = JsonParser.parseString( body ).getAsJsonObject();
+            recipe = fromJson( body, Recipe.class );
+            // A new Recipe starts with an empty list, which would remove
+            // every ingredient
+            if ( !json.has( "ingredients" ) ) {
+                recipe.setIngredients( null );
+            }
         }
-        service.delete( oldRecipe );
+        catch ( final JsonParseException | IllegalStateException e ) {
+            return new ResponseEntity( errorResponse( "Invalid recipe" ), HttpStatus.BAD_REQUEST );
+        }
+
+        if ( null != recipe.getName() && !recipe.getName().isEmpty() && !recipe.getName().equalsIgnoreCase( name )
+                && service.existsByName( recipe.getName() ) ) {
+            return new ResponseEntity( errorResponse( "Recipe with the name " + recipe.getName() + " already exists" ),
+                    HttpStatus.CONFLICT );
+        }
+        if ( null != recipe.getPrice() && recipe.getPrice() < 0 ) {
+            return new ResponseEntity( errorResponse( "Recipe " + name + " must have a price of at least zero" ),
+                    HttpStatus.BAD_REQUEST );
+        }
+
+        final Recipe edited;
         try {
-            saveAPIRecipeToDB( recipe );
+            edited = service.edit( name, recipe );
         }
         catch ( final IllegalArgumentException e ) {
-            service.save( oldRecipe );
-            return new ResponseEntity( errorResponse( "Recipe with unknown ingredient given" ),
-                    HttpStatus.BAD_REQUEST );
+            return new ResponseEntity( errorResponse( e.getMessage() ), HttpStatus.BAD_REQUEST );
+        }
+        if ( null == edited ) {
+            return new ResponseEntity( errorResponse( "No recipe found for name " + name ), HttpStatus.NOT_FOUND );
         }
         return new ResponseEntity( successResponse( name + " was updated successfully" ), HttpStatus.OK );
     }
@@ -205,20 +361,188 @@ public class APIRecipeController extends APIController {
     }
 
     /**
-     * Convert a list of recipes to JSON with the Recipe.toJson() method
+     * Imports one chunk of recipes read by importRecipes. Lines that fail
+     * validation are reported and left out; the rest are saved together.
+     *
+     * @param chunk
+     *            parsed recipes, keyed by line number
+     * @param result
+     *            progress of the whole import, updated with this chunk
+     */
+    private void importChunk ( final Map<Integer, Recipe> chunk, final ImportResult result ) {
+        final Set<String> recipeNames = new HashSet<String>();
+        final Set<String> ingredientNames = new HashSet<String>();
+        for ( final Recipe recipe : chunk.values() ) {
+            recipeNames.add( recipe.getName() );
+            if ( null != recipe.getRecipeToIngredients() ) {
+                for ( final RecipeToIngredient rti : recipe.getRecipeToIngredients() ) {
+                    if ( null != rti && null != rti.getIngredient() ) {
+                        ingredientNames.add( rti.getIngredient().getName() );
+                    }
+                }
+            }
+        }
+        // Names are matched ignoring case, as the database does for single
+        // lookups
+        final Set<String> taken = new HashSet<String>();
+        for ( final Recipe existing : service.findByNames( recipeNames ) ) {
+            taken.add( existing.getName().toLowerCase( Locale.ROOT ) );
+        }
+        taken.addAll( result.names );
+        final Map<String, Ingredient> ingredients = new HashMap<String, Ingredient>();
+        for ( final Ingredient ingredient : iService.findByNames( ingredientNames ) ) {
+            ingredients.put( ingredient.getName().toLowerCase( Locale.ROOT ), ingredient );
+        }
+
+        final List<Recipe> valid = new ArrayList<Recipe>();
+        final List<Integer> lines = new ArrayList<Integer>();
+        for ( final Map.Entry<Integer, Recipe> entry : chunk.entrySet() ) {
+            final Recipe parsed = entry.getValue();
+            final Recipe recipe = new Recipe();
+            final String error = copyImported( parsed, recipe, taken, ingredients );
+            if ( error != null ) {
+                result.fail( entry.getKey(), error );
+            }
+            else if ( result.space <= 0 ) {
+                result.fail( entry.getKey(), "Insufficient space in recipe book for recipe " + parsed.getName() );
+            }
+            else {
+                valid.add( recipe );
+                lines.add( entry.getKey() );
+                taken.add( recipe.getName().toLowerCase( Locale.ROOT ) );
+                result.space--;
+            }
+        }
+        if ( valid.isEmpty() ) {
+            return;
+        }
+        try {
+            service.createAll( valid );
+            for ( final Recipe recipe : valid ) {
+                result.names.add( recipe.getName().toLowerCase( Locale.ROOT ) );
+            }
+            result.imported += valid.size();
+        }
+        catch ( final RuntimeException e ) {
+            // The chunk is rolled back as a whole, so none of its lines made it
+            for ( final Integer line : lines ) {
+                result.fail( line, "Recipe could not be saved" );
+            }
+            result.space += valid.size();
+        }
+    }
+
+    /**
+     * Checks a recipe read by importRecipes and copies it into a new recipe,
+     * with its ingredients resolved to the ones in the database.
      *
-     * @param recipes
-     *            the list of recipes to convert
-     * @return a JSON string for the recipes
-     */
-    private String recipesToJSON ( final List<Recipe> recipes ) {
-        final StringBuilder sb = new StringBuilder( "[ " );
-        for ( final Recipe r : recipes ) {
-            sb.append( r.toJson() );
-            sb.append( ", " );
-        }
-        sb.delete( sb.length() - 2, sb.length() );
-        sb.append( " ]" );
-        return sb.toString();
+     * @param parsed
+     *            the recipe as read
+     * @param recipe
+     *            the recipe to copy it into
+     * @param taken
+     *            names of the recipes that already exist, in lower case
+     * @param ingredients
+     *            the ingredients the chunk uses, keyed by lower-case name
+     * @return why the recipe cannot be imported, or null if it can
+     */
+    private String copyImported ( final Recipe parsed, final Recipe recipe, final Set<String> taken,
+            final Map<String, Ingredient> ingredients ) {
+        if ( null == parsed.getName() || parsed.getName().length() == 0 ) {
+            return "Recipes must have a name";
+        }
+        if ( taken.contains( parsed.getName().toLowerCase( Locale.ROOT ) ) ) {
+            return "Recipe with the name " + parsed.getName() + " already exists";
+        }
+        if ( null == parsed.getPrice() || parsed.getPrice() < 0 ) {
+            return "Recipe " + parsed.getName() + " must have a price of at least zero";
+        }
+        recipe.setName( parsed.getName() );
+        recipe.setPrice( parsed.getPrice() );
+        if ( null == parsed.getRecipeToIngredients() ) {
+            return null;
+        }
+        final Set<Long> used = new HashSet<Long>();
+        for ( final RecipeToIngredient rti : parsed.getRecipeToIngredients() ) {
+            final String name = null == rti || null == rti.getIngredient() ? null : rti.getIngredient().getName();
+            final Ingredient ingredient = null == name ? null : ingredients.get( name.toLowerCase( Locale.ROOT ) );
+            if ( null == ingredient ) {
+                return "Recipe with unknown ingredient given";
+            }
+            if ( !used.add( ingredient.getId() ) ) {
+                return "Recipe " + parsed.getName() + " lists " + ingredient.getName() + " more than once";
+            }
+            // Like addIngredient, ignore ingredients that are not used
+            if ( rti.getCount() > 0 ) {
+                final RecipeToIngredient item = new RecipeToIngredient();
+                item.setIngredient( ingredient );
+                item.setCount( rti.getCount() );
+                recipe.getRecipeToIngredients().add( item );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Outcome of an import, sent back as its response.
+     */
+    private static final class ImportResult {
+        /** Number of recipes imported */
+        private int                         imported;
+
+        /** Lines that could not be imported, in line order once finished */
+        private final List<ImportError>     errors = new ArrayList<ImportError>();
+
+        /** Lower-case names of the recipes imported so far */
+        private final transient Set<String> names  = new HashSet<String>();
+
+        /** How many more recipes the recipe book has room for */
+        private transient int               space;
+
+        /**
+         * Starts an import.
+         *
+         * @param space
+         *            how many more recipes the recipe book has room for
+         */
+        private ImportResult ( final int space ) {
+            this.space = space;
+        }
+
+        /**
+         * Records a line that could not be imported.
+         *
+         * @param line
+         *            line number, counting from 1
+         * @param message
+         *            why it could not be imported
+         */
+        private void fail ( final int line, final String message ) {
+            errors.add( new ImportError( line, message ) );
+        }
+    }
+
+    /**
+     * A line that could not be imported.
+     */
+    private static final class ImportError {
+        /** Line number, counting from 1 */
+        private final int    line;
+
+        /** Why the line could not be imported */
+        private final String message;
+
+        /**
+         * Records a line that could not be imported.
+         *
+         * @param line
+         *            line number
+         * @param message
+         *            why it could not be imported
+         */
+        private ImportError ( final int line, final String message ) {
+            this.line = line;
+            this.message = message;
+        }
     }
 }
@@ -114,7 +114,7 @@ public class APIUserController extends APIController {
     @PostMapping ( BASE_PATH + "/users" )
     public ResponseEntity createUser ( @RequestBody final User user, final Principal principal ) {
 
-        if ( null != userService.findByName( user.getUsername() ) ) {
+        if ( userService.existsByName( user.getUsername() ) ) {
             return new ResponseEntity( errorResponse( "User " + user.getUsername() + " already exists" ),
                     HttpStatus.CONFLICT );
         }
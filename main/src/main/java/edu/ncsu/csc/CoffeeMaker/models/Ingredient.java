@@ -7,8 +7,6 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 
-import com.google.gson.Gson;
-
 /**
  * Ingredient class containing the required functionality.
  *
@@ -123,8 +121,7 @@ public class Ingredient extends DomainObject {
      * @return the json string of the ingredient
      */
     public String toJson () {
-        final Gson gson = new Gson();
-        return gson.toJson( this );
+        return JsonSerializers.PLAIN.toJson( this );
     }
 
 }
@@ -0,0 +1,52 @@
+package edu.ncsu.csc.CoffeeMaker.models;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Shared Gson instances for turning models into JSON. Gson is thread-safe and
+ * caches the reflective adapter it builds for each class, so building one per
+ * call throws that work away every time; everything should serialize through
+ * these instead.
+ */
+public final class JsonSerializers {
+
+    /** Serializes plain objects with no special handling */
+    public static final Gson PLAIN  = new Gson();
+
+    /**
+     * Serializes Orders and Users. Skips the fields that would otherwise walk
+     * back around the Hibernate associations: a user's order history, and a
+     * recipe's ingredient list. A user's orders are therefore never part of
+     * its JSON; they are paged from `/api/v1/users/self/orders` instead.
+     */
+    public static final Gson DOMAIN = new GsonBuilder().setExclusionStrategies( new AssociationExclusion() )
+            .create();
+
+    /**
+     * Not instantiable
+     */
+    private JsonSerializers () {
+    }
+
+    /**
+     * Skips the back-references and unbounded collections hanging off of the
+     * domain models. Source:
+     * https://stackoverflow.com/questions/3340485/how-to-solve-circular-reference-in-json-serializer-caused-by-hibernate-bidirecti
+     */
+    private static final class AssociationExclusion implements ExclusionStrategy {
+
+        @Override
+        public boolean shouldSkipField ( final FieldAttributes f ) {
+            return ( f.getName().equals( "userOrders" ) && f.getDeclaringClass() == User.class )
+                    || ( f.getName().equals( "ingredients" ) && f.getDeclaringClass() == Recipe.class );
+        }
+
+        @Override
+        public boolean shouldSkipClass ( final Class< ? > clazz ) {
+            return false;
+        }
+    }
+}
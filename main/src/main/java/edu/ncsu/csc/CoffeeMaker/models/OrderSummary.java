@@ -0,0 +1,136 @@
+package edu.ncsu.csc.CoffeeMaker.models;
+
+/**
+ * Flat, read-only view of an Order: just the columns a client needs to show
+ * it, without the Recipe and User entity graphs hanging off of it. Queries
+ * can select these directly, so no further queries are needed per row.
+ */
+public class OrderSummary {
+
+    /** Order id */
+    private final Long   id;
+
+    /** Order status */
+    private final String status;
+
+    /** Name of the recipe ordered, null if none */
+    private final String recipe;
+
+    /** Username of the user that placed the order, null if none */
+    private final String user;
+
+    /** Amount the user paid */
+    private final float  amountPaid;
+
+    /** Amount of change the user received */
+    private final float  amountChange;
+
+    /** When the order was placed, in milliseconds since the epoch */
+    private final long   timePlaced;
+
+    /**
+     * Creates a summary from the individual columns. Used by JPQL constructor
+     * expressions.
+     *
+     * @param id
+     *            order id
+     * @param status
+     *            order status
+     * @param recipe
+     *            name of the recipe ordered
+     * @param user
+     *            username of the user that placed the order
+     * @param amountPaid
+     *            amount paid
+     * @param amountChange
+     *            change given
+     * @param timePlaced
+     *            when the order was placed
+     */
+    public OrderSummary ( final Long id, final String status, final String recipe, final String user,
+            final float amountPaid, final float amountChange, final long timePlaced ) {
+        this.id = id;
+        this.status = status;
+        this.recipe = recipe;
+        this.user = user;
+        this.amountPaid = amountPaid;
+        this.amountChange = amountChange;
+        this.timePlaced = timePlaced;
+    }
+
+    /**
+     * Creates a summary of an order.
+     *
+     * @param order
+     *            the order to summarize
+     */
+    public OrderSummary ( final Orders order ) {
+        this( order.getId(), order.getStatus(), null == order.getRecipe() ? null : order.getRecipe().getName(),
+                null == order.getUser() ? null : order.getUser().getUsername(), order.getAmountPaid(),
+                order.getAmountChange(), order.getTimePlaced() );
+    }
+
+    /**
+     * Get the order id
+     *
+     * @return the id
+     */
+    public Long getId () {
+        return id;
+    }
+
+    /**
+     * Get the order status
+     *
+     * @return the status
+     */
+    public String getStatus () {
+        return status;
+    }
+
+    /**
+     * Get the name of the recipe ordered
+     *
+     * @return the recipe name
+     */
+    public String getRecipe () {
+        return recipe;
+    }
+
+    /**
+     * Get the username of the user that placed the order
+     *
+     * @return the username
+     */
+    public String getUser () {
+        return user;
+    }
+
+    /**
+     * Get the amount paid
+     *
+     * @return the amount paid
+     */
+    public float getAmountPaid () {
+        return amountPaid;
+    }
+
+    /**
+     * Get the change given
+     *
+     * @return the change
+     */
+    public float getAmountChange () {
+        return amountChange;
+    }
+
+    /**
+     * Get when the order was placed
+     *
+     * @return milliseconds since the epoch
+     */
+    public long getTimePlaced () {
+        return timePlaced;
+    }
+
+}
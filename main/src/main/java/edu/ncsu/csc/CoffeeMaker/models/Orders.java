@@ -5,13 +5,15 @@ import java.util.Objects;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.PrePersist;
 
-import com.google.gson.ExclusionStrategy;
-import com.google.gson.FieldAttributes;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Model for a User's order.
@@ -22,9 +24,29 @@ import com.google.gson.GsonBuilder;
 @Entity
 public class Orders extends DomainObject {
 
-    /** Order id */
+    /** Status of a new order, waiting for a barista */
+    public static final String STATUS_PREPARING = "Preparing";
+
+    /** Status of an order a barista has taken from the queue */
+    public static final String STATUS_BREWING   = "Brewing";
+
+    /** Lane of orders placed ahead for mobile pickup */
+    public static final String LANE_MOBILE      = "mobile";
+
+    /** Lane of orders placed at the counter; the default */
+    public static final String LANE_WALK_IN     = "walk-in";
+
+    /**
+     * Order id. Ids are handed out from the shared hibernate_sequence in
+     * blocks of 50 so that a batch of new orders does not need a round trip
+     * per row to number them.
+     */
     @Id
-    @GeneratedValue
+    @GeneratedValue ( strategy = GenerationType.SEQUENCE, generator = "orders_id" )
+    @GenericGenerator ( name = "orders_id", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+            parameters = { @Parameter ( name = "sequence_name", value = "hibernate_sequence" ),
+                    @Parameter ( name = "increment_size", value = "50" ),
+                    @Parameter ( name = "optimizer", value = "pooled-lo" ) } )
     private Long   id;
 
     /** Order status */
@@ -44,6 +66,12 @@ public class Orders extends DomainObject {
     /** Amount of amountChange the user recieved */
     private float  amountChange;
 
+    /** When the order was placed, in milliseconds since the epoch */
+    private long   timePlaced;
+
+    /** Lane the order waits in, LANE_MOBILE or LANE_WALK_IN */
+    private String lane = LANE_WALK_IN;
+
     /**
      * Orders constructor, empty.
      */
@@ -86,6 +114,15 @@ public class Orders extends DomainObject {
         this.id = id;
     }
 
+    /**
+     * Forgets the id a save gave the order, after that save was rolled back,
+     * so that saving it again inserts it under a new id rather than merging
+     * it into a row that does not exist
+     */
+    public void clearId () {
+        this.id = null;
+    }
+
     /**
      * retrieve the current recipe in the order
      *
@@ -186,6 +223,48 @@ public class Orders extends DomainObject {
         updateUser();
     }
 
+    /**
+     * Gets when the order was placed
+     *
+     * @return milliseconds since the epoch, 0 if not yet saved
+     */
+    public long getTimePlaced () {
+        return timePlaced;
+    }
+
+    /**
+     * Gets the lane the order waits in
+     *
+     * @return the lane
+     */
+    public String getLane () {
+        return null == lane ? LANE_WALK_IN : lane;
+    }
+
+    /**
+     * Sets the lane the order waits in
+     *
+     * @param lane
+     *            LANE_MOBILE or LANE_WALK_IN
+     */
+    public void setLane ( final String lane ) {
+        this.lane = lane;
+    }
+
+    /**
+     * Stamp the order with the time it was placed, and put it in the walk-in
+     * lane if it was given none (Used by Hibernate)
+     */
+    @PrePersist
+    private void onPlaced () {
+        if ( timePlaced == 0 ) {
+            timePlaced = System.currentTimeMillis();
+        }
+        if ( lane == null ) {
+            lane = LANE_WALK_IN;
+        }
+    }
+
     /**
      * Attempt to update order list of the user that owns this order
      */
@@ -229,23 +308,18 @@ public class Orders extends DomainObject {
      * @return the json string of the ingredient
      */
     public String toJson () {
-        final Gson gson = new GsonBuilder().setExclusionStrategies( new ExclusionStrategy() {
-
-            @Override
-            public boolean shouldSkipField ( final FieldAttributes f ) {
-                // Source:
-                // https://stackoverflow.com/questions/3340485/how-to-solve-circular-reference-in-json-serializer-caused-by-hibernate-bidirecti
-                return ( f.getName().equals( "userOrders" ) && f.getDeclaringClass() == User.class )
-                        || ( f.getName().equals( "ingredients" ) && f.getDeclaringClass() == Recipe.class );
-            }
-
-            @Override
-            public boolean shouldSkipClass ( final Class< ? > clazz ) {
-                return false;
-            }
-
-        } ).create();
-        return gson.toJson( this );
+        return JsonSerializers.DOMAIN.toJson( this );
+    }
+
+    /**
+     * Writes a json representation of the order straight to `out`, in the
+     * same form as toJson
+     *
+     * @param out
+     *            where to write the order
+     */
+    public void writeJson ( final JsonWriter out ) {
+        JsonSerializers.DOMAIN.toJson( this, Orders.class, out );
     }
 
 }
@@ -1,5 +1,8 @@
 package edu.ncsu.csc.CoffeeMaker.models;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -8,10 +11,16 @@ import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
 import javax.validation.constraints.Min;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import com.google.gson.stream.JsonWriter;
+
 /**
  * Recipe for the coffee maker. Recipe is tied to the database using Hibernate
  * libraries. See RecipeRepository and RecipeService for the other two pieces
@@ -22,9 +31,17 @@ import javax.validation.constraints.Min;
 @Entity
 public class Recipe extends DomainObject {
 
-    /** Recipe id */
+    /**
+     * Recipe id. Ids are handed out from the shared hibernate_sequence in
+     * blocks of 50, like order ids, so that a bulk import can insert its
+     * recipes in JDBC batches.
+     */
     @Id
-    @GeneratedValue
+    @GeneratedValue ( strategy = GenerationType.SEQUENCE, generator = "recipe_id" )
+    @GenericGenerator ( name = "recipe_id", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+            parameters = { @Parameter ( name = "sequence_name", value = "hibernate_sequence" ),
+                    @Parameter ( name = "increment_size", value = "50" ),
+                    @Parameter ( name = "optimizer", value = "pooled-lo" ) } )
     private Long                     id;
 
     /** Recipe name */
@@ -173,36 +190,44 @@ public class Recipe extends DomainObject {
     }
 
     /**
-     * GENERATIVE AI WAS USED
-     *
-     * GPT 3.5, prompt: "how to write toJson method without libraries in java"
-     *
-     * AI was used for guidance in writing implementation
-     *
      * Creates a json representation of a Recipe.
      *
      * @return json representation of the recipe
      */
     public String toJson () {
-        final StringBuilder json = new StringBuilder();
-        json.append( "{" );
-        json.append( "\"id\": " ).append( id ).append( "," );
-        json.append( "\"name\": \"" ).append( name ).append( "\"," );
-        json.append( "\"price\": " ).append( price ).append( "," );
-        json.append( "\"ingredients\": [" );
-        for ( int i = 0; i < ingredients.size(); i++ ) {
-            final RecipeToIngredient rti = ingredients.get( i );
-            json.append( "{" );
-            json.append( "\"ingredient\": {" ).append( "\"name\": \"" ).append( rti.getIngredient().getName() )
-                    .append( "\"}," );
-            json.append( "\"count\": " ).append( rti.getCount() );
-            json.append( "}" );
-            if ( i < ingredients.size() - 1 ) {
-                json.append( "," );
-            }
+        final StringWriter json = new StringWriter();
+        try {
+            writeJson( new JsonWriter( json ) );
+        }
+        catch ( final IOException e ) {
+            // A StringWriter never fails
+            throw new UncheckedIOException( e );
         }
-        json.append( "]" );
-        json.append( "}" );
         return json.toString();
     }
+
+    /**
+     * Writes a json representation of a Recipe straight to `out`, escaping
+     * names as needed.
+     *
+     * @param out
+     *            where to write the recipe
+     * @throws IOException
+     *             if writing fails
+     */
+    public void writeJson ( final JsonWriter out ) throws IOException {
+        out.beginObject();
+        out.name( "id" ).value( id );
+        out.name( "name" ).value( name );
+        out.name( "price" ).value( price );
+        out.name( "ingredients" ).beginArray();
+        for ( final RecipeToIngredient rti : ingredients ) {
+            out.beginObject();
+            out.name( "ingredient" ).beginObject().name( "name" ).value( rti.getIngredient().getName() ).endObject();
+            out.name( "count" ).value( rti.getCount() );
+            out.endObject();
+        }
+        out.endArray();
+        out.endObject();
+    }
 }
@@ -0,0 +1,218 @@
+package edu.ncsu.csc.CoffeeMaker.models;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Immutable copy of a Recipe, detached from Hibernate. Safe to cache and to
+ * share between threads; holds everything needed to brew the recipe or show it
+ * on the menu, but not ingredient stock, which changes far more often than the
+ * recipe itself.
+ */
+public final class RecipeSnapshot {
+
+    /** Recipe id */
+    private final Long       id;
+
+    /** Recipe name */
+    private final String     name;
+
+    /** Recipe price */
+    private final int        price;
+
+    /** What goes into one cup, ordered by ingredient id */
+    private final List<Item> ingredients;
+
+    /**
+     * Copies a recipe.
+     *
+     * @param recipe
+     *            the recipe to copy
+     */
+    public RecipeSnapshot ( final Recipe recipe ) {
+        this.id = recipe.getId();
+        this.name = recipe.getName();
+        this.price = null == recipe.getPrice() ? 0 : recipe.getPrice();
+        final List<Item> items = new ArrayList<Item>();
+        for ( final RecipeToIngredient rti : recipe.getRecipeToIngredients() ) {
+            items.add( new Item( rti.getIngredient().getId(), rti.getIngredient().getName(), rti.getCount() ) );
+        }
+        // Always touch ingredients in the same order so that concurrent brews
+        // cannot deadlock on each other's rows
+        items.sort( Comparator.comparing( Item::getIngredientId, Comparator.nullsFirst( Comparator.naturalOrder() ) ) );
+        this.ingredients = Collections.unmodifiableList( items );
+    }
+
+    /**
+     * Get the recipe id
+     *
+     * @return the id
+     */
+    public Long getId () {
+        return id;
+    }
+
+    /**
+     * Get the recipe name
+     *
+     * @return the name
+     */
+    public String getName () {
+        return name;
+    }
+
+    /**
+     * Get the recipe price
+     *
+     * @return the price
+     */
+    public int getPrice () {
+        return price;
+    }
+
+    /**
+     * Get what goes into one cup, ordered by ingredient id
+     *
+     * @return the ingredients, which cannot be modified
+     */
+    public List<Item> getIngredients () {
+        return ingredients;
+    }
+
+    /**
+     * Creates a json representation of the recipe, in the same form as
+     * Recipe.toJson
+     *
+     * @return json representation of the recipe
+     */
+    public String toJson () {
+        final StringWriter json = new StringWriter();
+        try {
+            writeJson( new JsonWriter( json ) );
+        }
+        catch ( final IOException e ) {
+            // A StringWriter never fails
+            throw new UncheckedIOException( e );
+        }
+        return json.toString();
+    }
+
+    /**
+     * Writes a json representation of the recipe straight to `out`, in the
+     * same form as Recipe.writeJson
+     *
+     * @param out
+     *            where to write the recipe
+     * @throws IOException
+     *             if writing fails
+     */
+    public void writeJson ( final JsonWriter out ) throws IOException {
+        out.beginObject();
+        out.name( "id" ).value( id );
+        out.name( "name" ).value( name );
+        out.name( "price" ).value( price );
+        out.name( "ingredients" ).beginArray();
+        for ( final Item item : ingredients ) {
+            out.beginObject();
+            out.name( "ingredient" ).beginObject().name( "name" ).value( item.ingredientName ).endObject();
+            out.name( "count" ).value( item.count );
+            out.endObject();
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    /**
+     * Adds up how much of each ingredient several cups of several recipes
+     * need together.
+     *
+     * @param cups
+     *            number of cups of each recipe
+     * @return map of ingredient id to the total amount needed, in ascending
+     *         id order
+     * @throws ArithmeticException
+     *             if a total does not fit in an int
+     */
+    public static SortedMap<Long, Integer> demand ( final Map<RecipeSnapshot, Integer> cups ) {
+        final SortedMap<Long, Integer> demand = new TreeMap<Long, Integer>();
+        for ( final Map.Entry<RecipeSnapshot, Integer> entry : cups.entrySet() ) {
+            for ( final Item item : entry.getKey().ingredients ) {
+                demand.merge( item.ingredientId, Math.multiplyExact( item.count, entry.getValue() ),
+                        Math::addExact );
+            }
+        }
+        return demand;
+    }
+
+    @Override
+    public String toString () {
+        return "RecipeSnapshot [name=" + name + ", price=" + price + "]";
+    }
+
+    /**
+     * One ingredient of a recipe and how much of it goes into a cup.
+     */
+    public static final class Item {
+        /** Ingredient id */
+        private final Long   ingredientId;
+
+        /** Ingredient name */
+        private final String ingredientName;
+
+        /** Amount per cup */
+        private final int    count;
+
+        /**
+         * Creates an item.
+         *
+         * @param ingredientId
+         *            ingredient id
+         * @param ingredientName
+         *            ingredient name
+         * @param count
+         *            amount per cup
+         */
+        private Item ( final Long ingredientId, final String ingredientName, final int count ) {
+            this.ingredientId = ingredientId;
+            this.ingredientName = ingredientName;
+            this.count = count;
+        }
+
+        /**
+         * Get the ingredient id
+         *
+         * @return the id
+         */
+        public Long getIngredientId () {
+            return ingredientId;
+        }
+
+        /**
+         * Get the ingredient name
+         *
+         * @return the name
+         */
+        public String getIngredientName () {
+            return ingredientName;
+        }
+
+        /**
+         * Get the amount that goes into one cup
+         *
+         * @return the amount
+         */
+        public int getCount () {
+            return count;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package edu.ncsu.csc.CoffeeMaker.models;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 import javax.persistence.Entity;
@@ -19,22 +21,29 @@ public class Role extends DomainObject {
     /** Role id */
     @Id
     @GeneratedValue
-    private Long    roleID;
+    private Long                                            roleID;
 
     /** Name of the Role **/
-    private String  roleName;
+    private String                                          roleName;
 
     /** If the Role can make coffee **/
-    private boolean makeCoffee;
+    private boolean                                         makeCoffee;
 
     /** If the Role can add ingredients **/
-    private boolean addIngredients;
+    private boolean                                         addIngredients;
 
     /** If the Role can add ingredient type **/
-    private boolean addIngredientType;
+    private boolean                                         addIngredientType;
 
     /** If the Role can add staff accounts **/
-    private boolean addStaffAccount;
+    private boolean                                         addStaffAccount;
+
+    /**
+     * Authorities granted by this Role, worked out on first use and dropped
+     * whenever a permission changes. Roles are shared between requests by the
+     * PrincipalCache, so this is volatile and never modified once built.
+     */
+    private transient volatile List<SimpleGrantedAuthority> authorities;
 
     /**
      * Constructor for creating a null role.
@@ -102,6 +111,7 @@ public class Role extends DomainObject {
      */
     public void setMakeCoffee ( final boolean makeCoffee ) {
         this.makeCoffee = makeCoffee;
+        this.authorities = null;
     }
 
     /**
@@ -121,6 +131,7 @@ public class Role extends DomainObject {
      */
     public void setAddIngredients ( final boolean addIngredients ) {
         this.addIngredients = addIngredients;
+        this.authorities = null;
     }
 
     /**
@@ -140,6 +151,7 @@ public class Role extends DomainObject {
      */
     public void setAddIngredientType ( final boolean addIngredientType ) {
         this.addIngredientType = addIngredientType;
+        this.authorities = null;
     }
 
     /**
@@ -159,15 +171,30 @@ public class Role extends DomainObject {
      */
     public void setAddStaffAccount ( final boolean addStaffAccount ) {
         this.addStaffAccount = addStaffAccount;
+        this.authorities = null;
+    }
+
+    /**
+     * gets the list of SimpleGrantedAuthority for associated permissions. Used
+     * by Spring Security on every request, so it is only built once.
+     *
+     * @return List of SimpleGrantedAuthority, which cannot be modified.
+     */
+    public List<SimpleGrantedAuthority> getAuthorities () {
+        List<SimpleGrantedAuthority> ret = authorities;
+        if ( ret == null ) {
+            ret = Collections.unmodifiableList( buildAuthorities() );
+            authorities = ret;
+        }
+        return ret;
     }
 
     /**
-     * gets the Array list of SimpleGrantedAuthority for associated permissions.
-     * Used by Spring Security
+     * Works out the authorities granted by this Role's permissions.
      *
      * @return ArrayList of SimpleGrantedAuthority.
      */
-    public ArrayList<SimpleGrantedAuthority> getAuthorities () {
+    private ArrayList<SimpleGrantedAuthority> buildAuthorities () {
         final ArrayList<SimpleGrantedAuthority> ret = new ArrayList<SimpleGrantedAuthority>();
         // Gives make_coffee authority if the role has it
         if ( getMakeCoffee() ) {
@@ -13,13 +13,11 @@ import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 
+import org.hibernate.Hibernate;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
-import com.google.gson.ExclusionStrategy;
-import com.google.gson.FieldAttributes;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
  * Recipe for the coffee maker. Recipe is tied to the database using Hibernate
@@ -51,8 +49,12 @@ public class User extends DomainObject implements UserDetails {
     @ManyToOne
     private Role              role;
 
-    /** List of ingredients in the recipe. **/
-    @OneToMany ( cascade = CascadeType.ALL, fetch = FetchType.EAGER, orphanRemoval = true, mappedBy = "user" )
+    /**
+     * Orders placed by this user. Loaded lazily, since a long-lived account
+     * can have an unbounded history; use OrdersService.findByUser to page
+     * through it instead.
+     **/
+    @OneToMany ( cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true, mappedBy = "user" )
     private List<Orders>      userOrders;
 
     /**
@@ -139,7 +141,8 @@ public class User extends DomainObject implements UserDetails {
 
     @Override
     public String toString () {
-        return "" + userId + "," + username + "," + role.getRoleName() + "," + userOrders;
+        return "" + userId + "," + username + "," + role.getRoleName() + ","
+                + ( Hibernate.isInitialized( userOrders ) ? userOrders : "[...]" );
     }
 
     /**
@@ -147,6 +150,7 @@ public class User extends DomainObject implements UserDetails {
      *
      * @return a list of the user's orders.
      */
+    @JsonIgnore
     public List<Orders> getOrders () {
         return userOrders;
     }
@@ -188,8 +192,11 @@ public class User extends DomainObject implements UserDetails {
      * @return Order that the user ordered.
      */
     public Orders orderCoffee ( final Recipe recipe ) {
-        final Orders ret = new Orders( recipe, "Preparing" );
-        userOrders.add( ret );
+        final Orders ret = new Orders( recipe, Orders.STATUS_PREPARING );
+        // Don't pull the whole history in just to append to it
+        if ( Hibernate.isInitialized( userOrders ) ) {
+            userOrders.add( ret );
+        }
         ret.setUser( this );
         return ret;
     }
@@ -201,13 +208,16 @@ public class User extends DomainObject implements UserDetails {
      *            the order to update
      */
     public void updateOrder ( final Orders order ) {
+        if ( !Hibernate.isInitialized( userOrders ) ) {
+            return;
+        }
         userOrders.removeIf( o -> o.getId() == order.getId() );
         userOrders.add( order );
     }
 
     @Override
     public int hashCode () {
-        return Objects.hash( username, userOrders, password, role, userId );
+        return Objects.hash( username, password, role, userId );
     }
 
     @Override
@@ -222,9 +232,8 @@ public class User extends DomainObject implements UserDetails {
             return false;
         }
         final User other = (User) obj;
-        return Objects.equals( username, other.username ) && Objects.equals( userOrders, other.userOrders )
-                && Objects.equals( password, other.password ) && Objects.equals( role, other.role )
-                && Objects.equals( userId, other.userId );
+        return Objects.equals( username, other.username ) && Objects.equals( password, other.password )
+                && Objects.equals( role, other.role ) && Objects.equals( userId, other.userId );
     }
 
     /**
@@ -233,23 +242,7 @@ public class User extends DomainObject implements UserDetails {
      * @return the json string of the user
      */
     public String toJson () {
-        final Gson gson = new GsonBuilder().setExclusionStrategies( new ExclusionStrategy() {
-
-            @Override
-            public boolean shouldSkipField ( final FieldAttributes f ) {
-                // Source:
-                // https://stackoverflow.com/questions/3340485/how-to-solve-circular-reference-in-json-serializer-caused-by-hibernate-bidirecti
-                return ( f.getName().equals( "user" ) && f.getDeclaringClass() == Orders.class )
-                        || ( f.getName().equals( "ingredients" ) && f.getDeclaringClass() == Recipe.class );
-            }
-
-            @Override
-            public boolean shouldSkipClass ( final Class< ? > clazz ) {
-                return false;
-            }
-
-        } ).create();
-        return gson.toJson( this );
+        return JsonSerializers.DOMAIN.toJson( this );
     }
 
     @Override
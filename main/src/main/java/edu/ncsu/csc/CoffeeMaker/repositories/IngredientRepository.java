@@ -3,7 +3,16 @@
  */
 package edu.ncsu.csc.CoffeeMaker.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.LockModeType;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
 
@@ -20,4 +29,69 @@ public interface IngredientRepository extends JpaRepository<Ingredient, Long> {
      * @return Found ingredient, null if none.
      */
     Ingredient findByName ( String name );
+
+    /**
+     * Checks whether there is an Ingredient with the provided name. Only the unique
+     * index on the name is read.
+     *
+     * @param name
+     *            Name to look for
+     * @return true if there is one
+     */
+    boolean existsByName ( String name );
+
+    /**
+     * Finds every Ingredient whose name is one of the provided names.
+     *
+     * @param names
+     *            Names of the ingredients
+     * @return Found ingredients; names with no ingredient are left out
+     */
+    List<Ingredient> findByNameIn ( Collection<String> names );
+
+    /**
+     * Finds every Ingredient whose name is one of the provided names and locks
+     * their rows until the end of the transaction, so that nothing else can
+     * change their amounts in the meantime. The rows are locked in ascending
+     * id order, the same order brewing debits them in, so the two cannot
+     * deadlock each other.
+     *
+     * @param names
+     *            Names of the ingredients
+     * @return Found ingredients in ascending id order; names with no
+     *         ingredient are left out
+     */
+    @Lock ( LockModeType.PESSIMISTIC_WRITE )
+    @Query ( "SELECT i FROM Ingredient i WHERE i.name IN :names ORDER BY i.id" )
+    List<Ingredient> lockByNameIn ( @Param ( "names" ) Collection<String> names );
+
+    /**
+     * Removes the given amount from an ingredient, but only if there is enough
+     * of it in stock. The check and the decrement happen in a single UPDATE
+     * statement, so two concurrent brews can never both take the last of an
+     * ingredient.
+     *
+     * @param id
+     *            id of the ingredient to debit
+     * @param count
+     *            amount to remove
+     * @return the number of rows updated; 0 if there was not enough in stock
+     */
+    @Modifying ( flushAutomatically = true )
+    @Query ( "UPDATE Ingredient i SET i.amount = i.amount - :count WHERE i.id = :id AND i.amount >= :count" )
+    int debit ( @Param ( "id" ) Long id, @Param ( "count" ) int count );
+
+    /**
+     * Adds the given amount back to an ingredient, for ingredients debited for
+     * a drink that was never recorded.
+     *
+     * @param id
+     *            id of the ingredient to credit
+     * @param count
+     *            amount to add
+     * @return the number of rows updated; 0 if the ingredient no longer exists
+     */
+    @Modifying ( flushAutomatically = true )
+    @Query ( "UPDATE Ingredient i SET i.amount = i.amount + :count WHERE i.id = :id" )
+    int credit ( @Param ( "id" ) Long id, @Param ( "count" ) int count );
 }
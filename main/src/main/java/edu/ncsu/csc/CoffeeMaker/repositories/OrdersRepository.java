@@ -1,14 +1,38 @@
 package edu.ncsu.csc.CoffeeMaker.repositories;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import edu.ncsu.csc.CoffeeMaker.models.OrderSummary;
 import edu.ncsu.csc.CoffeeMaker.models.Orders;
+import edu.ncsu.csc.CoffeeMaker.models.User;
 
 /**
  * Repository for Orders
  */
 public interface OrdersRepository extends JpaRepository<Orders, Long> {
 
+    /**
+     * Filters shared by the filtered order queries. Any of status and user may
+     * be null to match everything.
+     */
+    String FILTER = "WHERE ( :status IS NULL OR o.status = :status ) AND ( :user IS NULL OR u.username = :user )"
+            + " AND o.timePlaced >= :from AND o.timePlaced < :to AND o.id > :afterId";
+
     /**
      * Finds a Order object with the provided id. Spring will generate code to
      * make this happen.
@@ -19,4 +43,155 @@ public interface OrdersRepository extends JpaRepository<Orders, Long> {
      */
     Orders findById ( int id );
 
+    /**
+     * Finds one page of the orders placed by a user. Spring will generate code
+     * to make this happen.
+     *
+     * @param user
+     *            user who placed the orders
+     * @param pageable
+     *            which page to return, and how to sort it
+     * @return the requested page of orders
+     */
+    Page<Orders> findByUser ( User user, Pageable pageable );
+
+    /**
+     * Finds one slice of the orders matching the filters, oldest first. Since
+     * only orders after `afterId` are returned, a client can walk the whole
+     * table by passing the last id it has seen.
+     *
+     * @param status
+     *            status to match, null for any
+     * @param user
+     *            username to match, null for any
+     * @param from
+     *            earliest time placed, inclusive
+     * @param to
+     *            latest time placed, exclusive
+     * @param afterId
+     *            only return orders with a larger id
+     * @param pageable
+     *            how many orders to return
+     * @return the matching orders
+     */
+    @Query ( "SELECT o FROM Orders o LEFT JOIN FETCH o.user u LEFT JOIN FETCH o.recipe " + FILTER + " ORDER BY o.id" )
+    Slice<Orders> findFiltered ( @Param ( "status" ) String status, @Param ( "user" ) String user,
+            @Param ( "from" ) long from, @Param ( "to" ) long to, @Param ( "afterId" ) long afterId,
+            Pageable pageable );
+
+    /**
+     * Streams summaries of every order matching the filters, oldest first. The
+     * fetch size hint makes the MySQL driver hand rows over as they arrive
+     * rather than reading the whole result into memory. Must be consumed
+     * inside a transaction and closed afterwards.
+     *
+     * @param status
+     *            status to match, null for any
+     * @param user
+     *            username to match, null for any
+     * @param from
+     *            earliest time placed, inclusive
+     * @param to
+     *            latest time placed, exclusive
+     * @param afterId
+     *            only return orders with a larger id
+     * @return the matching orders
+     */
+    @QueryHints ( @QueryHint ( name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE ) )
+    @Query ( "SELECT new edu.ncsu.csc.CoffeeMaker.models.OrderSummary( o.id, o.status, r.name, u.username,"
+            + " o.amountPaid, o.amountChange, o.timePlaced ) FROM Orders o LEFT JOIN o.user u LEFT JOIN o.recipe r "
+            + FILTER + " ORDER BY o.id" )
+    Stream<OrderSummary> streamFiltered ( @Param ( "status" ) String status, @Param ( "user" ) String user,
+            @Param ( "from" ) long from, @Param ( "to" ) long to, @Param ( "afterId" ) long afterId );
+
+    /**
+     * Finds the id, time placed and lane of every order with the given status,
+     * without loading the orders themselves.
+     *
+     * @param status
+     *            status to match
+     * @return one array of id, time placed and lane per order
+     */
+    @Query ( "SELECT o.id, o.timePlaced, o.lane FROM Orders o WHERE o.status = :status" )
+    List<Object[]> findQueued ( @Param ( "status" ) String status );
+
+    /**
+     * Moves an order from one status to another, unless its status has
+     * already changed. Runs and commits in its own transaction when called
+     * outside of one.
+     *
+     * @param id
+     *            id of the order
+     * @param from
+     *            status the order must have
+     * @param to
+     *            status to give it
+     * @return 1 if the order was moved, 0 if it was not found or had another
+     *         status
+     */
+    @Transactional
+    @Modifying
+    @Query ( "UPDATE Orders o SET o.status = :to WHERE o.id = :id AND o.status = :from" )
+    int updateStatus ( @Param ( "id" ) Long id, @Param ( "from" ) String from, @Param ( "to" ) String to );
+
+    /**
+     * Finds the id and time placed of the oldest orders with the given status
+     * in a lane, without locking them. Orders are ordered by when they were
+     * placed and then by id, and only those after the given position are
+     * returned, so a caller can page through them by passing the last one it
+     * has seen.
+     *
+     * @param status
+     *            status to match
+     * @param lane
+     *            lane to match
+     * @param afterTime
+     *            time placed of the last order seen, 0 to start at the oldest
+     * @param afterId
+     *            id of the last order seen, 0 to start at the oldest
+     * @param pageable
+     *            how many orders to return
+     * @return one array of id and time placed per order, oldest first
+     */
+    @Query ( "SELECT o.id, o.timePlaced FROM Orders o WHERE o.status = :status AND o.lane = :lane"
+            + " AND ( o.timePlaced > :afterTime OR ( o.timePlaced = :afterTime AND o.id > :afterId ) )"
+            + " ORDER BY o.timePlaced, o.id" )
+    List<Object[]> findQueuedAfter ( @Param ( "status" ) String status, @Param ( "lane" ) String lane,
+            @Param ( "afterTime" ) long afterTime, @Param ( "afterId" ) long afterId, Pageable pageable );
+
+    /**
+     * Locks the oldest orders with the given status in a lane, by time placed
+     * and then id, and returns their ids. Rows another transaction has locked
+     * are skipped rather than waited for, so concurrent callers each get
+     * different orders. Must run inside a transaction, which holds the locks
+     * until it ends, and needs MySQL 8 or MariaDB 10.6.
+     *
+     * @param status
+     *            status to match
+     * @param lane
+     *            lane to match
+     * @param limit
+     *            most orders to lock
+     * @return the ids, oldest first
+     */
+    @Query ( value = "SELECT id FROM orders WHERE status = :status AND lane = :lane"
+            + " ORDER BY time_placed, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true )
+    List<Number> lockQueuedIds ( @Param ( "status" ) String status, @Param ( "lane" ) String lane,
+            @Param ( "limit" ) int limit );
+
+    /**
+     * Moves every order in `ids` that still has one status to another.
+     *
+     * @param ids
+     *            ids of the orders
+     * @param from
+     *            status the orders must have
+     * @param to
+     *            status to give them
+     * @return the number of orders moved
+     */
+    @Modifying
+    @Query ( "UPDATE Orders o SET o.status = :to WHERE o.id IN :ids AND o.status = :from" )
+    int updateStatus ( @Param ( "ids" ) List<Long> ids, @Param ( "from" ) String from, @Param ( "to" ) String to );
+
 }
@@ -1,5 +1,8 @@
 package edu.ncsu.csc.CoffeeMaker.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import edu.ncsu.csc.CoffeeMaker.models.Recipe;
@@ -23,4 +26,23 @@ public interface RecipeRepository extends JpaRepository<Recipe, Long> {
      */
     Recipe findByName ( String name );
 
+    /**
+     * Checks whether there is a Recipe with the provided name. Only the unique
+     * index on the name is read.
+     *
+     * @param name
+     *            Name to look for
+     * @return true if there is one
+     */
+    boolean existsByName ( String name );
+
+    /**
+     * Finds every Recipe whose name is one of the provided names.
+     *
+     * @param names
+     *            Names of the recipes
+     * @return Found recipes; names with no recipe are left out
+     */
+    List<Recipe> findByNameIn ( Collection<String> names );
+
 }
@@ -1,5 +1,8 @@
 package edu.ncsu.csc.CoffeeMaker.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import edu.ncsu.csc.CoffeeMaker.models.Role;
@@ -19,4 +22,23 @@ public interface RoleRepository extends JpaRepository<Role, Long> {
      */
     Role findByRoleName ( String roleName );
 
+    /**
+     * Checks whether there is a Role with the provided name. Only the unique
+     * index on the name is read.
+     *
+     * @param roleName
+     *            Name to look for
+     * @return true if there is one
+     */
+    boolean existsByRoleName ( String roleName );
+
+    /**
+     * Finds every Role whose name is one of the provided names.
+     *
+     * @param roleNames
+     *            Names of the roles
+     * @return Found roles; names with no role are left out
+     */
+    List<Role> findByRoleNameIn ( Collection<String> roleNames );
+
 }
@@ -1,5 +1,8 @@
 package edu.ncsu.csc.CoffeeMaker.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import edu.ncsu.csc.CoffeeMaker.models.User;
@@ -19,4 +22,23 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     User findByUsername ( String username );
 
+    /**
+     * Checks whether there is an User with the provided username. Only the unique
+     * index on the username is read.
+     *
+     * @param username
+     *            Username to look for
+     * @return true if there is one
+     */
+    boolean existsByUsername ( String username );
+
+    /**
+     * Finds every User whose username is one of the provided names.
+     *
+     * @param usernames
+     *            Usernames of the users
+     * @return Found users; names with no user are left out
+     */
+    List<User> findByUsernameIn ( Collection<String> usernames );
+
 }
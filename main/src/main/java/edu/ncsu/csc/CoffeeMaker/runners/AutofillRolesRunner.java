@@ -1,6 +1,14 @@
 package edu.ncsu.csc.CoffeeMaker.runners;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -12,89 +20,153 @@ import edu.ncsu.csc.CoffeeMaker.services.RoleService;
 import edu.ncsu.csc.CoffeeMaker.services.UserService;
 
 /**
- * Ensure the data this application needs to run is present in the database
+ * Ensure the data this application needs to run is present in the database.
+ *
+ * The default roles and accounts are checked with one query each, and only the
+ * missing ones are created, so once they exist a start costs two queries and
+ * no password hashing. `coffeemaker.seed.mode` decides when this happens:
+ * `sync` (the default) before the application is ready, `async` in the
+ * background while it starts serving, and `off` not at all, for databases
+ * that are already set up.
  */
 @Component
 public class AutofillRolesRunner implements ApplicationRunner {
+
+    /** Logger for how long seeding took */
+    private static final Logger LOG              = LoggerFactory.getLogger( AutofillRolesRunner.class );
+
+    /** Password of the default accounts */
+    private static final String DEFAULT_PASSWORD = "coffee";
+
     /**
      * UserService object that is autowired in by Spring to allow for
      * manipulating the User model
      */
     @Autowired
-    private RoleService roleService;
+    private RoleService         roleService;
 
     /**
      * User service for the autofill roles runner
      */
     @Autowired
-    private UserService userService;
+    private UserService         userService;
+
+    /** When to seed: sync, async or off */
+    @Value ( "${coffeemaker.seed.mode:sync}" )
+    private String              mode;
 
     /**
      * Autofill the role table with the default user roles
      */
     @Override
     public void run ( final ApplicationArguments args ) throws Exception {
-        // Customer role
-        if ( roleService.findByName( "Customer" ) == null ) {
-            final Role customerRole = new Role();
-            customerRole.setRoleName( "Customer" );
-            customerRole.setAddIngredients( false );
-            customerRole.setAddIngredientType( false );
-            customerRole.setAddStaffAccount( false );
-            customerRole.setMakeCoffee( true );
-            roleService.save( customerRole );
+        if ( "off".equals( mode ) ) {
+            return;
         }
-
-        // Staff role
-        if ( roleService.findByName( "Staff" ) == null ) {
-            final Role staffRole = new Role();
-            staffRole.setRoleName( "Staff" );
-            staffRole.setAddIngredients( true );
-            staffRole.setAddIngredientType( true );
-            staffRole.setAddStaffAccount( false );
-            staffRole.setMakeCoffee( true );
-            roleService.save( staffRole );
+        if ( "async".equals( mode ) ) {
+            final Thread seeder = new Thread( () -> {
+                try {
+                    seed();
+                }
+                catch ( final RuntimeException e ) {
+                    LOG.error( "Could not create the default roles and users", e );
+                }
+            }, "autofill-roles" );
+            seeder.setDaemon( true );
+            seeder.start();
+            return;
         }
+        seed();
+    }
+
+    /**
+     * Creates whichever default roles and users do not exist yet.
+     */
+    private void seed () {
+        final long start = System.nanoTime();
 
-        // Manager role
-        if ( roleService.findByName( "Manager" ) == null ) {
-            final Role managerRole = new Role();
-            managerRole.setRoleName( "Manager" );
-            managerRole.setAddIngredients( true );
-            managerRole.setAddIngredientType( true );
-            managerRole.setAddStaffAccount( true );
-            managerRole.setMakeCoffee( true );
-            roleService.save( managerRole );
+        final Map<String, Role> roles = new HashMap<String, Role>();
+        for ( final Role role : roleService.findByNames( List.of( "Customer", "Staff", "Manager" ) ) ) {
+            roles.put( role.getRoleName(), role );
+        }
+        final List<Role> newRoles = new ArrayList<Role>();
+        addRole( roles, newRoles, "Customer", false, false, false );
+        addRole( roles, newRoles, "Staff", true, true, false );
+        addRole( roles, newRoles, "Manager", true, true, true );
+        if ( !newRoles.isEmpty() ) {
+            roleService.saveAll( newRoles );
         }
 
-        // Default manager account
-        if ( userService.findByName( "manager" ) == null ) {
-            final User manager = new User();
-            final BCryptPasswordEncoder pe = new BCryptPasswordEncoder();
-            manager.setUsername( "manager" );
-            manager.setPassword( pe.encode( "coffee" ) );
-            manager.setRole( roleService.findByName( "Manager" ) );
-            userService.save( manager );
+        final Map<String, User> users = new HashMap<String, User>();
+        for ( final User user : userService.findByNames( List.of( "manager", "customer", "staff" ) ) ) {
+            users.put( user.getUsername(), user );
+        }
+        final List<User> newUsers = new ArrayList<User>();
+        addUser( users, newUsers, "manager", roles.get( "Manager" ) );
+        addUser( users, newUsers, "customer", roles.get( "Customer" ) );
+        addUser( users, newUsers, "staff", roles.get( "Staff" ) );
+        if ( !newUsers.isEmpty() ) {
+            userService.saveAll( newUsers );
         }
 
-        // Default customer account
-        if ( userService.findByName( "customer" ) == null ) {
-            final User customer = new User();
-            final BCryptPasswordEncoder pe = new BCryptPasswordEncoder();
-            customer.setUsername( "customer" );
-            customer.setPassword( pe.encode( "coffee" ) );
-            customer.setRole( roleService.findByName( "Customer" ) );
-            userService.save( customer );
+        LOG.info( "Created {} default roles and {} default users in {} ms", newRoles.size(), newUsers.size(),
+                ( System.nanoTime() - start ) / 1_000_000 );
+    }
+
+    /**
+     * Creates a default role unless it already exists. Every default role can
+     * make coffee.
+     *
+     * @param roles
+     *            roles by name; the new role is added
+     * @param created
+     *            roles still to be saved; the new role is added
+     * @param name
+     *            name of the role
+     * @param addIngredients
+     *            whether the role can add to the inventory
+     * @param addIngredientType
+     *            whether the role can edit ingredients and recipes
+     * @param addStaffAccount
+     *            whether the role can create staff accounts
+     */
+    private static void addRole ( final Map<String, Role> roles, final List<Role> created, final String name,
+            final boolean addIngredients, final boolean addIngredientType, final boolean addStaffAccount ) {
+        if ( roles.containsKey( name ) ) {
+            return;
         }
+        final Role role = new Role();
+        role.setRoleName( name );
+        role.setAddIngredients( addIngredients );
+        role.setAddIngredientType( addIngredientType );
+        role.setAddStaffAccount( addStaffAccount );
+        role.setMakeCoffee( true );
+        roles.put( name, role );
+        created.add( role );
+    }
 
-        // Default staff account
-        if ( userService.findByName( "staff" ) == null ) {
-            final User staff = new User();
-            final BCryptPasswordEncoder pe = new BCryptPasswordEncoder();
-            staff.setUsername( "staff" );
-            staff.setPassword( pe.encode( "coffee" ) );
-            staff.setRole( roleService.findByName( "Staff" ) );
-            userService.save( staff );
+    /**
+     * Creates a default account unless it already exists. Its password is only
+     * hashed if it has to be created.
+     *
+     * @param users
+     *            users by name
+     * @param created
+     *            users still to be saved; the new user is added
+     * @param username
+     *            name of the account
+     * @param role
+     *            role of the account
+     */
+    private static void addUser ( final Map<String, User> users, final List<User> created, final String username,
+            final Role role ) {
+        if ( users.containsKey( username ) ) {
+            return;
         }
+        final User user = new User();
+        user.setUsername( username );
+        user.setPassword( new BCryptPasswordEncoder().encode( DEFAULT_PASSWORD ) );
+        user.setRole( role );
+        created.add( user );
     }
 }
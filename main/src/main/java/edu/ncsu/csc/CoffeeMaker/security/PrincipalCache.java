@@ -0,0 +1,185 @@
+package edu.ncsu.csc.CoffeeMaker.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ncsu.csc.CoffeeMaker.models.User;
+import edu.ncsu.csc.CoffeeMaker.repositories.UserRepository;
+
+/**
+ * Short-lived cache of logged-in users, keyed by username. Every HTTP Basic
+ * request authenticates from scratch, and most controllers then look the user
+ * up again; with this cache both are answered from memory.
+ *
+ * Users are kept for `coffeemaker.security.principal-cache.ttl` milliseconds,
+ * and at most `coffeemaker.security.principal-cache.size` of them, least
+ * recently used first out. UserService and RoleService throw the whole cache
+ * away on every write, since a rename or a role change can affect any entry.
+ *
+ * The cached users are detached from Hibernate and shared between requests:
+ * their order history is never loaded, and they must not be modified.
+ */
+@Component
+public class PrincipalCache {
+
+    /**
+     * UserRepository, used to load users that are not cached
+     */
+    @Autowired
+    private UserRepository            userRepository;
+
+    /** How long a user is kept, in milliseconds */
+    @Value ( "${coffeemaker.security.principal-cache.ttl:60000}" )
+    private long                      ttl;
+
+    /** Most users kept */
+    @Value ( "${coffeemaker.security.principal-cache.size:1000}" )
+    private int                       capacity;
+
+    /** Cached users by name, least recently used first. Guarded by this. */
+    private final Map<String, Cached> users  = new LruMap();
+
+    /**
+     * Bumped on every invalidation, so that a load that started before a
+     * change is not cached after it. Guarded by this.
+     */
+    private long                      generation;
+
+    /** Lookups answered from the cache */
+    private final AtomicLong          hits   = new AtomicLong();
+
+    /** Lookups that had to go to the database */
+    private final AtomicLong          misses = new AtomicLong();
+
+    /**
+     * Find a user by name
+     *
+     * @param username
+     *            name of the user
+     * @return the user, null if there is none
+     */
+    public User find ( final String username ) {
+        final long gen;
+        synchronized ( this ) {
+            final Cached cached = users.get( username );
+            if ( null != cached && cached.expires > System.currentTimeMillis() ) {
+                hits.incrementAndGet();
+                return cached.user;
+            }
+            gen = generation;
+        }
+        misses.incrementAndGet();
+        final User user = userRepository.findByUsername( username );
+        if ( null != user ) {
+            synchronized ( this ) {
+                if ( gen == generation ) {
+                    users.put( username, new Cached( user, System.currentTimeMillis() + ttl ) );
+                }
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Forget every user. If called inside a transaction, this happens again
+     * once it finishes, so that nothing read in the meantime survives.
+     */
+    public void invalidateAll () {
+        clear();
+        if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization() {
+                @Override
+                public void afterCompletion ( final int status ) {
+                    clear();
+                }
+            } );
+        }
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache
+     *
+     * @return the number of hits
+     */
+    public long getHits () {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that had to go to the database
+     *
+     * @return the number of misses
+     */
+    public long getMisses () {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of users currently cached
+     *
+     * @return the number of cached users
+     */
+    public synchronized int size () {
+        return users.size();
+    }
+
+    /**
+     * Drops every cached user
+     */
+    private synchronized void clear () {
+        generation++;
+        users.clear();
+    }
+
+    /**
+     * A cached user and when it stops being valid.
+     */
+    private static final class Cached {
+        /** The user */
+        private final User user;
+
+        /** When to load the user again, in milliseconds since the epoch */
+        private final long expires;
+
+        /**
+         * Caches a user.
+         *
+         * @param user
+         *            the user
+         * @param expires
+         *            when to load it again
+         */
+        private Cached ( final User user, final long expires ) {
+            this.user = user;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Users by name in least recently used order, dropping the oldest once
+     * there are more than `capacity` of them.
+     */
+    private final class LruMap extends LinkedHashMap<String, Cached> {
+        /** Required because LinkedHashMap is serializable */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates an empty map ordered by access.
+         */
+        private LruMap () {
+            super( 16, 0.75f, true );
+        }
+
+        @Override
+        protected boolean removeEldestEntry ( final Map.Entry<String, Cached> eldest ) {
+            return size() > capacity;
+        }
+    }
+}
@@ -33,10 +33,21 @@ public class SecurityUtil {
         return false;
     }
 
+    /**
+     * Get the name the current requestee is logged in as
+     *
+     * @return the username
+     */
+    public static String getCurrentUsername () {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
+
     /**
      * Check the security context for the current user and find the matching
-     * user *from the database*. This is important, since the SecurityContext
-     * user and the database user are seperate objects that do not sync.
+     * user through the PrincipalCache. The SecurityContext user may be as old
+     * as the session, while the cached one is never older than the cache's
+     * TTL and is dropped as soon as any user or role changes. The user
+     * returned is shared with other requests and must not be modified.
      *
      * @param userService
      *            a UserService for this method to use
@@ -46,11 +57,11 @@ public class SecurityUtil {
         final Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         if ( principal instanceof User ) {
             final User rqUser = (User) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-            return userService.findById( rqUser.getId() );
+            return userService.findPrincipal( rqUser.getUsername() );
         }
         // Force unit tests to operate as manager
         else {
-            return userService.findByName( "manager" );
+            return userService.findPrincipal( "manager" );
         }
     }
 }
@@ -9,7 +9,8 @@ import edu.ncsu.csc.CoffeeMaker.models.User;
 import edu.ncsu.csc.CoffeeMaker.services.UserService;
 
 /**
- * TableUserDetailsService class
+ * TableUserDetailsService class. Users are looked up through the
+ * PrincipalCache, so repeated HTTP Basic requests do not reload them.
  */
 public class TableUserDetailsService implements UserDetailsService {
     /**
@@ -20,7 +21,7 @@ public class TableUserDetailsService implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername ( final String username ) throws UsernameNotFoundException {
-        final User user = userService.findByName( username );
+        final User user = userService.findPrincipal( username );
         if ( user == null ) {
             throw new UsernameNotFoundException( username + " is not a valid user." );
         }
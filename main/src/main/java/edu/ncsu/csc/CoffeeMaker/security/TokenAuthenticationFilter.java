@@ -0,0 +1,66 @@
+package edu.ncsu.csc.CoffeeMaker.security;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import edu.ncsu.csc.CoffeeMaker.models.User;
+
+/**
+ * Authenticates requests that carry an `Authorization: Bearer` token issued by
+ * the TokenService. A bad token simply leaves the request unauthenticated.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    /** Prefix of the Authorization header that carries a token */
+    private static final String BEARER = "Bearer ";
+
+    /** Checks the tokens */
+    private final TokenService  tokens;
+
+    /**
+     * Creates the filter.
+     *
+     * @param tokens
+     *            service that checks the tokens
+     */
+    public TokenAuthenticationFilter ( final TokenService tokens ) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Returns the bearer token of a request.
+     *
+     * @param request
+     *            the request
+     * @return the token, or null if the request does not carry one
+     */
+    public static String getToken ( final HttpServletRequest request ) {
+        final String header = request.getHeader( HttpHeaders.AUTHORIZATION );
+        if ( null == header || !header.regionMatches( true, 0, BEARER, 0, BEARER.length() ) ) {
+            return null;
+        }
+        final String token = header.substring( BEARER.length() ).trim();
+        return token.isEmpty() ? null : token;
+    }
+
+    @Override
+    protected void doFilterInternal ( final HttpServletRequest request, final HttpServletResponse response,
+            final FilterChain chain ) throws ServletException, IOException {
+        final String token = getToken( request );
+        final User user = null == token ? null : tokens.authenticate( token );
+        if ( null != user ) {
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken( user, null, user.getAuthorities() ) );
+        }
+        chain.doFilter( request, response );
+    }
+}
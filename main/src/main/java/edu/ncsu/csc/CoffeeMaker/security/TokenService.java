@@ -0,0 +1,185 @@
+package edu.ncsu.csc.CoffeeMaker.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.CoffeeMaker.models.User;
+import edu.ncsu.csc.CoffeeMaker.services.UserService;
+
+/**
+ * Issues and checks bearer tokens, so that clients which make many API calls
+ * (kiosks, mostly) can log in once with their password and then authenticate
+ * every other request without paying for a BCrypt check each time.
+ *
+ * A token is 32 random bytes. Only its SHA-256 hash is kept, along with who it
+ * belongs to and when it expires, so checking a token costs one hash and one
+ * map lookup. Tokens last `coffeemaker.security.token-auth.ttl` milliseconds,
+ * stop working as soon as their user is deleted or changes password, and are
+ * only kept in memory: a restart logs every client out.
+ *
+ * Token authentication is off unless `coffeemaker.security.token-auth.enabled`
+ * is true.
+ */
+@Component
+@ConditionalOnProperty ( name = "coffeemaker.security.token-auth.enabled", havingValue = "true" )
+public class TokenService {
+
+    /** Number of random bytes in a token */
+    private static final int          TOKEN_BYTES = 32;
+
+    /**
+     * UserService, used to look up the user a token belongs to
+     */
+    @Autowired
+    private UserService               userService;
+
+    /** How long a token lasts, in milliseconds */
+    @Value ( "${coffeemaker.security.token-auth.ttl:28800000}" )
+    private long                      ttl;
+
+    /** Source of new tokens */
+    private final SecureRandom        random      = new SecureRandom();
+
+    /** Live tokens, keyed by the hash of the token */
+    private final Map<String, Issued> tokens      = new ConcurrentHashMap<String, Issued>();
+
+    /**
+     * Issues a new token for a user.
+     *
+     * @param user
+     *            who the token is for
+     * @return the token, which is not stored anywhere and cannot be recovered
+     */
+    public String issue ( final User user ) {
+        final byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes( bytes );
+        final String token = Base64.getUrlEncoder().withoutPadding().encodeToString( bytes );
+        tokens.put( hash( token ), new Issued( user.getUsername(), user.getPassword(),
+                System.currentTimeMillis() + ttl ) );
+        return token;
+    }
+
+    /**
+     * Finds the user a token belongs to.
+     *
+     * @param token
+     *            the token presented
+     * @return the user, or null if the token is unknown, expired or no longer
+     *         valid for its user
+     */
+    public User authenticate ( final String token ) {
+        final String key = hash( token );
+        final Issued issued = tokens.get( key );
+        if ( null == issued ) {
+            return null;
+        }
+        if ( issued.expires <= System.currentTimeMillis() ) {
+            tokens.remove( key );
+            return null;
+        }
+        final User user = userService.findPrincipal( issued.username );
+        // Changing the password logs out every token issued before
+        if ( null == user || !Objects.equals( user.getPassword(), issued.password ) ) {
+            tokens.remove( key );
+            return null;
+        }
+        return user;
+    }
+
+    /**
+     * Stops a token from working.
+     *
+     * @param token
+     *            the token to revoke
+     * @return true if the token was live
+     */
+    public boolean revoke ( final String token ) {
+        return null != tokens.remove( hash( token ) );
+    }
+
+    /**
+     * Returns how long a newly issued token lasts.
+     *
+     * @return lifetime of a token in milliseconds
+     */
+    public long getTtl () {
+        return ttl;
+    }
+
+    /**
+     * Forgets tokens that have expired without being used again.
+     */
+    @Scheduled ( fixedDelay = 60000 )
+    public void purge () {
+        final long now = System.currentTimeMillis();
+        tokens.values().removeIf( issued -> issued.expires <= now );
+    }
+
+    /**
+     * Hashes a token for storage and lookup.
+     *
+     * @param token
+     *            the token
+     * @return hex-encoded SHA-256 of the token
+     */
+    private static String hash ( final String token ) {
+        try {
+            final byte[] digest = MessageDigest.getInstance( "SHA-256" )
+                    .digest( token.getBytes( StandardCharsets.UTF_8 ) );
+            final StringBuilder hex = new StringBuilder( digest.length * 2 );
+            for ( final byte b : digest ) {
+                hex.append( String.format( "%02x", b ) );
+            }
+            return hex.toString();
+        }
+        catch ( final NoSuchAlgorithmException e ) {
+            // Every JVM is required to support SHA-256
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Who a token was issued to.
+     */
+    private static final class Issued {
+        /** Name of the user */
+        private final String username;
+
+        /**
+         * The user's password hash when the token was issued, so that a
+         * password change can be noticed without checking the password
+         */
+        private final String password;
+
+        /** When the token stops working, in milliseconds since the epoch */
+        private final long   expires;
+
+        /**
+         * Records a token.
+         *
+         * @param username
+         *            name of the user
+         * @param password
+         *            the user's password hash
+         * @param expires
+         *            when the token stops working
+         */
+        private Issued ( final String username, final String password, final long expires ) {
+            this.username = username;
+            this.password = password;
+            this.expires = expires;
+        }
+    }
+}
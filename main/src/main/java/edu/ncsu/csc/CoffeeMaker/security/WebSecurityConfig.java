@@ -1,15 +1,22 @@
 package edu.ncsu.csc.CoffeeMaker.security;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.logout.HttpStatusReturningLogoutSuccessHandler;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
 /**
@@ -25,6 +32,27 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Override
     protected void configure ( final HttpSecurity http ) throws Exception {
+        authorize( http );
+        // Authenticate using Http basic
+        http.httpBasic()
+                // Use '/home' as the login page
+                .and().formLogin().loginPage( "/home" ).permitAll()
+                // Disable CSRF, this application is not set up for it
+                .and().csrf().disable();
+        http.logout( ( logout ) -> logout.logoutSuccessHandler( new HttpStatusReturningLogoutSuccessHandler() )
+                .logoutRequestMatcher( new AntPathRequestMatcher( "/logout" ) ) );
+    }
+
+    /**
+     * Sets up which pages and endpoints need which authority. Shared by every
+     * way of logging in.
+     *
+     * @param http
+     *            the security configuration to add the rules to
+     * @throws Exception
+     *             if the rules cannot be added
+     */
+    private static void authorize ( final HttpSecurity http ) throws Exception {
         http.authorizeRequests()
                 // Restrict the add recipe page
                 .antMatchers( "/addrecipe*" ).hasAuthority( "ADD_INGREDIENTS_TYPE" )
@@ -41,16 +69,12 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 // Allow access to the user post method from an unauthenticated
                 // users
                 .antMatchers( HttpMethod.POST, API_BASE + "users" ).permitAll()
+                // Health checks need no login; the other actuator endpoints,
+                // such as the Prometheus scrape, are for managers
+                .antMatchers( "/actuator/health" ).permitAll()
+                .antMatchers( "/actuator/**" ).hasAuthority( "ADD_STAFF_ACCOUNT" )
                 // Default to pages being inaccessible to unauthenticated users
-                .anyRequest().authenticated()
-                // Authenticate using Http basic
-                .and().httpBasic()
-                // Use '/home' as the login page
-                .and().formLogin().loginPage( "/home" ).permitAll()
-                // Disable CSRF, this application is not set up for it
-                .and().csrf().disable();
-        http.logout( ( logout ) -> logout.logoutSuccessHandler( new HttpStatusReturningLogoutSuccessHandler() )
-                .logoutRequestMatcher( new AntPathRequestMatcher( "/logout" ) ) );
+                .anyRequest().authenticated();
     }
 
     @Override
@@ -69,4 +93,38 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         return new BCryptPasswordEncoder();
     }
 
+    /**
+     * Security for requests that carry a bearer token, only present when
+     * `coffeemaker.security.token-auth.enabled` is set. Such requests are
+     * checked against the TokenService instead of the password, and are
+     * stateless: no session is created for them. Requests without a token
+     * fall through to the configuration above.
+     */
+    @Configuration
+    @Order ( 1 )
+    @ConditionalOnProperty ( name = "coffeemaker.security.token-auth.enabled", havingValue = "true" )
+    public static class TokenSecurityConfig extends WebSecurityConfigurerAdapter {
+
+        /**
+         * Checks the tokens
+         */
+        @Autowired
+        private TokenService tokens;
+
+        @Override
+        protected void configure ( final HttpSecurity http ) throws Exception {
+            http.requestMatcher( request -> TokenAuthenticationFilter.getToken( request ) != null );
+            authorize( http );
+            http.addFilterBefore( new TokenAuthenticationFilter( tokens ), BasicAuthenticationFilter.class )
+                    .sessionManagement().sessionCreationPolicy( SessionCreationPolicy.STATELESS )
+                    // A bad or expired token gets a plain 401, not a login
+                    // prompt
+                    .and().exceptionHandling()
+                    .authenticationEntryPoint( new HttpStatusEntryPoint( HttpStatus.UNAUTHORIZED ) )
+                    // Tokens are not sent automatically by browsers, so there
+                    // is nothing for CSRF protection to do
+                    .and().csrf().disable();
+        }
+    }
+
 }
@@ -0,0 +1,323 @@
+package edu.ncsu.csc.CoffeeMaker.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
+import edu.ncsu.csc.CoffeeMaker.models.RecipeSnapshot;
+import edu.ncsu.csc.CoffeeMaker.repositories.IngredientRepository;
+
+/**
+ * Keeps, for every recipe, the number of cups the current inventory can make,
+ * so that the menu and the brew path do not have to walk every recipe's
+ * ingredients against live stock on each request.
+ *
+ * The index is built from the RecipeCatalog and the current stock the first
+ * time it is read, then kept up to date one ingredient at a time: a brew or a
+ * change to an ingredient's amount only recomputes the recipes that use that
+ * ingredient. Changes made inside a transaction are applied once it commits,
+ * and never if it rolls back. Anything that changes what recipes exist or what
+ * goes into them throws the index away to be rebuilt on the next read.
+ *
+ * Callers take a token from `version()` before they change the inventory and
+ * hand it back with the change. If the index was rebuilt in between, the
+ * rebuild may already have seen the change, so a brew is skipped rather than
+ * counted twice and a new amount throws the index away. The index can
+ * therefore overstate stock for a moment but never understate it, which is the
+ * safe side: the guarded debit still decides whether a brew goes ahead, and a
+ * failed debit throws the index away.
+ *
+ * The index is built without holding its lock, so a slow read of the catalog
+ * or the stock does not hold up anyone reading a built index. The new index is
+ * only published if nothing changed the version, and no new amount arrived,
+ * while it was being read; otherwise it answers the read that built it and is
+ * then thrown away.
+ */
+@Component
+public class AvailabilityIndex {
+
+    /**
+     * Cached recipes, which the index is built from
+     */
+    @Autowired
+    private RecipeCatalog                         catalog;
+
+    /**
+     * IngredientRepository, used to read stock when the ledger is off
+     */
+    @Autowired
+    private IngredientRepository                  ingredientRepository;
+
+    /**
+     * In-memory inventory, which owns stock when
+     * `coffeemaker.inventory.ledger.enabled` is set. Looked up lazily because
+     * the ledger itself reports its changes here.
+     */
+    @Autowired
+    private ObjectProvider<InventoryLedger>       ledger;
+
+    /**
+     * Cups of each recipe by name, in menu order; null if not built. Guarded
+     * by this.
+     */
+    private Map<String, Integer>                  cups;
+
+    /** Stock of every ingredient used by a recipe. Guarded by this. */
+    private final Map<Long, Integer>              stock  = new HashMap<Long, Integer>();
+
+    /** Recipes using each ingredient. Guarded by this. */
+    private final Map<Long, List<RecipeSnapshot>> usedBy = new HashMap<Long, List<RecipeSnapshot>>();
+
+    /** Bumped every time the index is rebuilt or thrown away. Guarded by this. */
+    private long                                  version;
+
+    /**
+     * Returns the number of cups of every recipe the current inventory can
+     * make.
+     *
+     * @return cups by recipe name, in menu order, which cannot be modified
+     */
+    public Map<String, Integer> getAvailable () {
+        synchronized ( this ) {
+            if ( null != cups ) {
+                return Collections.unmodifiableMap( new LinkedHashMap<String, Integer>( cups ) );
+            }
+        }
+        return Collections.unmodifiableMap( build() );
+    }
+
+    /**
+     * Checks whether the inventory looks like it can make at least one cup of
+     * a recipe. A recipe the index does not know yet is assumed to be
+     * brewable, leaving the decision to the debit.
+     *
+     * @param recipe
+     *            the recipe to check
+     * @return false if there is certainly not enough stock
+     */
+    public boolean canBrew ( final RecipeSnapshot recipe ) {
+        synchronized ( this ) {
+            if ( null != cups ) {
+                final Integer n = cups.get( recipe.getName() );
+                return null == n || n > 0;
+            }
+        }
+        final Integer n = build().get( recipe.getName() );
+        return null == n || n > 0;
+    }
+
+    /**
+     * Returns a token to pass along with the next change to the inventory.
+     *
+     * @return the current version of the index
+     */
+    public synchronized long version () {
+        return version;
+    }
+
+    /**
+     * Records that one cup of a recipe was brewed.
+     *
+     * @param token
+     *            what `version()` returned before the ingredients were debited
+     * @param recipe
+     *            the recipe brewed
+     */
+    public void debited ( final long token, final RecipeSnapshot recipe ) {
+        debited( token, recipe, 1 );
+    }
+
+    /**
+     * Records that several cups of a recipe were brewed.
+     *
+     * @param token
+     *            what `version()` returned before the ingredients were debited
+     * @param recipe
+     *            the recipe brewed
+     * @param brewed
+     *            how many cups were brewed
+     */
+    public void debited ( final long token, final RecipeSnapshot recipe, final int brewed ) {
+        whenCommitted( () -> {
+            synchronized ( this ) {
+                if ( token != version || null == cups ) {
+                    return;
+                }
+                for ( final RecipeSnapshot.Item item : recipe.getIngredients() ) {
+                    final Integer amount = stock.get( item.getIngredientId() );
+                    if ( null != amount ) {
+                        stock.put( item.getIngredientId(), amount - item.getCount() * brewed );
+                    }
+                }
+                for ( final RecipeSnapshot.Item item : recipe.getIngredients() ) {
+                    recompute( item.getIngredientId() );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Records the new amount of an ingredient.
+     *
+     * @param token
+     *            what `version()` returned before the amount was changed
+     * @param id
+     *            id of the ingredient
+     * @param amount
+     *            its new amount
+     */
+    public void setAmount ( final long token, final Long id, final int amount ) {
+        whenCommitted( () -> {
+            synchronized ( this ) {
+                // While the index is being built the read may have missed the
+                // new amount, so the build must not be published
+                if ( token != version || null == cups ) {
+                    clear();
+                }
+                else if ( stock.containsKey( id ) ) {
+                    stock.put( id, amount );
+                    recompute( id );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Throws the index away, to be rebuilt on the next read. If called inside
+     * a transaction, this happens again once it finishes, so that nothing
+     * read in the meantime survives.
+     */
+    public void invalidate () {
+        clear();
+        if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization() {
+                @Override
+                public void afterCompletion ( final int status ) {
+                    clear();
+                }
+            } );
+        }
+    }
+
+    /**
+     * Runs a change to the index once the current transaction commits, or
+     * straight away if there is none.
+     *
+     * @param change
+     *            the change to make
+     */
+    private void whenCommitted ( final Runnable change ) {
+        if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization() {
+                @Override
+                public void afterCommit () {
+                    change.run();
+                }
+            } );
+        }
+        else {
+            change.run();
+        }
+    }
+
+    /**
+     * Builds the index from the catalog and current stock, reading both
+     * without holding the lock, and publishes it unless the index changed in
+     * the meantime.
+     *
+     * @return cups by recipe name, in menu order, as built
+     */
+    private Map<String, Integer> build () {
+        final long start;
+        synchronized ( this ) {
+            start = ++version;
+        }
+        final List<RecipeSnapshot> recipes = catalog.findAll();
+        final Map<Long, List<RecipeSnapshot>> users = new HashMap<Long, List<RecipeSnapshot>>();
+        for ( final RecipeSnapshot r : recipes ) {
+            for ( final RecipeSnapshot.Item item : r.getIngredients() ) {
+                users.computeIfAbsent( item.getIngredientId(), id -> new ArrayList<RecipeSnapshot>() ).add( r );
+            }
+        }
+        final Map<Long, Integer> amounts = new HashMap<Long, Integer>();
+        final InventoryLedger l = ledger.getIfAvailable();
+        if ( null != l ) {
+            for ( final Long id : users.keySet() ) {
+                final Integer amount = l.getAmount( id );
+                amounts.put( id, null == amount ? 0 : amount );
+            }
+        }
+        else {
+            for ( final Ingredient i : ingredientRepository.findAllById( users.keySet() ) ) {
+                amounts.put( i.getId(), i.getAmount() );
+            }
+            for ( final Long id : users.keySet() ) {
+                amounts.putIfAbsent( id, 0 );
+            }
+        }
+        final Map<String, Integer> built = new LinkedHashMap<String, Integer>();
+        for ( final RecipeSnapshot r : recipes ) {
+            built.put( r.getName(), cupsOf( r, amounts ) );
+        }
+        synchronized ( this ) {
+            if ( start != version || null != cups ) {
+                return built;
+            }
+            stock.putAll( amounts );
+            usedBy.putAll( users );
+            cups = new LinkedHashMap<String, Integer>( built );
+        }
+        return built;
+    }
+
+    /**
+     * Recomputes every recipe that uses an ingredient.
+     *
+     * @param id
+     *            id of the ingredient that changed
+     */
+    private void recompute ( final Long id ) {
+        for ( final RecipeSnapshot r : usedBy.getOrDefault( id, Collections.emptyList() ) ) {
+            cups.put( r.getName(), cupsOf( r, stock ) );
+        }
+    }
+
+    /**
+     * Works out how many cups of a recipe some stock can make.
+     *
+     * @param recipe
+     *            the recipe
+     * @param amounts
+     *            stock of every ingredient the recipe uses, by id
+     * @return the number of cups
+     */
+    private static int cupsOf ( final RecipeSnapshot recipe, final Map<Long, Integer> amounts ) {
+        int n = Integer.MAX_VALUE;
+        for ( final RecipeSnapshot.Item item : recipe.getIngredients() ) {
+            if ( item.getCount() > 0 ) {
+                n = Math.min( n, Math.max( 0, amounts.get( item.getIngredientId() ) ) / item.getCount() );
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Drops the index
+     */
+    private synchronized void clear () {
+        version++;
+        cups = null;
+        stock.clear();
+        usedBy.clear();
+    }
+}
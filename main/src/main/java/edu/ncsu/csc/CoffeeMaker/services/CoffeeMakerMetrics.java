@@ -0,0 +1,132 @@
+package edu.ncsu.csc.CoffeeMaker.services;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
+import edu.ncsu.csc.CoffeeMaker.security.PrincipalCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Publishes the application's own statistics alongside the timers and brew
+ * counters: how well the recipe catalog and the principal cache are doing,
+ * how many batches the OrderBatcher has committed, how many orders are
+ * waiting in each lane of the fulfillment queue, and how much of each
+ * ingredient is left.
+ *
+ * The stock gauges are refreshed every `coffeemaker.metrics.stock-interval`
+ * milliseconds rather than read on every scrape, so scraping never touches the
+ * database. An ingredient that is deleted loses its gauge at the next refresh.
+ */
+@Component
+public class CoffeeMakerMetrics {
+
+    /** Registry the meters are kept in */
+    @Autowired
+    private MeterRegistry                        registry;
+
+    /** Cached recipes */
+    @Autowired
+    private RecipeCatalog                        catalog;
+
+    /** Cached logged-in users */
+    @Autowired
+    private PrincipalCache                       principals;
+
+    /** Group-commits new orders */
+    @Autowired
+    private OrderBatcher                         orderBatcher;
+
+    /** Orders waiting for a barista */
+    @Autowired
+    private FulfillmentQueue                     queue;
+
+    /** Loads the ingredients */
+    @Autowired
+    private IngredientService                    ingredientService;
+
+    /**
+     * In-memory inventory, if enabled; its amounts are newer than the
+     * database's
+     */
+    @Autowired
+    private ObjectProvider<InventoryLedger>      ledger;
+
+    /** Last known amount of each ingredient, by name */
+    private final Map<String, AtomicInteger>     stock  = new ConcurrentHashMap<String, AtomicInteger>();
+
+    /** Gauge of each ingredient, by name */
+    private final Map<String, Gauge>             gauges = new ConcurrentHashMap<String, Gauge>();
+
+    /**
+     * Registers the cache and batch counters and the queue gauges.
+     */
+    @PostConstruct
+    public void registerMeters () {
+        FunctionCounter.builder( "coffeemaker.cache.hits", catalog, RecipeCatalog::getHits )
+                .description( "Lookups answered from a cache" ).tag( "cache", "recipes" ).register( registry );
+        FunctionCounter.builder( "coffeemaker.cache.misses", catalog, RecipeCatalog::getMisses )
+                .description( "Lookups that had to go to the database" ).tag( "cache", "recipes" )
+                .register( registry );
+        FunctionCounter.builder( "coffeemaker.cache.evictions", catalog, RecipeCatalog::getEvictions )
+                .description( "Entries dropped to make room" ).tag( "cache", "recipes" ).register( registry );
+        Gauge.builder( "coffeemaker.cache.size", catalog, RecipeCatalog::size ).description( "Entries cached" )
+                .tag( "cache", "recipes" ).register( registry );
+
+        FunctionCounter.builder( "coffeemaker.cache.hits", principals, PrincipalCache::getHits )
+                .description( "Lookups answered from a cache" ).tag( "cache", "principals" ).register( registry );
+        FunctionCounter.builder( "coffeemaker.cache.misses", principals, PrincipalCache::getMisses )
+                .description( "Lookups that had to go to the database" ).tag( "cache", "principals" )
+                .register( registry );
+        Gauge.builder( "coffeemaker.cache.size", principals, PrincipalCache::size ).description( "Entries cached" )
+                .tag( "cache", "principals" ).register( registry );
+
+        FunctionCounter.builder( "coffeemaker.orders.batches", orderBatcher, OrderBatcher::getBatches )
+                .description( "Batches of orders committed" ).register( registry );
+
+        for ( final String lane : FulfillmentQueue.LANES ) {
+            Gauge.builder( "coffeemaker.queue.waiting", queue, q -> q.size( lane ) )
+                    .description( "Orders waiting for a barista" ).tag( "lane", lane ).register( registry );
+        }
+    }
+
+    /**
+     * Updates the stock gauges, adding gauges for new ingredients and removing
+     * those of deleted ones.
+     */
+    @Scheduled ( fixedDelayString = "${coffeemaker.metrics.stock-interval:10000}" )
+    public void refreshStock () {
+        final InventoryLedger inventory = ledger.getIfAvailable();
+        final Set<String> seen = new HashSet<String>();
+        for ( final Ingredient ingredient : ingredientService.findAll() ) {
+            final Integer held = null == inventory ? null : inventory.getAmount( ingredient.getId() );
+            final int amount = null == held ? ingredient.getAmount() : held;
+            seen.add( ingredient.getName() );
+            stock.computeIfAbsent( ingredient.getName(), name -> {
+                final AtomicInteger value = new AtomicInteger();
+                gauges.put( name, Gauge.builder( "coffeemaker.inventory.amount", value, AtomicInteger::get )
+                        .description( "Units of an ingredient in the inventory" ).tag( "ingredient", name )
+                        .register( registry ) );
+                return value;
+            } ).set( amount );
+        }
+        for ( final String name : new HashSet<String>( stock.keySet() ) ) {
+            if ( !seen.contains( name ) ) {
+                stock.remove( name );
+                registry.remove( gauges.remove( name ) );
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package edu.ncsu.csc.CoffeeMaker.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ncsu.csc.CoffeeMaker.models.Orders;
+import edu.ncsu.csc.CoffeeMaker.repositories.OrdersRepository;
+
+/**
+ * Orders waiting for a barista, oldest first, in two lanes: mobile pickup,
+ * which is served first, and walk-in. The queue only lives in memory; it is
+ * rebuilt from the orders that are still Preparing when the application
+ * starts, and OrdersService tells it about every order saved or deleted once
+ * the change commits.
+ *
+ * Each lane is a binary heap of small tickets, so adding and taking an order
+ * is O(log n). An order that leaves the queue some other way, such as being
+ * marked ready by hand, is only dropped from the index of waiting orders; its
+ * stale ticket is skipped when it reaches the head of its lane, and the heaps
+ * are compacted if stale tickets come to outnumber live ones.
+ *
+ * Taking an order moves it from Preparing to Brewing with a guarded update,
+ * which is the only write the queue makes. If that update finds the order
+ * already gone or changed, the next one is tried.
+ */
+@Component
+public class FulfillmentQueue {
+
+    /** Lanes, in the order they are served */
+    public static final List<String>          LANES   = List.of( Orders.LANE_MOBILE, Orders.LANE_WALK_IN );
+
+    /** Stale tickets tolerated before the heaps are compacted */
+    private static final int                  SLACK   = 1024;
+
+    /** Oldest first; ties, such as orders saved in one batch, by id */
+    private static final Comparator<Ticket>   OLDEST  = Comparator.comparingLong( ( final Ticket t ) -> t.placed )
+            .thenComparingLong( t -> t.id );
+
+    /** Reads the waiting orders and records the transitions */
+    @Autowired
+    private OrdersRepository                  orderRepository;
+
+    /** One heap per lane, in the same order as LANES; may hold stale tickets */
+    private final List<PriorityQueue<Ticket>> heaps   = new ArrayList<PriorityQueue<Ticket>>();
+
+    /** The live ticket of every waiting order, by order id */
+    private final Map<Long, Ticket>           waiting = new HashMap<Long, Ticket>();
+
+    /** Number of waiting orders in each lane */
+    private final int[]                       sizes   = new int[LANES.size()];
+
+    /**
+     * Creates an empty queue.
+     */
+    public FulfillmentQueue () {
+        for ( int i = 0; i < LANES.size(); i++ ) {
+            heaps.add( new PriorityQueue<Ticket>( OLDEST ) );
+        }
+    }
+
+    /**
+     * Checks whether a lane exists
+     *
+     * @param lane
+     *            name of the lane
+     * @return true if orders can wait in it
+     */
+    public static boolean isLane ( final String lane ) {
+        return LANES.contains( lane );
+    }
+
+    /**
+     * Throws the queue away and loads every order that is still Preparing.
+     */
+    @PostConstruct
+    public synchronized void rebuild () {
+        clear();
+        for ( final Object[] row : orderRepository.findQueued( Orders.STATUS_PREPARING ) ) {
+            offer( (Long) row[0], (Long) row[1], (String) row[2] );
+        }
+    }
+
+    /**
+     * Takes the oldest order waiting in a lane and marks it Brewing.
+     *
+     * @param lane
+     *            lane to take from, or null to take from the first lane with
+     *            an order waiting
+     * @return the order, now Brewing, or null if none is waiting
+     */
+    public Orders next ( final String lane ) {
+        for ( ;; ) {
+            final Ticket ticket = poll( lane );
+            if ( null == ticket ) {
+                return null;
+            }
+            try {
+                if ( orderRepository.updateStatus( ticket.id, Orders.STATUS_PREPARING,
+                        Orders.STATUS_BREWING ) == 1 ) {
+                    return orderRepository.findById( ticket.id ).orElse( null );
+                }
+            }
+            catch ( final RuntimeException e ) {
+                // Still Preparing in the database, so it has to stay queued
+                offer( ticket.id, ticket.placed, LANES.get( ticket.lane ) );
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Number of orders waiting in a lane
+     *
+     * @param lane
+     *            name of the lane
+     * @return the number of waiting orders, 0 for an unknown lane
+     */
+    public synchronized int size ( final String lane ) {
+        final int index = LANES.indexOf( lane );
+        return index < 0 ? 0 : sizes[index];
+    }
+
+    /**
+     * Queues an order that was saved as Preparing, or takes it out of the
+     * queue if it was saved with any other status, once the current
+     * transaction commits.
+     *
+     * @param order
+     *            the order saved
+     */
+    public void track ( final Orders order ) {
+        final Long id = order.getId();
+        final boolean preparing = Orders.STATUS_PREPARING.equals( order.getStatus() );
+        final long placed = order.getTimePlaced();
+        final String lane = order.getLane();
+        whenCommitted( () -> {
+            if ( preparing ) {
+                offer( id, placed, lane );
+            }
+            else {
+                remove( id );
+            }
+        } );
+    }
+
+    /**
+     * Takes a deleted order out of the queue once the current transaction
+     * commits.
+     *
+     * @param id
+     *            id of the order deleted
+     */
+    public void untrack ( final Long id ) {
+        whenCommitted( () -> remove( id ) );
+    }
+
+    /**
+     * Empties the queue once the current transaction commits, after every
+     * order has been deleted.
+     */
+    public void untrackAll () {
+        whenCommitted( this::clear );
+    }
+
+    /**
+     * Drops every order from the queue.
+     */
+    private synchronized void clear () {
+        waiting.clear();
+        heaps.forEach( PriorityQueue::clear );
+        Arrays.fill( sizes, 0 );
+    }
+
+    /**
+     * Adds an order to a lane, unless it is already waiting there. Unknown
+     * lanes are treated as walk-in.
+     *
+     * @param id
+     *            id of the order
+     * @param placed
+     *            when the order was placed
+     * @param lane
+     *            name of the lane
+     */
+    private synchronized void offer ( final Long id, final long placed, final String lane ) {
+        final int index = isLane( lane ) ? LANES.indexOf( lane ) : LANES.indexOf( Orders.LANE_WALK_IN );
+        final Ticket current = waiting.get( id );
+        if ( null != current && current.lane == index ) {
+            return;
+        }
+        remove( id );
+        final Ticket ticket = new Ticket( id, placed, index );
+        waiting.put( id, ticket );
+        heaps.get( index ).add( ticket );
+        sizes[index]++;
+    }
+
+    /**
+     * Takes an order out of the queue; its ticket is left in the heap to be
+     * skipped later.
+     *
+     * @param id
+     *            id of the order
+     */
+    private synchronized void remove ( final Long id ) {
+        final Ticket ticket = waiting.remove( id );
+        if ( null == ticket ) {
+            return;
+        }
+        sizes[ticket.lane]--;
+        int tickets = 0;
+        for ( final PriorityQueue<Ticket> heap : heaps ) {
+            tickets += heap.size();
+        }
+        if ( tickets > 2 * waiting.size() + SLACK ) {
+            heaps.forEach( PriorityQueue::clear );
+            for ( final Ticket live : waiting.values() ) {
+                heaps.get( live.lane ).add( live );
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest live ticket from a lane, or from the first lane that
+     * has one, discarding stale tickets on the way.
+     *
+     * @param lane
+     *            name of the lane, or null for any
+     * @return the ticket, or null if no order is waiting
+     */
+    private synchronized Ticket poll ( final String lane ) {
+        for ( int index = 0; index < LANES.size(); index++ ) {
+            if ( null != lane && !LANES.get( index ).equals( lane ) ) {
+                continue;
+            }
+            final PriorityQueue<Ticket> heap = heaps.get( index );
+            for ( Ticket ticket = heap.poll(); null != ticket; ticket = heap.poll() ) {
+                if ( waiting.get( ticket.id ) == ticket ) {
+                    waiting.remove( ticket.id );
+                    sizes[index]--;
+                    return ticket;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs a change to the queue once the current transaction commits, or
+     * straight away if there is none.
+     *
+     * @param change
+     *            the change to make
+     */
+    private static void whenCommitted ( final Runnable change ) {
+        if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization() {
+                @Override
+                public void afterCommit () {
+                    change.run();
+                }
+            } );
+        }
+        else {
+            change.run();
+        }
+    }
+
+    /**
+     * A waiting order: just enough to order and find it.
+     */
+    private static final class Ticket {
+        /** Id of the order */
+        private final long id;
+
+        /** When the order was placed */
+        private final long placed;
+
+        /** Index of the order's lane in LANES */
+        private final int  lane;
+
+        /**
+         * Creates a ticket
+         *
+         * @param id
+         *            id of the order
+         * @param placed
+         *            when the order was placed
+         * @param lane
+         *            index of the order's lane
+         */
+        private Ticket ( final long id, final long placed, final int lane ) {
+            this.id = id;
+            this.placed = placed;
+            this.lane = lane;
+        }
+    }
+}
@@ -3,12 +3,22 @@
  */
 package edu.ncsu.csc.CoffeeMaker.services;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
+import edu.ncsu.csc.CoffeeMaker.models.RecipeSnapshot;
 import edu.ncsu.csc.CoffeeMaker.repositories.IngredientRepository;
 
 /**
@@ -27,6 +37,13 @@ public class IngredientService extends Service<Ingredient, Long> {
     @Autowired
     private IngredientRepository ingredientRepository;
 
+    /**
+     * Cups of each recipe the inventory can make, kept up to date as amounts
+     * change
+     */
+    @Autowired
+    private AvailabilityIndex    availability;
+
     @Override
     protected JpaRepository<Ingredient, Long> getRepository () {
         return ingredientRepository;
@@ -40,7 +57,204 @@ public class IngredientService extends Service<Ingredient, Long> {
      * @return found ingredient, null if none
      */
     public Ingredient findByName ( final String name ) {
-        return ingredientRepository.findByName( name );
+        return timer( "findByName" ).record( () -> ingredientRepository.findByName( name ) );
+    }
+
+    /**
+     * Checks whether there is an ingredient with the provided name, without loading
+     * it
+     *
+     * @param name
+     *            Name to look for
+     * @return true if there is one
+     */
+    public boolean existsByName ( final String name ) {
+        return timer( "existsByName" ).record( () -> ingredientRepository.existsByName( name ) );
+    }
+
+    /**
+     * Find every ingredient with one of the provided names
+     *
+     * @param names
+     *            Names of the ingredients to find
+     * @return found ingredients; names with no ingredient are left out
+     */
+    public List<Ingredient> findByNames ( final Collection<String> names ) {
+        return timer( "findByNames" ).record( () -> ingredientRepository.findByNameIn( names ) );
+    }
+
+    /**
+     * Adds an amount to each of several ingredients, for instance for a
+     * restock. The ingredients are loaded and locked with one query, checked,
+     * and written back as one JDBC batch, all in this one transaction: either
+     * every amount changes or none does.
+     *
+     * @param deltas
+     *            map of ingredient name to the amount to add; negative amounts
+     *            are taken away
+     * @return map of ingredient name to its new amount
+     * @throws NoSuchElementException
+     *             if there is no ingredient with one of the names
+     * @throws IllegalArgumentException
+     *             if an ingredient would end up with less than nothing
+     */
+    public Map<String, Integer> adjustAmounts ( final Map<String, Integer> deltas ) {
+        final List<Ingredient> ingredients = ingredientRepository.lockByNameIn( deltas.keySet() );
+        // Names are compared case-insensitively by the database but exactly
+        // here, so a name that only matches in a different case is unknown
+        final Set<String> missing = new HashSet<String>( deltas.keySet() );
+        for ( final Ingredient ingredient : ingredients ) {
+            missing.remove( ingredient.getName() );
+        }
+        if ( !missing.isEmpty() ) {
+            throw new NoSuchElementException( "No ingredient named " + missing.iterator().next() );
+        }
+        // Check everything before changing anything, so that a rejected batch
+        // leaves no modified entities behind
+        final Map<String, Integer> amounts = new LinkedHashMap<String, Integer>();
+        for ( final Ingredient ingredient : ingredients ) {
+            final long amount = (long) ingredient.getAmount() + deltas.get( ingredient.getName() );
+            if ( amount < 0 || amount > Integer.MAX_VALUE ) {
+                throw new IllegalArgumentException(
+                        "Amount of " + ingredient.getName() + " must stay between 0 and " + Integer.MAX_VALUE );
+            }
+            amounts.put( ingredient.getName(), (int) amount );
+        }
+        for ( final Ingredient ingredient : ingredients ) {
+            ingredient.setAmount( amounts.get( ingredient.getName() ) );
+        }
+        saveAll( ingredients );
+        return amounts;
+    }
+
+    /**
+     * Removes the ingredients needed for one cup of the given recipe from the
+     * inventory. Every ingredient is debited with a guarded UPDATE inside this
+     * one transaction; if any of them is short, an exception is thrown and the
+     * whole debit is rolled back, so a brew either takes all of its
+     * ingredients or none of them.
+     *
+     * A snapshot lists its ingredients in ascending id order, so concurrent
+     * brews of different recipes lock the same ingredients in the same order
+     * and cannot deadlock each other.
+     *
+     * @param recipe
+     *            the recipe being brewed
+     * @throws IllegalStateException
+     *             if there is not enough of an ingredient in the inventory
+     */
+    public void debit ( final RecipeSnapshot recipe ) {
+        debit( Collections.singletonMap( recipe, 1 ) );
+    }
+
+    /**
+     * Removes the ingredients needed for several cups of several recipes from
+     * the inventory, as debit does for one cup. The amounts the recipes need
+     * are added up first, so each ingredient is debited with one guarded
+     * UPDATE however many recipes use it, in ascending id order.
+     *
+     * @param cups
+     *            number of cups of each recipe being brewed
+     * @throws IllegalStateException
+     *             if there is not enough of an ingredient in the inventory
+     */
+    public void debit ( final Map<RecipeSnapshot, Integer> cups ) {
+        timer( "debit" ).record( () -> {
+            final long token = availability.version();
+            for ( final Map.Entry<Long, Integer> need : RecipeSnapshot.demand( cups ).entrySet() ) {
+                if ( ingredientRepository.debit( need.getKey(), need.getValue() ) == 0 ) {
+                    availability.invalidate();
+                    throw new IllegalStateException( "Not enough " + ingredientName( cups, need.getKey() )
+                            + " in inventory" );
+                }
+            }
+            for ( final Map.Entry<RecipeSnapshot, Integer> entry : cups.entrySet() ) {
+                availability.debited( token, entry.getKey(), entry.getValue() );
+            }
+        } );
+    }
 
+    /**
+     * Puts back the ingredients taken by debit for cups that were not brewed
+     * after all, for instance because their orders could not be saved.
+     * Ingredients deleted in the meantime are skipped.
+     *
+     * @param cups
+     *            number of cups of each recipe to put back
+     */
+    public void credit ( final Map<RecipeSnapshot, Integer> cups ) {
+        timer( "credit" ).record( () -> {
+            for ( final Map.Entry<Long, Integer> need : RecipeSnapshot.demand( cups ).entrySet() ) {
+                ingredientRepository.credit( need.getKey(), need.getValue() );
+            }
+            availability.invalidate();
+        } );
+    }
+
+    /**
+     * Looks up the name of one of the ingredients of some recipes.
+     *
+     * @param cups
+     *            the recipes
+     * @param id
+     *            id of the ingredient
+     * @return its name
+     */
+    private static String ingredientName ( final Map<RecipeSnapshot, Integer> cups, final Long id ) {
+        for ( final RecipeSnapshot recipe : cups.keySet() ) {
+            for ( final RecipeSnapshot.Item item : recipe.getIngredients() ) {
+                if ( id.equals( item.getIngredientId() ) ) {
+                    return item.getIngredientName();
+                }
+            }
+        }
+        return "ingredient " + id;
+    }
+
+    /**
+     * Overwrites the stored amount of several ingredients in one transaction.
+     * Used by the InventoryLedger to write its in-memory stock back to the
+     * database. Ids that no longer exist are ignored. The ledger keeps the
+     * AvailabilityIndex up to date itself, so the index is not told about
+     * these amounts, which may already be behind the ledger's.
+     *
+     * @param amounts
+     *            map of ingredient id to the amount it should now have
+     */
+    public void setAmounts ( final Map<Long, Integer> amounts ) {
+        final List<Ingredient> ingredients = ingredientRepository.findAllById( amounts.keySet() );
+        for ( final Ingredient ingredient : ingredients ) {
+            ingredient.setAmount( amounts.get( ingredient.getId() ) );
+        }
+        ingredientRepository.saveAll( ingredients );
+        ingredientRepository.flush();
+    }
+
+    @Override
+    public void save ( final Ingredient obj ) {
+        final long token = availability.version();
+        super.save( obj );
+        availability.setAmount( token, obj.getId(), obj.getAmount() );
+    }
+
+    @Override
+    public void saveAll ( final List<Ingredient> objects ) {
+        final long token = availability.version();
+        super.saveAll( objects );
+        for ( final Ingredient obj : objects ) {
+            availability.setAmount( token, obj.getId(), obj.getAmount() );
+        }
+    }
+
+    @Override
+    public void delete ( final Ingredient obj ) {
+        super.delete( obj );
+        availability.invalidate();
+    }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        availability.invalidate();
     }
 }
@@ -0,0 +1,639 @@
+package edu.ncsu.csc.CoffeeMaker.services;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
+import edu.ncsu.csc.CoffeeMaker.models.RecipeSnapshot;
+
+/**
+ * Keeps the amount of every ingredient in memory so that brewing can check and
+ * debit the inventory without touching the database. Changes are written back
+ * to the database in the background, either every
+ * `coffeemaker.inventory.ledger.flush-interval` milliseconds or as soon as
+ * `coffeemaker.inventory.ledger.batch-size` ingredients have changed.
+ *
+ * Every change is also appended to a local journal before the call returns.
+ * The journal records the new absolute amount of an ingredient rather than
+ * the delta, so replaying it is idempotent: on startup any journal left behind
+ * by a crash is written to the database before the ledger starts serving.
+ *
+ * Ingredients are guarded by a fixed set of lock stripes. A brew takes the
+ * stripes of all of its ingredients (always in ascending order, so brews
+ * cannot deadlock), checks that there is enough of each, and debits them all
+ * before releasing, so a brew is all-or-nothing.
+ *
+ * The ledger is off unless `coffeemaker.inventory.ledger.enabled` is true.
+ * While it is on it owns the inventory: all changes to ingredient amounts must
+ * go through it, and amounts read straight from the database may lag behind
+ * by up to one flush interval.
+ *
+ * The journal is flushed to the operating system on every change but not
+ * fsynced, so it survives the application crashing but not the machine losing
+ * power.
+ */
+@Component
+@ConditionalOnProperty ( name = "coffeemaker.inventory.ledger.enabled", havingValue = "true" )
+public class InventoryLedger {
+
+    /** Number of lock stripes; must be a power of two */
+    private static final int                     STRIPES   = 64;
+
+    /** Logger for flush failures */
+    private static final Logger                  LOG       = LoggerFactory.getLogger( InventoryLedger.class );
+
+    /**
+     * IngredientService used to load ingredients and write amounts back
+     */
+    @Autowired
+    private IngredientService                    ingredientService;
+
+    /**
+     * Cups of each recipe the inventory can make, told about every change
+     */
+    @Autowired
+    private AvailabilityIndex                    availability;
+
+    /** Base path of the journal files */
+    @Value ( "${coffeemaker.inventory.ledger.journal:inventory.journal}" )
+    private String                               journalPath;
+
+    /** Number of changed ingredients that triggers an early flush */
+    @Value ( "${coffeemaker.inventory.ledger.batch-size:100}" )
+    private int                                  batchSize;
+
+    /** In-memory stock, keyed by ingredient id */
+    private final Map<Long, Stock>               stock     = new ConcurrentHashMap<Long, Stock>();
+
+    /** Lock stripes guarding the entries of `stock` */
+    private final ReentrantLock[]                stripes   = new ReentrantLock[STRIPES];
+
+    /**
+     * Changes take the read lock; a flush takes the write lock just long
+     * enough to snapshot the dirty amounts and rotate the journal
+     */
+    private final ReentrantReadWriteLock         flushLock = new ReentrantReadWriteLock();
+
+    /** Number of ingredients changed since the last flush */
+    private final AtomicInteger                  dirty     = new AtomicInteger();
+
+    /** Held while a flush is writing to the database */
+    private final ReentrantLock                  flushing  = new ReentrantLock();
+
+    /** Journal segments that have been rotated out but not yet flushed */
+    private final List<Path>                     rotated   = new ArrayList<Path>();
+
+    /** Sequence number of the journal segment being written */
+    private long                                 segment;
+
+    /** Writer for the current journal segment */
+    private BufferedWriter                       journal;
+
+    /**
+     * Creates the ledger and its lock stripes.
+     */
+    public InventoryLedger () {
+        for ( int i = 0; i < STRIPES; i++ ) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Replays any journal left behind by a previous run into the database and
+     * opens a fresh journal segment.
+     *
+     * @throws IOException
+     *             if the journal cannot be read or created
+     */
+    @PostConstruct
+    public void recover () throws IOException {
+        flushLock.writeLock().lock();
+        try {
+            if ( journal != null ) {
+                journal.close();
+                journal = null;
+            }
+            final List<Path> segments = findSegments();
+            final Map<Long, Integer> amounts = new HashMap<Long, Integer>();
+            for ( final Path p : segments ) {
+                for ( final String line : Files.readAllLines( p, StandardCharsets.UTF_8 ) ) {
+                    final String[] parts = line.trim().split( " " );
+                    // A torn last line from a crash is simply skipped
+                    if ( parts.length == 2 ) {
+                        try {
+                            amounts.put( Long.valueOf( parts[0] ), Integer.valueOf( parts[1] ) );
+                        }
+                        catch ( final NumberFormatException e ) {
+                            continue;
+                        }
+                    }
+                }
+            }
+            if ( !amounts.isEmpty() ) {
+                ingredientService.setAmounts( amounts );
+            }
+            for ( final Path p : segments ) {
+                Files.delete( p );
+            }
+            rotated.clear();
+            stock.clear();
+            availability.invalidate();
+            dirty.set( 0 );
+            segment = segments.isEmpty() ? 0 : segmentNumber( segments.get( segments.size() - 1 ) ) + 1;
+            openSegment();
+        }
+        finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether there is currently enough of every ingredient to make the
+     * given recipe.
+     *
+     * @param recipe
+     *            the recipe to check
+     * @return true if the recipe can be made
+     */
+    public boolean canBrew ( final RecipeSnapshot recipe ) {
+        for ( final RecipeSnapshot.Item item : recipe.getIngredients() ) {
+            final Stock s = get( item.getIngredientId() );
+            if ( s == null || s.amount < item.getCount() ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Debits every ingredient of one cup of the given recipe, or none of them
+     * if any is short.
+     *
+     * @param recipe
+     *            the recipe being brewed
+     * @return true if the ingredients were debited, false if there was not
+     *         enough of one of them
+     */
+    public boolean tryDebit ( final RecipeSnapshot recipe ) {
+        return tryDebit( Collections.singletonMap( recipe, 1 ) );
+    }
+
+    /**
+     * Debits every ingredient of several cups of several recipes, or none of
+     * them if any is short.
+     *
+     * @param cups
+     *            number of cups of each recipe being brewed
+     * @return true if the ingredients were debited, false if there was not
+     *         enough of one of them
+     */
+    public boolean tryDebit ( final Map<RecipeSnapshot, Integer> cups ) {
+        final Map<Long, Integer> counts = new HashMap<Long, Integer>();
+        for ( final Map.Entry<Long, Integer> need : RecipeSnapshot.demand( cups ).entrySet() ) {
+            counts.put( need.getKey(), -need.getValue() );
+        }
+        final long token = availability.version();
+        final boolean debited = null != apply( counts, true );
+        if ( debited ) {
+            for ( final Map.Entry<RecipeSnapshot, Integer> entry : cups.entrySet() ) {
+                availability.debited( token, entry.getKey(), entry.getValue() );
+            }
+        }
+        else {
+            availability.invalidate();
+        }
+        flushIfFull();
+        return debited;
+    }
+
+    /**
+     * Sets the amount of an ingredient, for instance after a restock.
+     *
+     * @param id
+     *            id of the ingredient
+     * @param amount
+     *            the new amount
+     */
+    public void setAmount ( final Long id, final int amount ) {
+        final Map<Long, Integer> amounts = new HashMap<Long, Integer>();
+        amounts.put( id, amount );
+        final long token = availability.version();
+        apply( amounts, false );
+        availability.setAmount( token, id, amount );
+        flushIfFull();
+    }
+
+    /**
+     * Adds an amount to each of several ingredients, or to none of them if any
+     * would end up with less than nothing.
+     *
+     * @param deltas
+     *            map of ingredient id to the amount to add; negative amounts
+     *            are taken away
+     * @return map of ingredient id to its new amount, or null if nothing was
+     *         changed because an ingredient does not exist or would go
+     *         negative
+     */
+    public Map<Long, Integer> adjust ( final Map<Long, Integer> deltas ) {
+        final long token = availability.version();
+        final Map<Long, Integer> amounts = apply( deltas, true );
+        if ( amounts != null ) {
+            for ( final Map.Entry<Long, Integer> a : amounts.entrySet() ) {
+                availability.setAmount( token, a.getKey(), a.getValue() );
+            }
+            flushIfFull();
+        }
+        return amounts;
+    }
+
+    /**
+     * Returns the current amount of an ingredient.
+     *
+     * @param id
+     *            id of the ingredient
+     * @return the amount in stock, or null if there is no such ingredient
+     */
+    public Integer getAmount ( final Long id ) {
+        final Stock s = get( id );
+        return null == s ? null : s.amount;
+    }
+
+    /**
+     * Stops tracking an ingredient, for instance after it was deleted.
+     *
+     * @param id
+     *            id of the ingredient
+     */
+    public void forget ( final Long id ) {
+        final ReentrantLock lock = stripe( id );
+        lock.lock();
+        try {
+            stock.remove( id );
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes every changed amount back to the database and discards the
+     * journal segments that covered them.
+     */
+    @Scheduled ( fixedDelayString = "${coffeemaker.inventory.ledger.flush-interval:1000}" )
+    public void flush () {
+        flushing.lock();
+        try {
+            writeBack();
+        }
+        finally {
+            flushing.unlock();
+        }
+    }
+
+    /**
+     * Does the work of a flush. Callers must hold `flushing`, so that two
+     * flushes never write to the database out of order.
+     */
+    private void writeBack () {
+        final Map<Long, Integer> amounts = new HashMap<Long, Integer>();
+        final List<Path> covered;
+        flushLock.writeLock().lock();
+        try {
+            for ( final Map.Entry<Long, Stock> e : stock.entrySet() ) {
+                if ( e.getValue().dirty ) {
+                    amounts.put( e.getKey(), e.getValue().amount );
+                    e.getValue().dirty = false;
+                }
+            }
+            dirty.set( 0 );
+            if ( amounts.isEmpty() ) {
+                return;
+            }
+            journal.close();
+            rotated.add( segmentPath( segment ) );
+            segment++;
+            openSegment();
+            covered = new ArrayList<Path>( rotated );
+        }
+        catch ( final IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+        finally {
+            flushLock.writeLock().unlock();
+        }
+
+        try {
+            ingredientService.setAmounts( amounts );
+        }
+        catch ( final RuntimeException e ) {
+            // Keep the segments around and try again on the next flush
+            LOG.warn( "Could not flush inventory ledger", e );
+            for ( final Long id : amounts.keySet() ) {
+                final ReentrantLock lock = stripe( id );
+                lock.lock();
+                try {
+                    final Stock s = stock.get( id );
+                    if ( s != null && !s.dirty ) {
+                        s.dirty = true;
+                        dirty.incrementAndGet();
+                    }
+                }
+                finally {
+                    lock.unlock();
+                }
+            }
+            return;
+        }
+        // Everything in the older segments is now in the database too, since
+        // a failed flush leaves its ingredients marked as changed
+        for ( final Path p : covered ) {
+            try {
+                Files.deleteIfExists( p );
+            }
+            catch ( final IOException e ) {
+                LOG.warn( "Could not delete inventory journal segment " + p, e );
+            }
+        }
+        rotated.removeAll( covered );
+    }
+
+    /**
+     * Flushes outstanding changes and closes the journal on shutdown.
+     *
+     * @throws IOException
+     *             if the journal cannot be closed
+     */
+    @PreDestroy
+    public void close () throws IOException {
+        flush();
+        flushLock.writeLock().lock();
+        try {
+            journal.close();
+        }
+        finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies a set of changes atomically: either every change is made and
+     * journaled, or none is.
+     *
+     * @param changes
+     *            map of ingredient id to amount
+     * @param relative
+     *            true to add the amounts (failing if any ingredient would go
+     *            negative), false to overwrite them
+     * @return map of ingredient id to its new amount, or null if the changes
+     *         were not applied
+     */
+    private Map<Long, Integer> apply ( final Map<Long, Integer> changes, final boolean relative ) {
+        final TreeSet<Integer> held = new TreeSet<Integer>();
+        for ( final Long id : changes.keySet() ) {
+            held.add( stripeIndex( id ) );
+        }
+        flushLock.readLock().lock();
+        try {
+            for ( final Integer i : held ) {
+                stripes[i].lock();
+            }
+            try {
+                final Map<Stock, Integer> targets = new HashMap<Stock, Integer>();
+                for ( final Map.Entry<Long, Integer> c : changes.entrySet() ) {
+                    final Stock s = getLocked( c.getKey() );
+                    if ( s == null ) {
+                        return null;
+                    }
+                    final long target = relative ? (long) s.amount + c.getValue() : c.getValue();
+                    if ( target < 0 || target > Integer.MAX_VALUE ) {
+                        return null;
+                    }
+                    targets.put( s, (int) target );
+                }
+                final Map<Long, Integer> amounts = new HashMap<Long, Integer>();
+                final StringBuilder lines = new StringBuilder();
+                for ( final Map.Entry<Stock, Integer> t : targets.entrySet() ) {
+                    lines.append( t.getKey().id ).append( ' ' ).append( t.getValue() ).append( '\n' );
+                }
+                // Journal first, so a change is never visible before it is
+                // recoverable
+                synchronized ( this ) {
+                    journal.write( lines.toString() );
+                    journal.flush();
+                }
+                for ( final Map.Entry<Stock, Integer> t : targets.entrySet() ) {
+                    t.getKey().amount = t.getValue();
+                    if ( !t.getKey().dirty ) {
+                        t.getKey().dirty = true;
+                        dirty.incrementAndGet();
+                    }
+                    amounts.put( t.getKey().id, t.getValue() );
+                }
+                return amounts;
+            }
+            catch ( final IOException e ) {
+                throw new UncheckedIOException( e );
+            }
+            finally {
+                for ( final Integer i : held.descendingSet() ) {
+                    stripes[i].unlock();
+                }
+            }
+        }
+        finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes early once enough ingredients have changed.
+     */
+    private void flushIfFull () {
+        // Don't make the brew wait if a flush is already running
+        if ( dirty.get() >= batchSize && flushing.tryLock() ) {
+            try {
+                writeBack();
+            }
+            finally {
+                flushing.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the stock entry for an ingredient, taking its stripe lock.
+     *
+     * @param id
+     *            id of the ingredient
+     * @return the entry, or null if there is no such ingredient
+     */
+    private Stock get ( final Long id ) {
+        final ReentrantLock lock = stripe( id );
+        lock.lock();
+        try {
+            return getLocked( id );
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the stock entry for an ingredient, loading it from the database
+     * the first time it is used. The caller must hold its stripe lock.
+     *
+     * @param id
+     *            id of the ingredient
+     * @return the entry, or null if there is no such ingredient
+     */
+    private Stock getLocked ( final Long id ) {
+        Stock s = stock.get( id );
+        if ( s == null ) {
+            final Ingredient ingredient = ingredientService.findById( id );
+            if ( ingredient == null ) {
+                return null;
+            }
+            s = new Stock( id, ingredient.getAmount() );
+            stock.put( id, s );
+        }
+        return s;
+    }
+
+    /**
+     * Returns the lock stripe guarding an ingredient.
+     *
+     * @param id
+     *            id of the ingredient
+     * @return its lock
+     */
+    private ReentrantLock stripe ( final Long id ) {
+        return stripes[stripeIndex( id )];
+    }
+
+    /**
+     * Maps an ingredient id to its lock stripe.
+     *
+     * @param id
+     *            id of the ingredient
+     * @return index into `stripes`
+     */
+    private static int stripeIndex ( final Long id ) {
+        return Long.hashCode( id ) & ( STRIPES - 1 );
+    }
+
+    /**
+     * Opens a new journal segment for appending.
+     *
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    private void openSegment () throws IOException {
+        journal = Files.newBufferedWriter( segmentPath( segment ), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND );
+    }
+
+    /**
+     * Returns the file for a journal segment.
+     *
+     * @param n
+     *            sequence number of the segment
+     * @return path of the segment
+     */
+    private Path segmentPath ( final long n ) {
+        return Paths.get( journalPath + "." + n );
+    }
+
+    /**
+     * Extracts the sequence number from a journal segment's file name.
+     *
+     * @param p
+     *            path of the segment
+     * @return its sequence number
+     */
+    private static long segmentNumber ( final Path p ) {
+        final String name = p.getFileName().toString();
+        return Long.parseLong( name.substring( name.lastIndexOf( '.' ) + 1 ) );
+    }
+
+    /**
+     * Lists the existing journal segments, oldest first.
+     *
+     * @return the segments
+     * @throws IOException
+     *             if the directory cannot be read
+     */
+    private List<Path> findSegments () throws IOException {
+        final Path base = Paths.get( journalPath ).toAbsolutePath();
+        final File dir = base.getParent().toFile();
+        final String prefix = base.getFileName().toString() + ".";
+        final List<Path> segments = new ArrayList<Path>();
+        final File[] files = dir.listFiles();
+        if ( files == null ) {
+            Files.createDirectories( base.getParent() );
+            return segments;
+        }
+        for ( final File f : files ) {
+            final String suffix = f.getName().startsWith( prefix ) ? f.getName().substring( prefix.length() ) : "";
+            if ( !suffix.isEmpty() && suffix.chars().allMatch( Character::isDigit ) ) {
+                segments.add( f.toPath() );
+            }
+        }
+        segments.sort( ( a, b ) -> Long.compare( segmentNumber( a ), segmentNumber( b ) ) );
+        return segments;
+    }
+
+    /**
+     * The in-memory amount of one ingredient. Guarded by its lock stripe.
+     */
+    private static final class Stock {
+        /** Ingredient id */
+        private final Long id;
+
+        /** Current amount */
+        private int        amount;
+
+        /** Whether the amount has changed since the last flush */
+        private boolean    dirty;
+
+        /**
+         * Creates a stock entry.
+         *
+         * @param id
+         *            ingredient id
+         * @param amount
+         *            current amount
+         */
+        private Stock ( final Long id, final int amount ) {
+            this.id = id;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package edu.ncsu.csc.CoffeeMaker.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ncsu.csc.CoffeeMaker.models.Orders;
+
+/**
+ * Group-commits new Orders. Instead of every brew saving its order in its own
+ * transaction, orders are queued and a single writer thread saves everything
+ * that arrives within `coffeemaker.orders.batch-window` milliseconds (up to
+ * `coffeemaker.orders.batch-size` orders) as one JDBC batch in one
+ * transaction. Each caller gets a future that completes once the batch
+ * holding its order has committed.
+ *
+ * A caller that gives up waiting can cancel its future. Unless the writer has
+ * already started saving the order, it is then never saved, and the future
+ * completes with a CancellationException.
+ *
+ * If the caller is already inside a transaction, the order is saved in that
+ * transaction instead, so it commits or rolls back along with everything else
+ * the caller did.
+ */
+@Component
+public class OrderBatcher {
+
+    /**
+     * OrdersService used to save each batch
+     */
+    @Autowired
+    private OrdersService                      ordersService;
+
+    /** How long to wait for more orders before committing a batch */
+    @Value ( "${coffeemaker.orders.batch-window:5}" )
+    private long                               batchWindow;
+
+    /** Largest number of orders committed together */
+    @Value ( "${coffeemaker.orders.batch-size:50}" )
+    private int                                batchSize;
+
+    /** Orders waiting to be saved */
+    private final BlockingQueue<PendingOrder> queue   = new LinkedBlockingQueue<PendingOrder>();
+
+    /** Number of batches committed so far */
+    private final AtomicLong                   batches = new AtomicLong();
+
+    /** Thread that saves the batches */
+    private Thread                             writer;
+
+    /** Set when the application is shutting down */
+    private volatile boolean                   stopped;
+
+    /**
+     * Held while checking `stopped` and queueing an order, and while setting
+     * it, so that no order is queued after the writer may have finished
+     */
+    private final Object                       lock    = new Object();
+
+    /**
+     * Starts the writer thread.
+     */
+    @PostConstruct
+    public void start () {
+        writer = new Thread( this::run, "order-batcher" );
+        writer.setDaemon( true );
+        writer.start();
+    }
+
+    /**
+     * Stops the writer thread once everything already queued has been saved.
+     * Orders the writer did not get to in time are failed, so that nobody
+     * waits for them forever.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the writer
+     */
+    @PreDestroy
+    public void stop () throws InterruptedException {
+        synchronized ( lock ) {
+            stopped = true;
+        }
+        writer.interrupt();
+        writer.join( TimeUnit.SECONDS.toMillis( 10 ) );
+        final List<PendingOrder> left = new ArrayList<PendingOrder>();
+        queue.drainTo( left );
+        for ( final PendingOrder p : left ) {
+            p.completeExceptionally( new IllegalStateException( "Shut down before the order was saved" ) );
+        }
+    }
+
+    /**
+     * Queues an order to be saved.
+     *
+     * @param order
+     *            the new order
+     * @return a future that completes with the saved order once it has been
+     *         committed, or exceptionally if it could not be saved; cancelling
+     *         it only succeeds if the order will not be saved
+     */
+    public CompletableFuture<Orders> submit ( final Orders order ) {
+        if ( !TransactionSynchronizationManager.isActualTransactionActive() ) {
+            synchronized ( lock ) {
+                if ( !stopped ) {
+                    final PendingOrder pending = new PendingOrder( order );
+                    queue.add( pending );
+                    return pending;
+                }
+            }
+        }
+        final CompletableFuture<Orders> saved = new CompletableFuture<Orders>();
+        try {
+            ordersService.save( order );
+            saved.complete( order );
+        }
+        catch ( final RuntimeException e ) {
+            saved.completeExceptionally( e );
+        }
+        return saved;
+    }
+
+    /**
+     * Returns the number of batches committed so far.
+     *
+     * @return the number of batches
+     */
+    public long getBatches () {
+        return batches.get();
+    }
+
+    /**
+     * Body of the writer thread: wait for an order, gather whatever else
+     * arrives within the batch window, then save them all together.
+     */
+    private void run () {
+        final List<PendingOrder> batch = new ArrayList<PendingOrder>();
+        while ( !stopped || !queue.isEmpty() ) {
+            try {
+                final PendingOrder first = stopped ? queue.poll() : queue.take();
+                if ( first == null ) {
+                    continue;
+                }
+                batch.add( first );
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( batchWindow );
+                while ( batch.size() < batchSize ) {
+                    final PendingOrder next = queue.poll( deadline - System.nanoTime(), TimeUnit.NANOSECONDS );
+                    if ( next == null ) {
+                        break;
+                    }
+                    batch.add( next );
+                }
+            }
+            catch ( final InterruptedException e ) {
+                // Woken up for shutdown; save what we have and drain the rest
+                queue.drainTo( batch, Math.max( 0, batchSize - batch.size() ) );
+            }
+            if ( !batch.isEmpty() ) {
+                save( batch );
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Saves a batch of orders in one transaction, leaving out any whose caller
+     * cancelled them. If that fails, each order is retried on its own so that
+     * one bad order does not fail the others. The ids the failed batch handed
+     * out were rolled back with it, so they are cleared first and each retried
+     * order is inserted under a new one.
+     *
+     * @param pending
+     *            the orders to save
+     */
+    private void save ( final List<PendingOrder> pending ) {
+        final List<PendingOrder> batch = new ArrayList<PendingOrder>( pending.size() );
+        final List<Orders> orders = new ArrayList<Orders>( pending.size() );
+        for ( final PendingOrder p : pending ) {
+            if ( p.take() ) {
+                batch.add( p );
+                orders.add( p.order );
+            }
+        }
+        if ( batch.isEmpty() ) {
+            return;
+        }
+        try {
+            ordersService.saveAll( orders );
+            batches.incrementAndGet();
+            for ( final PendingOrder p : batch ) {
+                p.complete( p.order );
+            }
+            return;
+        }
+        catch ( final RuntimeException e ) {
+            // Fall through and try them one at a time
+        }
+        for ( final PendingOrder p : batch ) {
+            p.order.clearId();
+            try {
+                ordersService.save( p.order );
+                batches.incrementAndGet();
+                p.complete( p.order );
+            }
+            catch ( final RuntimeException e ) {
+                p.completeExceptionally( e );
+            }
+        }
+    }
+
+    /**
+     * An order waiting in the queue, which is also the future completed once
+     * it is saved.
+     */
+    private static final class PendingOrder extends CompletableFuture<Orders> {
+        /** The order to save */
+        private final Orders        order;
+
+        /** Set once the order is either being saved or cancelled */
+        private final AtomicBoolean taken = new AtomicBoolean();
+
+        /**
+         * Wraps an order for the queue.
+         *
+         * @param order
+         *            the order to save
+         */
+        private PendingOrder ( final Orders order ) {
+            this.order = order;
+        }
+
+        /**
+         * Claims the order for the writer, unless it was cancelled
+         *
+         * @return true if the order should be saved
+         */
+        private boolean take () {
+            return taken.compareAndSet( false, true );
+        }
+
+        /**
+         * Cancels the order, unless the writer has already started saving it
+         *
+         * @param mayInterruptIfRunning
+         *            ignored
+         * @return true if the order will not be saved
+         */
+        @Override
+        public boolean cancel ( final boolean mayInterruptIfRunning ) {
+            return take() && super.cancel( mayInterruptIfRunning );
+        }
+    }
+}
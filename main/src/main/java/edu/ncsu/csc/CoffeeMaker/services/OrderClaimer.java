@@ -0,0 +1,203 @@
+package edu.ncsu.csc.CoffeeMaker.services;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.CoffeeMaker.models.Orders;
+import edu.ncsu.csc.CoffeeMaker.repositories.OrdersRepository;
+
+/**
+ * Lets any number of baristas, on any number of servers, claim waiting orders
+ * straight from the database without two of them getting the same order.
+ * Unlike FulfillmentQueue, which only knows the orders placed through this
+ * server, a claim sees every order.
+ *
+ * Where the database supports it, the oldest orders are locked with `SELECT
+ * ... FOR UPDATE SKIP LOCKED`, which passes over rows another claim holds
+ * instead of waiting for them. MySQL before 8 and MariaDB before 10.6 do not
+ * have SKIP LOCKED; there each order is claimed with its own guarded update,
+ * committed straight away, and an order someone else claimed first is simply
+ * passed over. Either way an order is only ever moved from Preparing to
+ * Brewing once.
+ *
+ * `coffeemaker.orders.skip-locked` picks the method: `auto` (the default)
+ * asks the database which it supports, `on` and `off` force one.
+ */
+@Component
+public class OrderClaimer {
+
+    /** Logger for which method was picked */
+    private static final Logger  LOG     = LoggerFactory.getLogger( OrderClaimer.class );
+
+    /** Major and minor version at the start of a version string */
+    private static final Pattern VERSION = Pattern.compile( "(\\d+)\\.(\\d+)" );
+
+    /** Finds the waiting orders and claims them one at a time */
+    @Autowired
+    private OrdersRepository     orderRepository;
+
+    /** Claims orders with SKIP LOCKED, in a transaction */
+    @Autowired
+    private OrdersService        ordersService;
+
+    /** Told about orders claimed one at a time */
+    @Autowired
+    private FulfillmentQueue     queue;
+
+    /** Asked for the database version */
+    @Autowired
+    private DataSource           dataSource;
+
+    /** How to claim: auto, on or off */
+    @Value ( "${coffeemaker.orders.skip-locked:auto}" )
+    private String               mode;
+
+    /** Whether orders are claimed with SKIP LOCKED */
+    private boolean              skipLocked;
+
+    /**
+     * Picks how orders are claimed.
+     *
+     * @throws SQLException
+     *             if the database cannot be asked for its version
+     */
+    @PostConstruct
+    public void detect () throws SQLException {
+        if ( "auto".equals( mode ) ) {
+            try ( Connection connection = dataSource.getConnection() ) {
+                final DatabaseMetaData meta = connection.getMetaData();
+                skipLocked = supportsSkipLocked( meta.getDatabaseProductName(), meta.getDatabaseProductVersion() );
+                LOG.info( "Claiming orders {} SKIP LOCKED on {} {}", skipLocked ? "with" : "without",
+                        meta.getDatabaseProductName(), meta.getDatabaseProductVersion() );
+            }
+        }
+        else {
+            skipLocked = "on".equals( mode );
+        }
+    }
+
+    /**
+     * Checks whether orders are claimed with SKIP LOCKED
+     *
+     * @return true if they are, false if they are claimed one at a time
+     */
+    public boolean isSkipLocked () {
+        return skipLocked;
+    }
+
+    /**
+     * Checks whether a database understands `FOR UPDATE SKIP LOCKED`
+     *
+     * @param product
+     *            name of the database, as the driver reports it
+     * @param version
+     *            version of the database, as the driver reports it
+     * @return true for MySQL 8 or later and MariaDB 10.6 or later
+     */
+    public static boolean supportsSkipLocked ( final String product, final String version ) {
+        // MariaDB introduces itself to MySQL clients as 5.5.5-10.x.y-MariaDB
+        final String release = version.startsWith( "5.5.5-" ) ? version.substring( 6 ) : version;
+        final Matcher matcher = VERSION.matcher( release );
+        if ( !matcher.lookingAt() ) {
+            return false;
+        }
+        final int major = Integer.parseInt( matcher.group( 1 ) );
+        final int minor = Integer.parseInt( matcher.group( 2 ) );
+        if ( product.contains( "MariaDB" ) || release.contains( "MariaDB" ) ) {
+            return major > 10 || major == 10 && minor >= 6;
+        }
+        return product.contains( "MySQL" ) && major >= 8;
+    }
+
+    /**
+     * Claims up to `count` of the oldest waiting orders, moving them from
+     * Preparing to Brewing.
+     *
+     * @param lane
+     *            lane to claim from, or null to claim from the mobile lane
+     *            and then the walk-in lane
+     * @param count
+     *            most orders to claim
+     * @return the orders claimed, by lane and then oldest first, by time placed
+     *         and then id; empty if none are waiting
+     */
+    public List<Orders> claim ( final String lane, final int count ) {
+        final List<Long> ids = new ArrayList<Long>();
+        for ( final String from : null == lane ? FulfillmentQueue.LANES : List.of( lane ) ) {
+            if ( ids.size() < count ) {
+                ids.addAll( skipLocked ? ordersService.claimLocked( from, count - ids.size() )
+                        : claimGuarded( from, count - ids.size() ) );
+            }
+        }
+        if ( ids.isEmpty() ) {
+            return new ArrayList<Orders>();
+        }
+        final Map<Long, Orders> found = new HashMap<Long, Orders>();
+        for ( final Orders order : orderRepository.findAllById( ids ) ) {
+            found.put( order.getId(), order );
+        }
+        final List<Orders> claimed = new ArrayList<Orders>( ids.size() );
+        for ( final Long id : ids ) {
+            // Deleted since it was claimed
+            if ( found.containsKey( id ) ) {
+                claimed.add( found.get( id ) );
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Claims the oldest waiting orders in a lane one at a time, each with an
+     * update that only succeeds if the order is still Preparing. Concurrent
+     * claims read the same candidates, so each reads `count` at a time and
+     * moves past the ones it loses until it has enough or runs out.
+     *
+     * @param lane
+     *            lane to claim from
+     * @param count
+     *            most orders to claim
+     * @return ids of the orders claimed, oldest first
+     */
+    private List<Long> claimGuarded ( final String lane, final int count ) {
+        final List<Long> ids = new ArrayList<Long>();
+        long afterTime = 0;
+        long afterId = 0;
+        while ( ids.size() < count ) {
+            final List<Object[]> candidates = orderRepository.findQueuedAfter( Orders.STATUS_PREPARING, lane,
+                    afterTime, afterId, PageRequest.of( 0, count ) );
+            if ( candidates.isEmpty() ) {
+                break;
+            }
+            for ( final Object[] candidate : candidates ) {
+                final Long id = (Long) candidate[0];
+                afterId = id;
+                afterTime = (Long) candidate[1];
+                if ( orderRepository.updateStatus( id, Orders.STATUS_PREPARING, Orders.STATUS_BREWING ) == 1 ) {
+                    queue.untrack( id );
+                    ids.add( id );
+                    if ( ids.size() == count ) {
+                        break;
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,304 @@
+package edu.ncsu.csc.CoffeeMaker.services;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import edu.ncsu.csc.CoffeeMaker.models.JsonSerializers;
+import edu.ncsu.csc.CoffeeMaker.models.OrderSummary;
+import edu.ncsu.csc.CoffeeMaker.models.Orders;
+
+/**
+ * Pushes order changes to open browsers as server-sent events, so that order
+ * screens only hear about what changed instead of reloading every order once
+ * a second.
+ *
+ * Every event gets an increasing id, and the most recent ones are kept so that
+ * a client that reconnects with `Last-Event-ID` is sent whatever it missed. If
+ * it missed more than we kept (or the server restarted in between), it is sent
+ * a `reset` event instead and should reload its orders.
+ */
+@Component
+public class OrderEventBroadcaster {
+
+    /** Number of past events kept for clients that reconnect */
+    @Value ( "${coffeemaker.orders.events.history:1000}" )
+    private int                       history;
+
+    /** How long a single event stream stays open before the client reconnects */
+    @Value ( "${coffeemaker.orders.events.timeout:1800000}" )
+    private long                      timeout;
+
+    /** The most recent events, oldest first. Guarded by this. */
+    private final Deque<OrderEvent>   recent      = new ArrayDeque<OrderEvent>();
+
+    /** Everyone currently listening. Guarded by this. */
+    private final List<Subscriber>    subscribers = new ArrayList<Subscriber>();
+
+    /**
+     * Id of the last event sent. Starts at the current time so that ids keep
+     * increasing across restarts. Guarded by this.
+     */
+    private long                      lastId      = System.currentTimeMillis();
+
+    /**
+     * Does the actual sending, so that a slow client never holds up the request
+     * that changed an order. Having just one thread also keeps every client's
+     * events in order.
+     */
+    private final ExecutorService     sender      = Executors.newSingleThreadExecutor( r -> {
+                                                      final Thread t = new Thread( r, "order-events" );
+                                                      t.setDaemon( true );
+                                                      return t;
+                                                  } );
+
+    /**
+     * Tells listeners about a change to an order. If called inside a
+     * transaction, nothing is sent until it commits, and nothing at all if it
+     * rolls back.
+     *
+     * @param type
+     *            what happened: created, updated or deleted
+     * @param order
+     *            the order it happened to
+     */
+    public void publish ( final String type, final Orders order ) {
+        publish( type, new OrderSummary( order ) );
+    }
+
+    /**
+     * Tells listeners about a change to an order that has already been
+     * summarised, for callers that have the recipe and user names at hand and
+     * would rather not load them through the order.
+     *
+     * @param type
+     *            what happened: created, updated or deleted
+     * @param summary
+     *            the order it happened to
+     */
+    public void publish ( final String type, final OrderSummary summary ) {
+        if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization() {
+                @Override
+                public void afterCommit () {
+                    broadcast( type, summary );
+                }
+            } );
+        }
+        else {
+            broadcast( type, summary );
+        }
+    }
+
+    /**
+     * Opens an event stream.
+     *
+     * @param username
+     *            only send events for this user's orders; null for every order
+     * @param lastEventId
+     *            id of the last event the client saw, or null if it is
+     *            connecting for the first time
+     * @return the event stream
+     */
+    public synchronized SseEmitter subscribe ( final String username, final Long lastEventId ) {
+        final Subscriber sub = new Subscriber( new SseEmitter( timeout ), username );
+        sub.emitter.onCompletion( () -> unsubscribe( sub ) );
+        sub.emitter.onTimeout( () -> unsubscribe( sub ) );
+        sub.emitter.onError( e -> unsubscribe( sub ) );
+
+        final List<OrderEvent> missed = new ArrayList<OrderEvent>();
+        boolean reset = false;
+        if ( null != lastEventId && lastEventId != lastId ) {
+            final long oldest = recent.isEmpty() ? lastId + 1 : recent.getFirst().id;
+            if ( lastEventId < oldest - 1 || lastEventId > lastId ) {
+                reset = true;
+            }
+            else {
+                for ( final OrderEvent e : recent ) {
+                    if ( e.id > lastEventId && ( null == username || username.equals( e.order.getUser() ) ) ) {
+                        missed.add( e );
+                    }
+                }
+            }
+        }
+        final OrderEvent resetEvent = reset ? new OrderEvent( lastId, "reset", null ) : null;
+        subscribers.add( sub );
+        sender.execute( () -> {
+            if ( null != resetEvent ) {
+                send( sub, resetEvent );
+            }
+            for ( final OrderEvent e : missed ) {
+                send( sub, e );
+            }
+        } );
+        return sub.emitter;
+    }
+
+    /**
+     * Returns the id of the most recent event.
+     *
+     * @return the event id
+     */
+    public synchronized long getLastEventId () {
+        return lastId;
+    }
+
+    /**
+     * Sends a comment down every stream now and then so that idle connections
+     * are not closed by proxies along the way.
+     */
+    @Scheduled ( fixedDelay = 20000 )
+    public void heartbeat () {
+        final List<Subscriber> all;
+        synchronized ( this ) {
+            all = new ArrayList<Subscriber>( subscribers );
+        }
+        sender.execute( () -> {
+            for ( final Subscriber sub : all ) {
+                try {
+                    sub.emitter.send( SseEmitter.event().comment( "keepalive" ) );
+                }
+                catch ( final IOException | IllegalStateException e ) {
+                    unsubscribe( sub );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Closes every open stream.
+     */
+    @PreDestroy
+    public void close () {
+        final List<Subscriber> all;
+        synchronized ( this ) {
+            all = new ArrayList<Subscriber>( subscribers );
+            subscribers.clear();
+        }
+        sender.shutdown();
+        for ( final Subscriber sub : all ) {
+            sub.emitter.complete();
+        }
+    }
+
+    /**
+     * Records an event and queues it to be sent to everyone interested.
+     *
+     * @param type
+     *            what happened
+     * @param summary
+     *            the order it happened to
+     */
+    private synchronized void broadcast ( final String type, final OrderSummary summary ) {
+        final OrderEvent event = new OrderEvent( ++lastId, type, summary );
+        recent.addLast( event );
+        while ( recent.size() > history ) {
+            recent.removeFirst();
+        }
+        final List<Subscriber> all = new ArrayList<Subscriber>( subscribers );
+        sender.execute( () -> {
+            for ( final Subscriber sub : all ) {
+                if ( null == sub.username || sub.username.equals( summary.getUser() ) ) {
+                    send( sub, event );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Sends one event down one stream, dropping the stream if it has gone
+     * away.
+     *
+     * @param sub
+     *            who to send it to
+     * @param event
+     *            what to send
+     */
+    private void send ( final Subscriber sub, final OrderEvent event ) {
+        try {
+            sub.emitter.send( SseEmitter.event().id( String.valueOf( event.id ) )
+                    .data( JsonSerializers.PLAIN.toJson( event ), MediaType.APPLICATION_JSON ) );
+        }
+        catch ( final IOException | IllegalStateException e ) {
+            unsubscribe( sub );
+        }
+    }
+
+    /**
+     * Stops sending to a stream.
+     *
+     * @param sub
+     *            the stream to drop
+     */
+    private synchronized void unsubscribe ( final Subscriber sub ) {
+        subscribers.remove( sub );
+    }
+
+    /**
+     * One change to one order, as sent to clients.
+     */
+    private static final class OrderEvent {
+        /** Event id */
+        private final long         id;
+
+        /** What happened: created, updated, deleted or reset */
+        private final String       type;
+
+        /** The order it happened to */
+        private final OrderSummary order;
+
+        /**
+         * Creates an event.
+         *
+         * @param id
+         *            event id
+         * @param type
+         *            what happened
+         * @param order
+         *            the order it happened to
+         */
+        private OrderEvent ( final long id, final String type, final OrderSummary order ) {
+            this.id = id;
+            this.type = type;
+            this.order = order;
+        }
+    }
+
+    /**
+     * An open event stream and which orders it wants to hear about.
+     */
+    private static final class Subscriber {
+        /** The stream */
+        private final SseEmitter emitter;
+
+        /** Only send events for this user's orders; null for every order */
+        private final String     username;
+
+        /**
+         * Creates a subscriber.
+         *
+         * @param emitter
+         *            the stream
+         * @param username
+         *            whose orders to send, null for everyone's
+         */
+        private Subscriber ( final SseEmitter emitter, final String username ) {
+            this.emitter = emitter;
+            this.username = username;
+        }
+    }
+}
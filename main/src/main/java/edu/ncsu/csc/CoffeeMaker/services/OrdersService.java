@@ -1,12 +1,23 @@
 package edu.ncsu.csc.CoffeeMaker.services;
 
-import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
+import edu.ncsu.csc.CoffeeMaker.models.OrderSummary;
 import edu.ncsu.csc.CoffeeMaker.models.Orders;
+import edu.ncsu.csc.CoffeeMaker.models.RecipeSnapshot;
+import edu.ncsu.csc.CoffeeMaker.models.User;
 import edu.ncsu.csc.CoffeeMaker.repositories.OrdersRepository;
 
 /**
@@ -26,13 +37,50 @@ public class OrdersService extends Service<Orders, Long> {
      * operations on Recipe model.
      */
     @Autowired
-    private OrdersRepository orderRepository;
+    private OrdersRepository  orderRepository;
+
+    /**
+     * IngredientService, to debit the inventory for orders checked out
+     */
+    @Autowired
+    private IngredientService ingredientService;
+
+    /**
+     * Queue of orders waiting for a barista, told about every order saved or
+     * deleted
+     */
+    @Autowired
+    private FulfillmentQueue  queue;
 
     @Override
     protected JpaRepository<Orders, Long> getRepository () {
         return orderRepository;
     }
 
+    @Override
+    public void save ( final Orders obj ) {
+        super.save( obj );
+        queue.track( obj );
+    }
+
+    @Override
+    public void saveAll ( final List<Orders> objects ) {
+        super.saveAll( objects );
+        objects.forEach( queue::track );
+    }
+
+    @Override
+    public void delete ( final Orders obj ) {
+        super.delete( obj );
+        queue.untrack( obj.getId() );
+    }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        queue.untrackAll();
+    }
+
     /**
      * Find a order with the provided name
      *
@@ -41,7 +89,114 @@ public class OrdersService extends Service<Orders, Long> {
      * @return found order, null if none
      */
     public Orders findByID ( final int id ) {
-        return orderRepository.findById( id );
+        return timer( "findByID" ).record( () -> orderRepository.findById( id ) );
+    }
+
+    /**
+     * Find one page of a user's orders, newest first
+     *
+     * @param user
+     *            user whose orders to find
+     * @param page
+     *            page number, starting at 0
+     * @param size
+     *            number of orders per page
+     * @return the requested page of orders
+     */
+    public Page<Orders> findByUser ( final User user, final int page, final int size ) {
+        return timer( "findByUser" ).record( () -> orderRepository.findByUser( user,
+                PageRequest.of( page, size, Sort.by( Sort.Direction.DESC, "id" ) ) ) );
+    }
+
+    /**
+     * Find orders matching the given filters, oldest first
+     *
+     * @param status
+     *            status to match, null for any
+     * @param user
+     *            username to match, null for any
+     * @param from
+     *            earliest time placed, inclusive
+     * @param to
+     *            latest time placed, exclusive
+     * @param afterId
+     *            only return orders with a larger id
+     * @param page
+     *            page number, starting at 0
+     * @param size
+     *            number of orders per page
+     * @return the matching orders
+     */
+    public List<Orders> findFiltered ( final String status, final String user, final long from, final long to,
+            final long afterId, final int page, final int size ) {
+        return timer( "findFiltered" ).record(
+                () -> orderRepository.findFiltered( status, user, from, to, afterId, PageRequest.of( page, size ) )
+                        .getContent() );
+    }
+
+    /**
+     * Brews a cart of drinks: debits the ingredients every cup needs together
+     * and saves the orders as one JDBC batch, all in one transaction. If an
+     * ingredient is short nothing is debited and no order is saved.
+     *
+     * @param cups
+     *            number of cups of each recipe in the cart
+     * @param orders
+     *            one new order per cup
+     * @throws IllegalStateException
+     *             if there is not enough of an ingredient in the inventory
+     */
+    public void checkout ( final Map<RecipeSnapshot, Integer> cups, final List<Orders> orders ) {
+        ingredientService.debit( cups );
+        saveAll( orders );
+    }
+
+    /**
+     * Claims up to `count` of the oldest orders waiting in a lane, moving them
+     * from Preparing to Brewing. The orders are locked with SKIP LOCKED, so
+     * concurrent claims, even from other servers, neither wait for each other
+     * nor get the same order. Needs MySQL 8 or MariaDB 10.6.
+     *
+     * @param lane
+     *            lane to claim from
+     * @param count
+     *            most orders to claim
+     * @return ids of the orders claimed, oldest first
+     */
+    public List<Long> claimLocked ( final String lane, final int count ) {
+        final List<Long> ids = new ArrayList<Long>();
+        for ( final Number id : orderRepository.lockQueuedIds( Orders.STATUS_PREPARING, lane, count ) ) {
+            ids.add( id.longValue() );
+        }
+        if ( !ids.isEmpty() ) {
+            orderRepository.updateStatus( ids, Orders.STATUS_PREPARING, Orders.STATUS_BREWING );
+            ids.forEach( queue::untrack );
+        }
+        return ids;
+    }
+
+    /**
+     * Hands a summary of every order matching the given filters to `sink`,
+     * oldest first, one row at a time so that memory use does not grow with
+     * the number of orders.
+     *
+     * @param status
+     *            status to match, null for any
+     * @param user
+     *            username to match, null for any
+     * @param from
+     *            earliest time placed, inclusive
+     * @param to
+     *            latest time placed, exclusive
+     * @param sink
+     *            receives each order
+     */
+    @Transactional ( readOnly = true )
+    public void streamFiltered ( final String status, final String user, final long from, final long to,
+            final Consumer<OrderSummary> sink ) {
+        try ( Stream<OrderSummary> orders = orderRepository.streamFiltered( status, user, from, to, 0 ) ) {
+            orders.forEach( sink );
+        }
     }
 
 }
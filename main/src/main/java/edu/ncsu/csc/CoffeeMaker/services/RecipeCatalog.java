@@ -0,0 +1,264 @@
+package edu.ncsu.csc.CoffeeMaker.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.models.RecipeSnapshot;
+import edu.ncsu.csc.CoffeeMaker.repositories.RecipeRepository;
+
+/**
+ * Read-through cache of the recipe book. Recipes are read on every brew and
+ * every menu load but hardly ever change, so the catalog keeps immutable
+ * snapshots of the most recently used ones (up to
+ * `coffeemaker.recipes.cache-size`) and of the full list. RecipeService throws
+ * everything away whenever a recipe is saved or deleted.
+ */
+@Component
+public class RecipeCatalog {
+
+    /**
+     * RecipeRepository, used to load recipes that are not cached
+     */
+    @Autowired
+    private RecipeRepository                  recipeRepository;
+
+    /** Most recipes kept by name */
+    @Value ( "${coffeemaker.recipes.cache-size:100}" )
+    private int                               capacity;
+
+    /**
+     * Cached recipes by lower-case name, least recently used first. Guarded
+     * by this.
+     */
+    private final Map<String, RecipeSnapshot> byName    = new LruMap();
+
+    /** The same recipes by id. Guarded by this. */
+    private final Map<Long, RecipeSnapshot>   byId      = new HashMap<Long, RecipeSnapshot>();
+
+    /** Every recipe, or null if not cached. Guarded by this. */
+    private List<RecipeSnapshot>              all;
+
+    /**
+     * Bumped on every invalidation, so that a load that started before a
+     * change is not cached after it. Guarded by this.
+     */
+    private long                              generation;
+
+    /** Lookups answered from the cache */
+    private final AtomicLong                  hits      = new AtomicLong();
+
+    /** Lookups that had to go to the database */
+    private final AtomicLong                  misses    = new AtomicLong();
+
+    /** Recipes dropped to stay within the size limit */
+    private final AtomicLong                  evictions = new AtomicLong();
+
+    /**
+     * Find a recipe by name, ignoring case as the database does
+     *
+     * @param name
+     *            name of the recipe
+     * @return the recipe, null if there is none
+     */
+    public RecipeSnapshot findByName ( final String name ) {
+        final long gen;
+        synchronized ( this ) {
+            final RecipeSnapshot cached = byName.get( key( name ) );
+            if ( null != cached ) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            gen = generation;
+        }
+        misses.incrementAndGet();
+        return load( recipeRepository.findByName( name ), gen );
+    }
+
+    /**
+     * Find a recipe by id
+     *
+     * @param id
+     *            id of the recipe
+     * @return the recipe, null if there is none
+     */
+    public RecipeSnapshot findById ( final Long id ) {
+        final long gen;
+        synchronized ( this ) {
+            final RecipeSnapshot cached = byId.get( id );
+            if ( null != cached ) {
+                hits.incrementAndGet();
+                // Count this as a use for eviction purposes
+                byName.get( key( cached.getName() ) );
+                return cached;
+            }
+            gen = generation;
+        }
+        misses.incrementAndGet();
+        return load( null == id ? null : recipeRepository.findById( id ).orElse( null ), gen );
+    }
+
+    /**
+     * Find every recipe
+     *
+     * @return all recipes, which cannot be modified
+     */
+    public List<RecipeSnapshot> findAll () {
+        final long gen;
+        synchronized ( this ) {
+            if ( null != all ) {
+                hits.incrementAndGet();
+                return all;
+            }
+            gen = generation;
+        }
+        misses.incrementAndGet();
+        final List<RecipeSnapshot> loaded = new ArrayList<RecipeSnapshot>();
+        for ( final Recipe r : recipeRepository.findAll() ) {
+            loaded.add( new RecipeSnapshot( r ) );
+        }
+        final List<RecipeSnapshot> snapshot = Collections.unmodifiableList( loaded );
+        synchronized ( this ) {
+            if ( gen == generation ) {
+                all = snapshot;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Forget everything cached. If called inside a transaction, this happens
+     * again once it finishes, so that nothing read in the meantime survives.
+     */
+    public void invalidate () {
+        clear();
+        if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization() {
+                @Override
+                public void afterCompletion ( final int status ) {
+                    clear();
+                }
+            } );
+        }
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache
+     *
+     * @return the number of hits
+     */
+    public long getHits () {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that had to go to the database
+     *
+     * @return the number of misses
+     */
+    public long getMisses () {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of recipes dropped to stay within the size limit
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions () {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the number of recipes currently cached by name
+     *
+     * @return the number of cached recipes
+     */
+    public synchronized int size () {
+        return byName.size();
+    }
+
+    /**
+     * Snapshots a recipe loaded from the database and caches it, unless the
+     * catalog was invalidated while it was being loaded.
+     *
+     * @param recipe
+     *            the recipe loaded, or null
+     * @param gen
+     *            generation when the load started
+     * @return the snapshot, null if there was no recipe
+     */
+    private RecipeSnapshot load ( final Recipe recipe, final long gen ) {
+        if ( null == recipe ) {
+            return null;
+        }
+        final RecipeSnapshot snapshot = new RecipeSnapshot( recipe );
+        synchronized ( this ) {
+            if ( gen == generation ) {
+                byName.put( key( snapshot.getName() ), snapshot );
+                byId.put( snapshot.getId(), snapshot );
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Key a recipe is cached under by name. Recipe names are compared without
+     * regard to case in the database, so they are here too.
+     *
+     * @param name
+     *            name of the recipe
+     * @return the name in lower case, null if there is none
+     */
+    private static String key ( final String name ) {
+        return null == name ? null : name.toLowerCase( Locale.ROOT );
+    }
+
+    /**
+     * Drops everything cached
+     */
+    private synchronized void clear () {
+        generation++;
+        byName.clear();
+        byId.clear();
+        all = null;
+    }
+
+    /**
+     * Recipes by name in least recently used order, dropping the oldest once
+     * there are more than `capacity` of them.
+     */
+    private final class LruMap extends LinkedHashMap<String, RecipeSnapshot> {
+        /** Required because LinkedHashMap is serializable */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates an empty map ordered by access.
+         */
+        private LruMap () {
+            super( 16, 0.75f, true );
+        }
+
+        @Override
+        protected boolean removeEldestEntry ( final Map.Entry<String, RecipeSnapshot> eldest ) {
+            if ( size() <= capacity ) {
+                return false;
+            }
+            byId.remove( eldest.getValue().getId() );
+            evictions.incrementAndGet();
+            return true;
+        }
+    }
+}
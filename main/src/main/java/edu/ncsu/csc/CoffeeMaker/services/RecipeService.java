@@ -1,18 +1,33 @@
 package edu.ncsu.csc.CoffeeMaker.services;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
+import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
 import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.models.RecipeToIngredient;
+import edu.ncsu.csc.CoffeeMaker.repositories.IngredientRepository;
 import edu.ncsu.csc.CoffeeMaker.repositories.RecipeRepository;
 
 /**
  * The RecipeService is used to handle CRUD operations on the Recipe model. In
  * addition to all functionality from `Service`, we also have functionality for
- * retrieving a single Recipe by name.
+ * retrieving a single Recipe by name. Every write throws away what the
+ * RecipeCatalog and the AvailabilityIndex have worked out.
  *
  * @author Kai Presler-Marshall
  *
@@ -26,7 +41,27 @@ public class RecipeService extends Service<Recipe, Long> {
      * operations on Recipe model.
      */
     @Autowired
-    private RecipeRepository recipeRepository;
+    private RecipeRepository     recipeRepository;
+
+    /**
+     * Cached recipes, invalidated whenever a recipe changes
+     */
+    @Autowired
+    private RecipeCatalog        catalog;
+
+    /**
+     * Cups of each recipe the inventory can make, rebuilt whenever a recipe
+     * changes
+     */
+    @Autowired
+    private AvailabilityIndex    availability;
+
+    /**
+     * IngredientRepository, to attach the ingredients of new recipes to this
+     * transaction
+     */
+    @Autowired
+    private IngredientRepository ingredientRepository;
 
     @Override
     protected JpaRepository<Recipe, Long> getRepository () {
@@ -41,7 +76,170 @@ public class RecipeService extends Service<Recipe, Long> {
      * @return found recipe, null if none
      */
     public Recipe findByName ( final String name ) {
-        return recipeRepository.findByName( name );
+        return timer( "findByName" ).record( () -> recipeRepository.findByName( name ) );
+    }
+
+    /**
+     * Checks whether there is a recipe with the provided name, without loading
+     * it
+     *
+     * @param name
+     *            Name to look for
+     * @return true if there is one
+     */
+    public boolean existsByName ( final String name ) {
+        return timer( "existsByName" ).record( () -> recipeRepository.existsByName( name ) );
+    }
+
+    /**
+     * Find every recipe with one of the provided names
+     *
+     * @param names
+     *            Names of the recipes to find
+     * @return found recipes; names with no recipe are left out
+     */
+    public List<Recipe> findByNames ( final Collection<String> names ) {
+        return timer( "findByNames" ).record( () -> recipeRepository.findByNameIn( names ) );
+    }
+
+    /**
+     * Saves several new recipes in one transaction. Each recipe's ingredients
+     * need only have their ingredient and count set: they are linked to the
+     * recipe once it has an id, and the ingredients may have been loaded in
+     * another transaction. Nothing is written until the end, when the
+     * recipes and then their ingredients go out as JDBC batches, so either
+     * every recipe is saved or none is.
+     *
+     * @param recipes
+     *            the recipes to save, none of which may have been saved before
+     */
+    public void createAll ( final List<Recipe> recipes ) {
+        for ( final Recipe recipe : recipes ) {
+            final List<RecipeToIngredient> items = recipe.getRecipeToIngredients();
+            recipe.setIngredients( new ArrayList<RecipeToIngredient>() );
+            recipeRepository.save( recipe );
+            for ( final RecipeToIngredient item : items ) {
+                // Linking a new row to a detached ingredient is refused
+                recipe.addIngredient( ingredientRepository.getOne( item.getIngredient().getId() ), item.getCount() );
+            }
+        }
+        recipeRepository.flush();
+        catalog.invalidate();
+        availability.invalidate();
+    }
+
+    /**
+     * Changes a recipe in place, keeping its id, so orders of it stay attached.
+     * The recipe is loaded once and its ingredients are compared with the
+     * edited ones: only rows for ingredients that were added, removed or whose
+     * count changed are written, and the recipe row only if its name or price
+     * changed. The edited ingredients are looked up by name with one query.
+     *
+     * The edited recipe's ingredients need only have their name and count
+     * set. Like addIngredient, ingredients with a count of zero or less are
+     * left out of the recipe. A missing name, price or ingredient list keeps
+     * the current one.
+     *
+     * @param name
+     *            name of the recipe to change
+     * @param edited
+     *            what the recipe should become
+     * @return the changed recipe, or null if there is no recipe with the name
+     * @throws IllegalArgumentException
+     *             if an ingredient does not exist or is listed more than once;
+     *             nothing is changed
+     */
+    public Recipe edit ( final String name, final Recipe edited ) {
+        final Recipe recipe = recipeRepository.findByName( name );
+        if ( null == recipe ) {
+            return null;
+        }
+
+        final boolean keepIngredients = null == edited.getRecipeToIngredients();
+        final List<RecipeToIngredient> items = keepIngredients ? new ArrayList<RecipeToIngredient>()
+                : edited.getRecipeToIngredients();
+        final Set<String> names = new HashSet<String>();
+        for ( final RecipeToIngredient item : items ) {
+            if ( null == item || null == item.getIngredient() || null == item.getIngredient().getName() ) {
+                throw new IllegalArgumentException( "Recipe with unknown ingredient given" );
+            }
+            names.add( item.getIngredient().getName() );
+        }
+        // Names are matched ignoring case, as the database does for single
+        // lookups
+        final Map<String, Ingredient> ingredients = new HashMap<String, Ingredient>();
+        for ( final Ingredient ingredient : ingredientRepository.findByNameIn( names ) ) {
+            ingredients.put( ingredient.getName().toLowerCase( Locale.ROOT ), ingredient );
+        }
+        final Map<Long, Ingredient> wanted = new LinkedHashMap<Long, Ingredient>();
+        final Map<Long, Integer> counts = new HashMap<Long, Integer>();
+        for ( final RecipeToIngredient item : items ) {
+            final Ingredient ingredient = ingredients.get( item.getIngredient().getName().toLowerCase( Locale.ROOT ) );
+            if ( null == ingredient ) {
+                throw new IllegalArgumentException( "Recipe with unknown ingredient given" );
+            }
+            if ( null != wanted.put( ingredient.getId(), ingredient ) ) {
+                throw new IllegalArgumentException(
+                        "Recipe " + recipe.getName() + " lists " + ingredient.getName() + " more than once" );
+            }
+            counts.put( ingredient.getId(), item.getCount() );
+        }
+
+        final Iterator<RecipeToIngredient> current = recipe.getRecipeToIngredients().iterator();
+        while ( !keepIngredients && current.hasNext() ) {
+            final RecipeToIngredient item = current.next();
+            final Long id = item.getIngredient().getId();
+            final Ingredient kept = wanted.remove( id );
+            if ( null == kept || counts.get( id ) <= 0 ) {
+                // Orphan removal deletes the row
+                current.remove();
+            }
+            else if ( item.getCount() != counts.get( id ) ) {
+                item.setCount( counts.get( id ) );
+            }
+        }
+        for ( final Ingredient ingredient : wanted.values() ) {
+            recipe.addIngredient( ingredient, counts.get( ingredient.getId() ) );
+        }
+        if ( null != edited.getName() && !edited.getName().isEmpty() ) {
+            recipe.setName( edited.getName() );
+        }
+        if ( null != edited.getPrice() ) {
+            recipe.setPrice( edited.getPrice() );
+        }
+
+        recipeRepository.flush();
+        catalog.invalidate();
+        availability.invalidate();
+        return recipe;
+    }
+
+    @Override
+    public void save ( final Recipe obj ) {
+        super.save( obj );
+        catalog.invalidate();
+        availability.invalidate();
+    }
+
+    @Override
+    public void saveAll ( final List<Recipe> objects ) {
+        super.saveAll( objects );
+        catalog.invalidate();
+        availability.invalidate();
+    }
+
+    @Override
+    public void delete ( final Recipe obj ) {
+        super.delete( obj );
+        catalog.invalidate();
+        availability.invalidate();
+    }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        catalog.invalidate();
+        availability.invalidate();
     }
 
 }
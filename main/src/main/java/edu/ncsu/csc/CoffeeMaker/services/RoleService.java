@@ -1,5 +1,8 @@
 package edu.ncsu.csc.CoffeeMaker.services;
 
+import java.util.Collection;
+import java.util.List;
+
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,11 +11,13 @@ import org.springframework.stereotype.Component;
 
 import edu.ncsu.csc.CoffeeMaker.models.Role;
 import edu.ncsu.csc.CoffeeMaker.repositories.RoleRepository;
+import edu.ncsu.csc.CoffeeMaker.security.PrincipalCache;
 
 /**
  * The RoleService is used to handle CRUD operations on the Role model. In
  * addition to all functionality from `Service`, we also have functionality for
- * retrieving a single Role by name.
+ * retrieving a single Role by name. Every write throws away the users cached
+ * by the PrincipalCache, since they hold on to their Role.
  *
  * @author Kai Presler-Marshall
  *
@@ -28,6 +33,12 @@ public class RoleService extends Service<Role, Long> {
     @Autowired
     private RoleRepository roleRepository;
 
+    /**
+     * Logged-in users and their roles, thrown away whenever a role changes
+     */
+    @Autowired
+    private PrincipalCache principals;
+
     @Override
     protected JpaRepository<Role, Long> getRepository () {
         return roleRepository;
@@ -41,7 +52,54 @@ public class RoleService extends Service<Role, Long> {
      * @return found role, null if none
      */
     public Role findByName ( final String roleName ) {
-        return roleRepository.findByRoleName( roleName );
+        return timer( "findByName" ).record( () -> roleRepository.findByRoleName( roleName ) );
+    }
+
+    /**
+     * Checks whether there is a role with the provided name, without loading
+     * it
+     *
+     * @param roleName
+     *            Name to look for
+     * @return true if there is one
+     */
+    public boolean existsByName ( final String roleName ) {
+        return timer( "existsByName" ).record( () -> roleRepository.existsByRoleName( roleName ) );
+    }
+
+    /**
+     * Find every role with one of the provided names
+     *
+     * @param roleNames
+     *            Names of the roles to find
+     * @return found roles; names with no role are left out
+     */
+    public List<Role> findByNames ( final Collection<String> roleNames ) {
+        return timer( "findByNames" ).record( () -> roleRepository.findByRoleNameIn( roleNames ) );
+    }
+
+    @Override
+    public void save ( final Role obj ) {
+        super.save( obj );
+        principals.invalidateAll();
+    }
+
+    @Override
+    public void saveAll ( final List<Role> objects ) {
+        super.saveAll( objects );
+        principals.invalidateAll();
+    }
+
+    @Override
+    public void delete ( final Role obj ) {
+        super.delete( obj );
+        principals.invalidateAll();
+    }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        principals.invalidateAll();
     }
 
 }
@@ -1,12 +1,17 @@
 package edu.ncsu.csc.CoffeeMaker.services;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Example;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import edu.ncsu.csc.CoffeeMaker.models.DomainObject;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 /**
  * The Service class is responsible for providing CRUD operations against the
@@ -21,6 +26,10 @@ import edu.ncsu.csc.CoffeeMaker.models.DomainObject;
  * IngredientRepository) with the `@Autowired` annotation on it. You'll also
  * need to implement `getRepository()` to return this field.
  *
+ * Every operation is timed under `coffeemaker.service`, tagged with the entity
+ * (the Service's name without "Service") and the operation. Subclasses can
+ * time their own operations the same way with `timer()`.
+ *
  * @param <T>
  *            Type of entity that will be handled by this service
  * @param <K>
@@ -32,6 +41,13 @@ import edu.ncsu.csc.CoffeeMaker.models.DomainObject;
  */
 abstract public class Service <T extends DomainObject, K> {
 
+    /** Registry the timers are kept in */
+    @Autowired
+    private MeterRegistry            registry;
+
+    /** Timer of each operation, by operation name */
+    private final Map<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+
     /**
      * Returns the Repository that Spring uses for interacting with the
      * database. This is the only method that _must_ be overridden in child
@@ -50,7 +66,7 @@ abstract public class Service <T extends DomainObject, K> {
      *            The object to save into the database.
      */
     public void save ( final T obj ) {
-        getRepository().saveAndFlush( obj );
+        timer( "save" ).record( () -> getRepository().saveAndFlush( obj ) );
     }
 
     /**
@@ -61,7 +77,7 @@ abstract public class Service <T extends DomainObject, K> {
      * @return All records stored in the database.
      */
     public List<T> findAll () {
-        return getRepository().findAll();
+        return timer( "findAll" ).record( () -> getRepository().findAll() );
     }
 
     /**
@@ -73,8 +89,10 @@ abstract public class Service <T extends DomainObject, K> {
      *            A List of objects to save to the database.
      */
     public void saveAll ( final List<T> objects ) {
-        getRepository().saveAll( objects );
-        getRepository().flush();
+        timer( "saveAll" ).record( () -> {
+            getRepository().saveAll( objects );
+            getRepository().flush();
+        } );
     }
 
     /**
@@ -82,20 +100,31 @@ abstract public class Service <T extends DomainObject, K> {
      * database, but not from memory. Trying to save it again after deletion is
      * undefined behaviour. YMMV.
      *
+     * Like `save()`, the change is flushed straight away. Hibernate would
+     * otherwise hold deletes back until after any inserts, so a record could
+     * not be deleted and re-created under the same unique name in one
+     * transaction.
+     *
      * @param obj
      *            The object to delete from the database.
      */
     public void delete ( final T obj ) {
-        getRepository().delete( obj );
+        timer( "delete" ).record( () -> {
+            getRepository().delete( obj );
+            getRepository().flush();
+        } );
     }
 
     /**
      * Removes all records of a given type from the database. For example,
      * `UserService.deleteAll()` would delete all Users. Be very careful when
-     * calling this.
+     * calling this. The deletes are flushed straight away, as in `delete()`.
      */
     public void deleteAll () {
-        getRepository().deleteAll();
+        timer( "deleteAll" ).record( () -> {
+            getRepository().deleteAll();
+            getRepository().flush();
+        } );
     }
 
     /**
@@ -106,7 +135,7 @@ abstract public class Service <T extends DomainObject, K> {
      * @return The number of records in the DB.
      */
     public long count () {
-        return getRepository().count();
+        return timer( "count" ).record( () -> getRepository().count() );
     }
 
     /**
@@ -119,8 +148,32 @@ abstract public class Service <T extends DomainObject, K> {
      * @return All matching records found, an empty list if none were.
      */
     protected List<T> findBy ( final Example<T> example ) {
-        return getRepository().findAll( example );
+        return timer( "findBy" ).record( () -> getRepository().findAll( example ) );
+
+    }
+
+    /**
+     * Checks whether any record matches the example given, without loading
+     * any of them.
+     *
+     * @param example
+     *            Example object to match against
+     * @return true if at least one record matches
+     */
+    protected boolean existsBy ( final Example<T> example ) {
+        return timer( "existsBy" ).record( () -> getRepository().exists( example ) );
+    }
 
+    /**
+     * Counts the records that match the example given, without loading any
+     * of them.
+     *
+     * @param example
+     *            Example object to match against
+     * @return the number of matching records
+     */
+    protected long countBy ( final Example<T> example ) {
+        return timer( "countBy" ).record( () -> getRepository().count( example ) );
     }
 
     /**
@@ -131,7 +184,7 @@ abstract public class Service <T extends DomainObject, K> {
      * @return If the object was found
      */
     public boolean existsById ( final K id ) {
-        return getRepository().existsById( id );
+        return timer( "existsById" ).record( () -> getRepository().existsById( id ) );
     }
 
     /**
@@ -145,11 +198,47 @@ abstract public class Service <T extends DomainObject, K> {
         if ( null == id ) {
             return null;
         }
-        final Optional<T> res = getRepository().findById( id );
+        final Optional<T> res = timer( "findById" ).record( () -> getRepository().findById( id ) );
         if ( res.isPresent() ) {
             return res.get();
         }
         return null;
     }
 
+    /**
+     * Returns a reference to the object with the provided ID without loading
+     * it. Useful for pointing an association at a record whose id is already
+     * known; the record is only read if the reference is actually used.
+     *
+     * @param id
+     *            ID of the object
+     * @return a reference to the object
+     */
+    public T getReference ( final K id ) {
+        return getRepository().getOne( id );
+    }
+
+    /**
+     * Returns the timer for one of this Service's operations, creating it the
+     * first time.
+     *
+     * @param operation
+     *            name of the operation
+     * @return the timer
+     */
+    protected Timer timer ( final String operation ) {
+        return timers.computeIfAbsent( operation, op -> Timer.builder( "coffeemaker.service" )
+                .description( "Time spent in Service operations" ).tag( "entity", getEntityName() )
+                .tag( "operation", op ).register( registry ) );
+    }
+
+    /**
+     * Name of the entity this Service handles, as used to tag its timers.
+     *
+     * @return the Service's class name without the "Service" suffix
+     */
+    protected String getEntityName () {
+        return getClass().getSimpleName().replaceFirst( "Service$", "" );
+    }
+
 }
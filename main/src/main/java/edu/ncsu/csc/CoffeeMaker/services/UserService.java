@@ -1,5 +1,8 @@
 package edu.ncsu.csc.CoffeeMaker.services;
 
+import java.util.Collection;
+import java.util.List;
+
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,11 +11,13 @@ import org.springframework.stereotype.Component;
 
 import edu.ncsu.csc.CoffeeMaker.models.User;
 import edu.ncsu.csc.CoffeeMaker.repositories.UserRepository;
+import edu.ncsu.csc.CoffeeMaker.security.PrincipalCache;
 
 /**
  * The UserService is used to handle CRUD operations on the User model. In
  * addition to all functionality from `Service`, we also have functionality for
- * retrieving a single User by name.
+ * retrieving a single User by name. Every write throws away the users cached
+ * by the PrincipalCache.
  *
  * @author Kai Presler-Marshall
  *
@@ -28,6 +33,12 @@ public class UserService extends Service<User, Long> {
     @Autowired
     private UserRepository userRepository;
 
+    /**
+     * Logged-in users, thrown away whenever a user changes
+     */
+    @Autowired
+    private PrincipalCache principals;
+
     @Override
     protected JpaRepository<User, Long> getRepository () {
         return userRepository;
@@ -41,7 +52,67 @@ public class UserService extends Service<User, Long> {
      * @return found user, null if none
      */
     public User findByName ( final String name ) {
-        return userRepository.findByUsername( name );
+        return timer( "findByName" ).record( () -> userRepository.findByUsername( name ) );
+    }
+
+    /**
+     * Checks whether there is an user with the provided name, without loading
+     * it
+     *
+     * @param name
+     *            Name to look for
+     * @return true if there is one
+     */
+    public boolean existsByName ( final String name ) {
+        return timer( "existsByName" ).record( () -> userRepository.existsByUsername( name ) );
+    }
+
+    /**
+     * Find every user with one of the provided names
+     *
+     * @param names
+     *            Names of the users to find
+     * @return found users; names with no user are left out
+     */
+    public List<User> findByNames ( final Collection<String> names ) {
+        return timer( "findByNames" ).record( () -> userRepository.findByUsernameIn( names ) );
+    }
+
+    /**
+     * Find a logged-in user by name, from the PrincipalCache if it is there.
+     * The user returned is shared with other requests and must not be
+     * modified; use `findByName` to get one to change.
+     *
+     * @param name
+     *            Name of the user to find
+     * @return found user, null if none
+     */
+    public User findPrincipal ( final String name ) {
+        return principals.find( name );
+    }
+
+    @Override
+    public void save ( final User obj ) {
+        super.save( obj );
+        principals.invalidateAll();
+    }
+
+    @Override
+    public void saveAll ( final List<User> objects ) {
+        super.saveAll( objects );
+        principals.invalidateAll();
+    }
+
+    @Override
+    public void delete ( final User obj ) {
+        super.delete( obj );
+        principals.invalidateAll();
+    }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        principals.invalidateAll();
     }
 
 }
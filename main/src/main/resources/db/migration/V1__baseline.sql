@@ -0,0 +1,65 @@
+-- Schema as Hibernate generated it with ddl-auto: update, constraint names
+-- included, so that a database created here matches one that Hibernate
+-- built. As there, the foreign keys create their own indexes. Databases that
+-- predate these migrations are baselined at this version and start from V2.
+
+CREATE TABLE hibernate_sequence (
+  next_val bigint(20) DEFAULT NULL
+) ENGINE=InnoDB;
+
+INSERT INTO hibernate_sequence VALUES (1);
+
+CREATE TABLE ingredient (
+  id bigint(20) NOT NULL,
+  amount int(11) NOT NULL,
+  name varchar(255) DEFAULT NULL,
+  PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE recipe (
+  id bigint(20) NOT NULL,
+  name varchar(255) DEFAULT NULL,
+  price int(11) DEFAULT NULL,
+  PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE recipe_to_ingredient (
+  count int(11) NOT NULL,
+  ingredient_id bigint(20) NOT NULL,
+  recipe_id bigint(20) NOT NULL,
+  PRIMARY KEY (ingredient_id, recipe_id),
+  CONSTRAINT FK79ko6nu8ymjt677ajgkir4yb0 FOREIGN KEY (ingredient_id) REFERENCES ingredient (id),
+  CONSTRAINT FKrwkv42blrc4bhutvma1lcoqph FOREIGN KEY (recipe_id) REFERENCES recipe (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE role (
+  roleid bigint(20) NOT NULL,
+  add_ingredient_type bit(1) NOT NULL,
+  add_ingredients bit(1) NOT NULL,
+  add_staff_account bit(1) NOT NULL,
+  make_coffee bit(1) NOT NULL,
+  role_name varchar(255) DEFAULT NULL,
+  PRIMARY KEY (roleid)
+) ENGINE=InnoDB;
+
+CREATE TABLE user (
+  user_id bigint(20) NOT NULL,
+  password varchar(255) DEFAULT NULL,
+  username varchar(255) DEFAULT NULL,
+  role_roleid bigint(20) DEFAULT NULL,
+  PRIMARY KEY (user_id),
+  CONSTRAINT FK68snrlh8cnghutc758lug13jg FOREIGN KEY (role_roleid) REFERENCES role (roleid)
+) ENGINE=InnoDB;
+
+CREATE TABLE orders (
+  id bigint(20) NOT NULL,
+  amount_change float NOT NULL,
+  amount_paid float NOT NULL,
+  status varchar(255) DEFAULT NULL,
+  time_placed bigint(20) NOT NULL,
+  recipe_id bigint(20) DEFAULT NULL,
+  user_user_id bigint(20) DEFAULT NULL,
+  PRIMARY KEY (id),
+  CONSTRAINT FKcooejujh32cpgw33d02snbufy FOREIGN KEY (user_user_id) REFERENCES user (user_id),
+  CONSTRAINT FKd9qupxrei167bh1s55wlf1x7w FOREIGN KEY (recipe_id) REFERENCES recipe (id)
+) ENGINE=InnoDB;
@@ -0,0 +1,16 @@
+-- Every request looks up a user, and most look up an ingredient, recipe or
+-- role by name; without an index each of those lookups scans its table.
+-- The indexes are unique because the API already refuses duplicate names.
+-- Like the lookups, they ignore case, following the column collation.
+
+ALTER TABLE ingredient ADD CONSTRAINT uk_ingredient_name UNIQUE (name);
+
+ALTER TABLE recipe ADD CONSTRAINT uk_recipe_name UNIQUE (name);
+
+ALTER TABLE user ADD CONSTRAINT uk_user_username UNIQUE (username);
+
+ALTER TABLE role ADD CONSTRAINT uk_role_role_name UNIQUE (role_name);
+
+-- Order history is read by user and status. The new index also serves the
+-- user foreign key, so InnoDB drops the index the foreign key made for itself.
+CREATE INDEX idx_orders_user_status ON orders (user_user_id, status);
@@ -0,0 +1,7 @@
+-- Orders now wait in one of two lanes, mobile pickup or walk-in. Orders
+-- placed before lanes existed have no lane and count as walk-in.
+
+ALTER TABLE orders ADD COLUMN lane varchar(255) DEFAULT NULL;
+
+-- The fulfillment queue is rebuilt from the waiting orders at startup.
+CREATE INDEX idx_orders_status ON orders (status, id);
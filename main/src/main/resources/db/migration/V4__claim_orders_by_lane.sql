@@ -0,0 +1,14 @@
+-- Baristas claim waiting orders straight from the database, lane by lane and
+-- oldest first. Every order gets a lane so that the claim can walk an index
+-- on (status, lane, time_placed, id) and stop after the rows it needs. Ids
+-- are handed out in blocks per server, so only time_placed says which order
+-- is oldest. The new index also serves the status lookups of the (status, id)
+-- index it replaces.
+
+UPDATE orders SET lane = 'walk-in' WHERE lane IS NULL;
+
+ALTER TABLE orders MODIFY lane varchar(255) NOT NULL DEFAULT 'walk-in';
+
+CREATE INDEX idx_orders_status_lane ON orders (status, lane, time_placed, id);
+
+DROP INDEX idx_orders_status ON orders;
@@ -0,0 +1,171 @@
+package edu.ncsu.csc.CoffeeMaker.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import com.google.gson.JsonParser;
+
+import edu.ncsu.csc.CoffeeMaker.models.Role;
+import edu.ncsu.csc.CoffeeMaker.models.User;
+import edu.ncsu.csc.CoffeeMaker.services.RoleService;
+import edu.ncsu.csc.CoffeeMaker.services.UserService;
+
+@ExtendWith ( SpringExtension.class )
+@SpringBootTest ( properties = { "coffeemaker.security.token-auth.enabled=true" } )
+@AutoConfigureMockMvc
+public class APIAuthTest {
+
+    @Autowired
+    private MockMvc     mvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @BeforeEach
+    public void setup () {
+        if ( null == roleService.findByName( "Kiosk" ) ) {
+            final Role role = new Role();
+            role.setRoleName( "Kiosk" );
+            role.setMakeCoffee( true );
+            roleService.save( role );
+        }
+        final User kiosk = new User( "kiosk", new BCryptPasswordEncoder().encode( "secret" ) );
+        kiosk.setRole( roleService.findByName( "Kiosk" ) );
+        userService.save( kiosk );
+    }
+
+    @AfterEach
+    public void teardown () {
+        final User kiosk = userService.findByName( "kiosk" );
+        if ( null != kiosk ) {
+            userService.delete( kiosk );
+        }
+        roleService.delete( roleService.findByName( "Kiosk" ) );
+    }
+
+    @Test
+    public void testTokenLifecycle () throws Exception {
+        final String token = login();
+
+        final MvcResult self = mvc.perform( get( "/api/v1/users/self" ).header( "Authorization", "Bearer " + token ) )
+                .andExpect( status().isOk() ).andExpect( jsonPath( "$.username" ).value( "kiosk" ) ).andReturn();
+        // Token requests must not leave a session behind
+        assertNull( self.getRequest().getSession( false ) );
+
+        mvc.perform( get( "/api/v1/users/self" ).header( "Authorization", "Bearer not-a-token" ) )
+                .andExpect( status().isUnauthorized() );
+
+        mvc.perform( delete( "/api/v1/auth/token" ).header( "Authorization", "Bearer " + token ) )
+                .andExpect( status().isOk() );
+        mvc.perform( get( "/api/v1/users/self" ).header( "Authorization", "Bearer " + token ) )
+                .andExpect( status().isUnauthorized() );
+    }
+
+    @Test
+    public void testPasswordChangeRevokes () throws Exception {
+        final String token = login();
+        mvc.perform( get( "/api/v1/users/self" ).header( "Authorization", "Bearer " + token ) )
+                .andExpect( status().isOk() );
+
+        final User kiosk = userService.findByName( "kiosk" );
+        kiosk.setPassword( new BCryptPasswordEncoder().encode( "changed" ) );
+        userService.save( kiosk );
+
+        mvc.perform( get( "/api/v1/users/self" ).header( "Authorization", "Bearer " + token ) )
+                .andExpect( status().isUnauthorized() );
+    }
+
+    /**
+     * Compares throughput of HTTP Basic, which checks the BCrypt hash on every
+     * request, against bearer tokens. Slow, so only run on request:
+     * `mvn test -Dtest=APIAuthTest -Dcoffeemaker.loadtest=true`
+     */
+    @Test
+    @EnabledIfSystemProperty ( named = "coffeemaker.loadtest", matches = "true" )
+    public void testThroughput () throws Exception {
+        final String token = login();
+        final int requests = 2000;
+        final double basic = throughput( requests, () -> get( "/api/v1/users/self" ).with(
+                httpBasic( "kiosk", "secret" ) ) );
+        final double bearer = throughput( requests,
+                () -> get( "/api/v1/users/self" ).header( "Authorization", "Bearer " + token ) );
+        final int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf( "HTTP Basic: %.0f req/s (%.0f per core)%n", basic, basic / cores );
+        System.out.printf( "Bearer:     %.0f req/s (%.0f per core)%n", bearer, bearer / cores );
+    }
+
+    /**
+     * Logs in as the kiosk user with HTTP Basic and asks for a token.
+     *
+     * @return the token
+     */
+    private String login () throws Exception {
+        final String body = mvc.perform( post( "/api/v1/auth/token" ).with( httpBasic( "kiosk", "secret" ) ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        return JsonParser.parseString( body ).getAsJsonObject().get( "token" ).getAsString();
+    }
+
+    /**
+     * Sends the same request many times from one thread per core.
+     *
+     * @param requests
+     *            how many requests to send
+     * @param request
+     *            builds the request
+     * @return requests per second
+     */
+    private double throughput ( final int requests, final RequestFactory request ) throws Exception {
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final ExecutorService pool = Executors.newFixedThreadPool( threads );
+        final long start = System.nanoTime();
+        final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for ( int i = 0; i < requests; i++ ) {
+            results.add( pool.submit( () -> mvc.perform( request.build() ).andReturn().getResponse().getStatus() ) );
+        }
+        for ( final Future<Integer> result : results ) {
+            assertEquals( 200, (int) result.get() );
+        }
+        final double seconds = ( System.nanoTime() - start ) / 1e9;
+        pool.shutdown();
+        return requests / seconds;
+    }
+
+    /**
+     * Builds a fresh request each time, since request builders are not
+     * thread-safe.
+     */
+    @FunctionalInterface
+    private interface RequestFactory {
+        RequestBuilder build ();
+    }
+
+}
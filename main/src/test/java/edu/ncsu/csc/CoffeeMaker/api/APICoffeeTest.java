@@ -1,11 +1,23 @@
 package edu.ncsu.csc.CoffeeMaker.api;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import javax.transaction.Transactional;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,14 +25,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
 
 import edu.ncsu.csc.CoffeeMaker.common.TestUtils;
 import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
 import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.repositories.OrdersRepository;
 import edu.ncsu.csc.CoffeeMaker.services.IngredientService;
+import edu.ncsu.csc.CoffeeMaker.services.OrdersService;
 import edu.ncsu.csc.CoffeeMaker.services.RecipeService;
 
 @ExtendWith ( SpringExtension.class )
@@ -37,6 +53,12 @@ public class APICoffeeTest {
     @Autowired
     private IngredientService ingrService;
 
+    @Autowired
+    private OrdersService     ordersService;
+
+    @Autowired
+    private OrdersRepository  ordersRepository;
+
     /**
      * Sets up the tests.
      */
@@ -50,12 +72,26 @@ public class APICoffeeTest {
         final Recipe recipe = new Recipe();
         recipe.setName( "Coffee" );
         recipe.setPrice( 50 );
+        service.save( recipe );
         recipe.addIngredient( ingrService.findByName( "Coffee" ), 3 );
         recipe.addIngredient( ingrService.findByName( "Milk" ), 4 );
         recipe.addIngredient( ingrService.findByName( "Tea" ), 0 );
         service.save( recipe );
     }
 
+    /**
+     * Clears out everything the tests created, since the concurrency test has
+     * to commit its data for the brewing threads to see it.
+     */
+    @AfterEach
+    public void teardown () {
+        // The brews are attached to the manager's order history, which
+        // cascades to the orders, so clear them in bulk instead
+        ordersRepository.deleteAllInBatch();
+        service.deleteAll();
+        ingrService.deleteAll();
+    }
+
     @Test
     @Transactional
     @WithMockUser ( authorities = { "MAKE_COFFEE" } )
@@ -83,6 +119,167 @@ public class APICoffeeTest {
 
     }
 
+    /**
+     * Fires many brews at once against a limited inventory. The guarded debit
+     * must let exactly as many through as the stock allows and never drive an
+     * ingredient negative.
+     */
+    @Test
+    public void testConcurrentPurchases () throws Exception {
+        final Ingredient coffee = ingrService.findByName( "Coffee" );
+        coffee.setAmount( 900 );
+        ingrService.save( coffee );
+        final Ingredient milk = ingrService.findByName( "Milk" );
+        milk.setAmount( 800 );
+        ingrService.save( milk );
+
+        // Milk runs out first: 800 / 4 = 200 cups. Every thread is held at
+        // the start line so that the first wave of brews really does race,
+        // and the pool stays full of brews until the stock is gone.
+        final int requests = 2000;
+        final int threads = 64;
+        final ExecutorService pool = Executors.newFixedThreadPool( threads );
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for ( int i = 0; i < requests; i++ ) {
+            results.add( pool.submit( () -> {
+                start.await();
+                return mvc
+                        .perform( post( "/api/v1/makecoffee/Coffee" )
+                                .with( user( "manager" ).authorities( new SimpleGrantedAuthority( "MAKE_COFFEE" ) ) )
+                                .contentType( MediaType.APPLICATION_JSON ).content( TestUtils.asJsonString( 50 ) ) )
+                        .andReturn().getResponse().getStatus();
+            } ) );
+        }
+        start.countDown();
+        int brewed = 0;
+        for ( final Future<Integer> result : results ) {
+            if ( result.get() == 200 ) {
+                brewed++;
+            }
+        }
+        pool.shutdown();
+
+        assertEquals( 200, brewed );
+        assertEquals( 900 - 3 * 200, ingrService.findByName( "Coffee" ).getAmount() );
+        assertEquals( 0, ingrService.findByName( "Milk" ).getAmount() );
+        assertEquals( 200, ordersService.count() );
+    }
+
+    /**
+     * Checks that the availability index follows brews and restocks, and that
+     * a sold out recipe is turned away.
+     */
+    @Test
+    @WithMockUser
+    public void testAvailableRecipes () throws Exception {
+        // 10 / 3 coffee, 10 / 4 milk
+        mvc.perform( get( "/api/v1/recipes/available" ) ).andExpect( status().isOk() )
+                .andExpect( jsonPath( "$.Coffee" ).value( 2 ) );
+
+        brew().andExpect( status().isOk() );
+        mvc.perform( get( "/api/v1/recipes/available" ) ).andExpect( jsonPath( "$.Coffee" ).value( 1 ) );
+
+        mvc.perform( put( "/api/v1/ingredients/Milk" )
+                .with( user( "manager" ).authorities( new SimpleGrantedAuthority( "ADD_INGREDIENTS" ) ) )
+                .contentType( MediaType.APPLICATION_JSON ).content( TestUtils.asJsonString( 40 ) ) )
+                .andExpect( status().isOk() );
+        // Coffee is now the limit: 7 / 3
+        mvc.perform( get( "/api/v1/recipes/available" ) ).andExpect( jsonPath( "$.Coffee" ).value( 2 ) );
+
+        brew().andExpect( status().isOk() );
+        brew().andExpect( status().isOk() );
+        mvc.perform( get( "/api/v1/recipes/available" ) ).andExpect( jsonPath( "$.Coffee" ).value( 0 ) );
+        brew().andExpect( status().isBadRequest() )
+                .andExpect( jsonPath( "$.message" ).value( "Not enough ingredients in inventory" ) );
+        assertEquals( 1, ingrService.findByName( "Coffee" ).getAmount() );
+    }
+
+    /**
+     * Checks out carts of several drinks. The whole cart's demand is checked
+     * at once, so a cart is turned away even when each of its cups could be
+     * brewed on its own, and nothing is debited for it.
+     */
+    @Test
+    public void testCheckout () throws Exception {
+        // Three cups need 12 milk; there are 10
+        checkout( "[{\"recipe\": \"Coffee\", \"quantity\": 3, \"amountPaid\": 150}]" )
+                .andExpect( status().isBadRequest() )
+                .andExpect( jsonPath( "$.message" ).value( "Not enough ingredients in inventory" ) );
+        assertEquals( 10, ingrService.findByName( "Milk" ).getAmount() );
+        assertEquals( 0, ordersService.count() );
+
+        checkout( "[{\"recipe\": \"Coffee\", \"quantity\": 1, \"amountPaid\": 60},"
+                + " {\"recipe\": \"Coffee\", \"quantity\": 1, \"amountPaid\": 50}]" ).andExpect( status().isOk() )
+                        .andExpect( jsonPath( "$.change" ).value( 10 ) )
+                        .andExpect( jsonPath( "$.lines[0].change" ).value( 10 ) )
+                        .andExpect( jsonPath( "$.lines[1].change" ).value( 0 ) )
+                        .andExpect( jsonPath( "$.lines[0].orders.length()" ).value( 1 ) )
+                        .andExpect( jsonPath( "$.lines[1].orders.length()" ).value( 1 ) );
+        assertEquals( 4, ingrService.findByName( "Coffee" ).getAmount() );
+        assertEquals( 2, ingrService.findByName( "Milk" ).getAmount() );
+        assertEquals( 2, ordersService.count() );
+
+        checkout( "[{\"recipe\": \"Mocha\", \"quantity\": 1, \"amountPaid\": 60}]" )
+                .andExpect( status().isNotFound() );
+        checkout( "[{\"recipe\": \"Coffee\", \"quantity\": 2, \"amountPaid\": 60}]" )
+                .andExpect( status().isConflict() );
+        checkout( "[{\"recipe\": \"Coffee\", \"quantity\": 0, \"amountPaid\": 60}]" )
+                .andExpect( status().isBadRequest() );
+        checkout( "[]" ).andExpect( status().isBadRequest() );
+        assertEquals( 2, ordersService.count() );
+    }
+
+    /**
+     * Checks that large payments and large demands are handled without
+     * overflowing.
+     */
+    @Test
+    public void testCheckoutLargeAmounts () throws Exception {
+        final String max = String.valueOf( Integer.MAX_VALUE );
+        checkout( "[{\"recipe\": \"Coffee\", \"quantity\": 1, \"amountPaid\": " + max + "},"
+                + " {\"recipe\": \"Coffee\", \"quantity\": 1, \"amountPaid\": " + max + "}]" )
+                        .andExpect( status().isOk() )
+                        .andExpect( jsonPath( "$.change" ).value( 2L * ( Integer.MAX_VALUE - 50 ) ) );
+
+        // Two cups of this need more sugar than an amount can hold
+        ingrService.save( new Ingredient( "Sugar", Integer.MAX_VALUE ) );
+        final Recipe syrup = new Recipe();
+        syrup.setName( "Syrup" );
+        syrup.setPrice( 1 );
+        service.save( syrup );
+        syrup.addIngredient( ingrService.findByName( "Sugar" ), 1 << 30 );
+        service.save( syrup );
+        checkout( "[{\"recipe\": \"Syrup\", \"quantity\": 2, \"amountPaid\": 2}]" )
+                .andExpect( status().isBadRequest() );
+        assertEquals( Integer.MAX_VALUE, ingrService.findByName( "Sugar" ).getAmount() );
+        assertEquals( 2, ordersService.count() );
+    }
+
+    /**
+     * Checks out a cart as the manager
+     *
+     * @param lines
+     *            the cart's lines, as a JSON array
+     * @return the result of the request
+     */
+    private ResultActions checkout ( final String lines ) throws Exception {
+        return mvc.perform( post( "/api/v1/orders/checkout" )
+                .with( user( "manager" ).authorities( new SimpleGrantedAuthority( "MAKE_COFFEE" ) ) )
+                .contentType( MediaType.APPLICATION_JSON ).content( "{\"lines\": " + lines + "}" ) );
+    }
+
+    /**
+     * Brews one Coffee as the manager
+     *
+     * @return the result of the request
+     */
+    private ResultActions brew () throws Exception {
+        return mvc.perform( post( "/api/v1/makecoffee/Coffee" )
+                .with( user( "manager" ).authorities( new SimpleGrantedAuthority( "MAKE_COFFEE" ) ) )
+                .contentType( MediaType.APPLICATION_JSON ).content( TestUtils.asJsonString( 50 ) ) );
+    }
+
     // @Test
     // @Transactional
     // public void testPurchaseBeverage3 () throws Exception {
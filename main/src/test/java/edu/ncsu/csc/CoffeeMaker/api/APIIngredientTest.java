@@ -4,10 +4,15 @@ import static org.junit.Assert.fail;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.transaction.Transactional;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -184,4 +189,52 @@ public class APIIngredientTest {
             fail();
         }
     }
+
+    @Test
+    @WithMockUser ( authorities = { "ADD_INGREDIENTS" } )
+    public void testUpdateCounts () throws Exception {
+        ingrService.save( new Ingredient( "Coffee", 5 ) );
+        ingrService.save( new Ingredient( "Milk", 3 ) );
+        ingrService.save( new Ingredient( "Sugar", 1 ) );
+
+        final Map<String, Integer> deltas = new HashMap<String, Integer>();
+        deltas.put( "Coffee", 10 );
+        deltas.put( "Milk", -3 );
+        mvc.perform( patch( "/api/v1/ingredients" ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( deltas ) ) ).andExpect( status().isOk() )
+                .andExpect( jsonPath( "$.Coffee" ).value( 15 ) ).andExpect( jsonPath( "$.Milk" ).value( 0 ) )
+                .andExpect( jsonPath( "$.Sugar" ).doesNotExist() );
+        assertEquals( 15, ingrService.findByName( "Coffee" ).getAmount() );
+        assertEquals( 0, ingrService.findByName( "Milk" ).getAmount() );
+        assertEquals( 1, ingrService.findByName( "Sugar" ).getAmount() );
+
+        /* A bad entry rejects the whole batch */
+        deltas.put( "Sugar", -2 );
+        mvc.perform( patch( "/api/v1/ingredients" ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( deltas ) ) ).andExpect( status().isBadRequest() );
+        deltas.remove( "Sugar" );
+        deltas.put( "Mocha", 1 );
+        mvc.perform( patch( "/api/v1/ingredients" ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( deltas ) ) ).andExpect( status().isNotFound() );
+        assertEquals( 15, ingrService.findByName( "Coffee" ).getAmount() );
+        assertEquals( 1, ingrService.findByName( "Sugar" ).getAmount() );
+    }
+
+    @Test
+    @WithMockUser ( authorities = { "ADD_INGREDIENTS" } )
+    public void testUpdateCountsEmpty () throws Exception {
+        ingrService.save( new Ingredient( "Coffee", 5 ) );
+        mvc.perform( patch( "/api/v1/ingredients" ).contentType( MediaType.APPLICATION_JSON ).content( "{}" ) )
+                .andExpect( status().isBadRequest() );
+        assertEquals( 5, ingrService.findByName( "Coffee" ).getAmount() );
+    }
+
+    @Test
+    @WithMockUser ( authorities = { "MAKE_COFFEE" } )
+    public void testUpdateCountsNoAuth () throws Exception {
+        ingrService.save( new Ingredient( "Coffee", 5 ) );
+        mvc.perform( patch( "/api/v1/ingredients" ).contentType( MediaType.APPLICATION_JSON )
+                .content( "{\"Coffee\": 10}" ) ).andExpect( status().isForbidden() );
+        assertEquals( 5, ingrService.findByName( "Coffee" ).getAmount() );
+    }
 }
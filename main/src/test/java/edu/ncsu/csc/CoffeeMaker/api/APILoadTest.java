@@ -0,0 +1,348 @@
+package edu.ncsu.csc.CoffeeMaker.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.google.gson.JsonParser;
+
+import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
+import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.models.Role;
+import edu.ncsu.csc.CoffeeMaker.models.User;
+import edu.ncsu.csc.CoffeeMaker.repositories.OrdersRepository;
+import edu.ncsu.csc.CoffeeMaker.services.IngredientService;
+import edu.ncsu.csc.CoffeeMaker.services.RecipeService;
+import edu.ncsu.csc.CoffeeMaker.services.RoleService;
+import edu.ncsu.csc.CoffeeMaker.services.UserService;
+
+/**
+ * Drives the running server over HTTP with concurrent virtual users and
+ * records the latency of each endpoint. Every virtual user logs in for a
+ * bearer token and then, until time runs out, lists the recipes, buys a
+ * coffee and reads back its own orders, as the make coffee page does.
+ *
+ * Runs against the same database as the other API tests. Slow, so only run
+ * on request: `mvn test -Dtest=APILoadTest -Dcoffeemaker.loadtest=true`,
+ * optionally with
+ * <ul>
+ * <li>`-Dcoffeemaker.loadtest.users=...` virtual users (default 16)</li>
+ * <li>`-Dcoffeemaker.loadtest.warmup=...` seconds not recorded (default
+ * 5)</li>
+ * <li>`-Dcoffeemaker.loadtest.duration=...` seconds recorded (default
+ * 30)</li>
+ * <li>`-Dcoffeemaker.loadtest.think=...` milliseconds each user waits between
+ * rounds (default 0)</li>
+ * <li>`-Dcoffeemaker.loadtest.report=...` report file (default
+ * target/loadtest-report.txt)</li>
+ * </ul>
+ */
+@ExtendWith ( SpringExtension.class )
+@SpringBootTest ( webEnvironment = WebEnvironment.RANDOM_PORT,
+        properties = { "coffeemaker.security.token-auth.enabled=true", "spring.jpa.show-sql=false" } )
+@EnabledIfSystemProperty ( named = "coffeemaker.loadtest", matches = "true" )
+public class APILoadTest {
+
+    /** Recipe every virtual user buys */
+    private static final String         RECIPE      = "Load Test Coffee";
+
+    /** Prefix of the virtual users' accounts */
+    private static final String         USER        = "loadtest";
+
+    /** Password of the virtual users' accounts */
+    private static final String         PASSWORD    = "secret";
+
+    /** Slowest response the histograms can tell apart, in microseconds */
+    private static final long           MAX_LATENCY = TimeUnit.MINUTES.toMicros( 1 );
+
+    @LocalServerPort
+    private int                         port;
+
+    @Autowired
+    private RecipeService               recipeService;
+
+    @Autowired
+    private IngredientService           ingredientService;
+
+    @Autowired
+    private UserService                 userService;
+
+    @Autowired
+    private RoleService                 roleService;
+
+    @Autowired
+    private OrdersRepository            ordersRepository;
+
+    private final int                   users       = Integer.getInteger( "coffeemaker.loadtest.users", 16 );
+
+    private final int                   warmup      = Integer.getInteger( "coffeemaker.loadtest.warmup", 5 );
+
+    private final int                   duration    = Integer.getInteger( "coffeemaker.loadtest.duration", 30 );
+
+    private final int                   think       = Integer.getInteger( "coffeemaker.loadtest.think", 0 );
+
+    private final String                report   = System.getProperty( "coffeemaker.loadtest.report",
+            "target/loadtest-report.txt" );
+
+    /** Shared by all virtual users, like a browser per user would be */
+    private final HttpClient            client      = HttpClient.newHttpClient();
+
+    /** Results for each endpoint, in the order the flow calls them */
+    private final Map<String, Endpoint> results     = new LinkedHashMap<String, Endpoint>();
+
+    @BeforeEach
+    public void setup () {
+        ordersRepository.deleteAllInBatch();
+        recipeService.deleteAll();
+        ingredientService.deleteAll();
+
+        // Deep enough that the load test never runs out
+        final Ingredient coffee = new Ingredient( "Coffee", Integer.MAX_VALUE );
+        final Ingredient milk = new Ingredient( "Milk", Integer.MAX_VALUE );
+        ingredientService.save( coffee );
+        ingredientService.save( milk );
+        final Recipe recipe = new Recipe();
+        recipe.setName( RECIPE );
+        recipe.setPrice( 50 );
+        recipeService.save( recipe );
+        recipe.addIngredient( coffee, 3 );
+        recipe.addIngredient( milk, 1 );
+        recipeService.save( recipe );
+
+        Role role = roleService.findByName( "Customer" );
+        if ( null == role ) {
+            role = new Role();
+            role.setRoleName( "Customer" );
+            role.setMakeCoffee( true );
+            roleService.save( role );
+        }
+        final String hash = new BCryptPasswordEncoder().encode( PASSWORD );
+        final List<User> accounts = new ArrayList<User>();
+        for ( int i = 0; i < users; i++ ) {
+            final User user = new User( USER + i, hash );
+            user.setRole( role );
+            accounts.add( user );
+        }
+        userService.saveAll( accounts );
+    }
+
+    @AfterEach
+    public void teardown () {
+        ordersRepository.deleteAllInBatch();
+        for ( int i = 0; i < users; i++ ) {
+            final User user = userService.findByName( USER + i );
+            if ( null != user ) {
+                userService.delete( user );
+            }
+        }
+        recipeService.deleteAll();
+        ingredientService.deleteAll();
+    }
+
+    @Test
+    public void testLoad () throws Exception {
+        results.put( "GET /api/v1/recipes", new Endpoint() );
+        results.put( "POST /api/v1/makecoffee/{name}", new Endpoint() );
+        results.put( "GET /api/v1/orders", new Endpoint() );
+
+        final List<String> tokens = new ArrayList<String>();
+        for ( int i = 0; i < users; i++ ) {
+            tokens.add( login( USER + i ) );
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool( users );
+        final long start = System.nanoTime();
+        final long recordFrom = start + TimeUnit.SECONDS.toNanos( warmup );
+        final long end = recordFrom + TimeUnit.SECONDS.toNanos( duration );
+        final List<Future< ? >> running = new ArrayList<Future< ? >>();
+        for ( int i = 0; i < users; i++ ) {
+            final String username = USER + i;
+            final String token = tokens.get( i );
+            running.add( pool.submit( () -> {
+                runUser( username, token, recordFrom, end );
+                return null;
+            } ) );
+        }
+        for ( final Future< ? > user : running ) {
+            user.get();
+        }
+        pool.shutdown();
+
+        final double seconds = ( System.nanoTime() - recordFrom ) / 1e9;
+        writeReport( System.out, seconds, false );
+        final File file = new File( report );
+        if ( null != file.getParentFile() ) {
+            file.getParentFile().mkdirs();
+        }
+        try ( PrintStream out = new PrintStream( file, StandardCharsets.UTF_8 ) ) {
+            writeReport( out, seconds, true );
+        }
+        System.out.println( "Report written to " + file.getAbsolutePath() );
+
+        for ( final Map.Entry<String, Endpoint> endpoint : results.entrySet() ) {
+            assertTrue( endpoint.getValue().latency.getTotalCount() > 0, endpoint.getKey() + " was never called" );
+            assertEquals( 0, endpoint.getValue().errors.get(), endpoint.getKey() + " failed" );
+        }
+    }
+
+    /**
+     * One virtual user: goes through the flow over and over until the time is
+     * up. Only requests that start after the warmup are recorded.
+     *
+     * @param username
+     *            the user's account
+     * @param token
+     *            the user's bearer token
+     * @param recordFrom
+     *            when to start recording, as System.nanoTime()
+     * @param end
+     *            when to stop, as System.nanoTime()
+     */
+    private void runUser ( final String username, final String token, final long recordFrom, final long end )
+            throws Exception {
+        final HttpRequest recipes = request( token, "/api/v1/recipes" ).GET().build();
+        final HttpRequest brew = request( token, "/api/v1/makecoffee/" + RECIPE.replace( " ", "%20" ) )
+                .header( "Content-Type", "application/json" ).POST( HttpRequest.BodyPublishers.ofString( "60" ) )
+                .build();
+        final HttpRequest orders = request( token, "/api/v1/orders?size=20&user=" + username ).GET().build();
+        while ( System.nanoTime() < end ) {
+            send( "GET /api/v1/recipes", recipes, recordFrom );
+            send( "POST /api/v1/makecoffee/{name}", brew, recordFrom );
+            send( "GET /api/v1/orders", orders, recordFrom );
+            if ( think > 0 ) {
+                Thread.sleep( think );
+            }
+        }
+    }
+
+    /**
+     * Sends a request and records how long it took.
+     *
+     * @param endpoint
+     *            name the results are recorded under
+     * @param request
+     *            the request
+     * @param recordFrom
+     *            requests sent before this System.nanoTime() are not recorded
+     */
+    private void send ( final String endpoint, final HttpRequest request, final long recordFrom ) throws Exception {
+        final long start = System.nanoTime();
+        final HttpResponse<Void> response = client.send( request, HttpResponse.BodyHandlers.discarding() );
+        final long elapsed = System.nanoTime() - start;
+        if ( start < recordFrom ) {
+            return;
+        }
+        final Endpoint results = this.results.get( endpoint );
+        results.latency.recordValue( Math.min( TimeUnit.NANOSECONDS.toMicros( elapsed ), MAX_LATENCY ) );
+        if ( response.statusCode() != 200 ) {
+            results.errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Starts a request to the server carrying a bearer token.
+     *
+     * @param token
+     *            the token
+     * @param path
+     *            path of the endpoint
+     * @return the request, ready for its method
+     */
+    private HttpRequest.Builder request ( final String token, final String path ) {
+        return HttpRequest.newBuilder( URI.create( "http://localhost:" + port + path ) ).header( "Authorization",
+                "Bearer " + token );
+    }
+
+    /**
+     * Logs a virtual user in with HTTP Basic and asks for a token.
+     *
+     * @param username
+     *            the user's account
+     * @return the token
+     */
+    private String login ( final String username ) throws Exception {
+        final String credentials = Base64.getEncoder()
+                .encodeToString( ( username + ":" + PASSWORD ).getBytes( StandardCharsets.UTF_8 ) );
+        final HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder( URI.create( "http://localhost:" + port + "/api/v1/auth/token" ) )
+                        .header( "Authorization", "Basic " + credentials ).POST( HttpRequest.BodyPublishers.noBody() )
+                        .build(),
+                HttpResponse.BodyHandlers.ofString() );
+        assertEquals( 200, response.statusCode(), "Could not log in as " + username );
+        return JsonParser.parseString( response.body() ).getAsJsonObject().get( "token" ).getAsString();
+    }
+
+    /**
+     * Writes the throughput and latency percentiles of each endpoint.
+     *
+     * @param out
+     *            where to write
+     * @param seconds
+     *            how long the results were recorded for
+     * @param distribution
+     *            whether to add each endpoint's full latency distribution
+     */
+    private void writeReport ( final PrintStream out, final double seconds, final boolean distribution ) {
+        out.printf( "%d virtual users, %d s warmup, %.1f s recorded, %d ms think time%n%n", users, warmup, seconds,
+                think );
+        out.printf( "%-32s %9s %7s %9s %9s %9s %9s %9s%n", "Endpoint", "Requests", "Errors", "Req/s", "p50 ms",
+                "p99 ms", "p999 ms", "max ms" );
+        for ( final Map.Entry<String, Endpoint> endpoint : results.entrySet() ) {
+            final Histogram latency = endpoint.getValue().latency;
+            out.printf( "%-32s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n", endpoint.getKey(), latency.getTotalCount(),
+                    endpoint.getValue().errors.get(), latency.getTotalCount() / seconds,
+                    latency.getValueAtPercentile( 50 ) / 1e3, latency.getValueAtPercentile( 99 ) / 1e3,
+                    latency.getValueAtPercentile( 99.9 ) / 1e3, latency.getMaxValue() / 1e3 );
+        }
+        if ( !distribution ) {
+            return;
+        }
+        for ( final Map.Entry<String, Endpoint> endpoint : results.entrySet() ) {
+            out.printf( "%n%s, latency in ms%n", endpoint.getKey() );
+            endpoint.getValue().latency.outputPercentileDistribution( out, 1e3 );
+        }
+    }
+
+    /**
+     * What was recorded for one endpoint. Shared by all virtual users.
+     */
+    private static final class Endpoint {
+
+        /** Response times in microseconds */
+        private final ConcurrentHistogram latency = new ConcurrentHistogram( MAX_LATENCY, 3 );
+
+        /** Responses other than 200 OK */
+        private final AtomicLong          errors  = new AtomicLong();
+    }
+}
@@ -0,0 +1,99 @@
+package edu.ncsu.csc.CoffeeMaker.api;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import edu.ncsu.csc.CoffeeMaker.common.TestUtils;
+import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
+import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.repositories.OrdersRepository;
+import edu.ncsu.csc.CoffeeMaker.services.CoffeeMakerMetrics;
+import edu.ncsu.csc.CoffeeMaker.services.IngredientService;
+import edu.ncsu.csc.CoffeeMaker.services.RecipeService;
+
+@ExtendWith ( SpringExtension.class )
+@SpringBootTest
+@AutoConfigureMockMvc
+public class APIMetricsTest {
+
+    @Autowired
+    private MockMvc            mvc;
+
+    @Autowired
+    private RecipeService      service;
+
+    @Autowired
+    private IngredientService  ingrService;
+
+    @Autowired
+    private OrdersRepository   ordersRepository;
+
+    @Autowired
+    private CoffeeMakerMetrics metrics;
+
+    @BeforeEach
+    public void setup () {
+        service.deleteAll();
+        ingrService.deleteAll();
+        ingrService.save( new Ingredient( "Coffee", 10 ) );
+        final Recipe recipe = new Recipe();
+        recipe.setName( "Coffee" );
+        recipe.setPrice( 50 );
+        service.save( recipe );
+        recipe.addIngredient( ingrService.findByName( "Coffee" ), 3 );
+        service.save( recipe );
+    }
+
+    @AfterEach
+    public void teardown () {
+        ordersRepository.deleteAllInBatch();
+        service.deleteAll();
+        ingrService.deleteAll();
+    }
+
+    @Test
+    public void testScrape () throws Exception {
+        mvc.perform( post( "/api/v1/makecoffee/Coffee" ).with( user( "manager" ).authorities( () -> "MAKE_COFFEE" ) )
+                .contentType( MediaType.APPLICATION_JSON ).content( TestUtils.asJsonString( 60 ) ) )
+                .andExpect( status().isOk() );
+        mvc.perform( post( "/api/v1/makecoffee/Coffee" ).with( user( "manager" ).authorities( () -> "MAKE_COFFEE" ) )
+                .contentType( MediaType.APPLICATION_JSON ).content( TestUtils.asJsonString( 10 ) ) )
+                .andExpect( status().isConflict() );
+        metrics.refreshStock();
+
+        final String scrape = mvc.perform(
+                get( "/actuator/prometheus" ).with( user( "manager" ).authorities( () -> "ADD_STAFF_ACCOUNT" ) ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        // Counters are shared with every other test in this context, so only
+        // check that they are there
+        assertTrue( scrape.contains( "coffeemaker_brews_total" ) );
+        assertTrue( scrape.contains( "coffeemaker_brews_rejected_total{reason=\"payment\",}" ) );
+        assertTrue( scrape.contains( "coffeemaker_service_seconds_count{entity=\"Ingredient\",operation=\"debit\"," ) );
+        assertTrue( scrape.contains(
+                "coffeemaker_service_seconds_count{entity=\"Ingredient\",operation=\"findByName\"," ) );
+        assertTrue( scrape.contains( "coffeemaker_inventory_amount{ingredient=\"Coffee\",} 7.0" ) );
+        assertTrue( scrape.contains( "http_server_requests_seconds_bucket" ) );
+    }
+
+    @Test
+    public void testScrapeNeedsManager () throws Exception {
+        mvc.perform( get( "/actuator/prometheus" ).with( user( "staff" ).authorities( () -> "ADD_INGREDIENTS" ) ) )
+                .andExpect( status().isForbidden() );
+        mvc.perform( get( "/actuator/health" ) ).andExpect( status().isOk() );
+    }
+
+}
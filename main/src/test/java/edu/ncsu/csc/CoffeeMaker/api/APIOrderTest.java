@@ -1,14 +1,18 @@
 package edu.ncsu.csc.CoffeeMaker.api;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import javax.transaction.Transactional;
 
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,14 +20,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+
 import edu.ncsu.csc.CoffeeMaker.common.TestUtils;
 import edu.ncsu.csc.CoffeeMaker.models.Orders;
+import edu.ncsu.csc.CoffeeMaker.models.User;
+import edu.ncsu.csc.CoffeeMaker.services.OrderEventBroadcaster;
 import edu.ncsu.csc.CoffeeMaker.services.OrdersService;
+import edu.ncsu.csc.CoffeeMaker.services.UserService;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -41,6 +53,12 @@ public class APIOrderTest {
     @Autowired
     private OrdersService         orderService;
 
+    @Autowired
+    private UserService           userService;
+
+    @Autowired
+    private OrderEventBroadcaster events;
+
     /**
      * Sets up the tests.
      */
@@ -155,4 +173,264 @@ public class APIOrderTest {
             e.printStackTrace();
         }
     }
+
+    @Test
+    @Transactional
+    @WithMockUser ( username = "manager" )
+    public void testGetSelfOrders () throws Exception {
+        final User manager = userService.findByName( "manager" );
+        for ( int i = 0; i < 25; i++ ) {
+            final Orders order = new Orders( null, "Preparing" );
+            order.setUser( manager );
+            orderService.save( order );
+        }
+
+        // Looking up the user must not drag its order history along
+        assertFalse( Hibernate.isInitialized( userService.findByName( "manager" ).getOrders() ) );
+
+        String body = mvc.perform( get( "/api/v1/users/self/orders?size=10" ) ).andExpect( status().isOk() )
+                .andReturn().getResponse().getContentAsString();
+        final JsonArray first = JsonParser.parseString( body ).getAsJsonArray();
+        assertEquals( 10, first.size() );
+        assertTrue( first.get( 0 ).getAsJsonObject().get( "id" ).getAsLong() > first.get( 9 ).getAsJsonObject()
+                .get( "id" ).getAsLong() );
+
+        body = mvc.perform( get( "/api/v1/users/self/orders?size=10&page=2" ) ).andExpect( status().isOk() )
+                .andReturn().getResponse().getContentAsString();
+        assertEquals( 5, JsonParser.parseString( body ).getAsJsonArray().size() );
+
+        body = mvc.perform( get( "/api/v1/users/self/orders?page=3&size=10" ) ).andExpect( status().isOk() )
+                .andReturn().getResponse().getContentAsString();
+        assertEquals( 0, JsonParser.parseString( body ).getAsJsonArray().size() );
+
+        mvc.perform( get( "/api/v1/users/self/orders?size=0" ) ).andExpect( status().isBadRequest() );
+    }
+
+    @Test
+    @Transactional
+    public void testFilteredOrders () throws Exception {
+        final User manager = userService.findByName( "manager" );
+        for ( int i = 0; i < 12; i++ ) {
+            final Orders order = new Orders( null, i % 3 == 0 ? "Ready!" : "Preparing" );
+            if ( i % 2 == 0 ) {
+                order.setUser( manager );
+            }
+            orderService.save( order );
+        }
+
+        String body = mvc.perform( get( "/api/v1/orders?status=Preparing" ) ).andExpect( status().isOk() )
+                .andReturn().getResponse().getContentAsString();
+        assertEquals( 8, JsonParser.parseString( body ).getAsJsonArray().size() );
+
+        body = mvc.perform( get( "/api/v1/orders?status=Ready!&user=manager" ) ).andExpect( status().isOk() )
+                .andReturn().getResponse().getContentAsString();
+        assertEquals( 2, JsonParser.parseString( body ).getAsJsonArray().size() );
+
+        body = mvc.perform( get( "/api/v1/orders?to=1" ) ).andExpect( status().isOk() ).andReturn().getResponse()
+                .getContentAsString();
+        assertEquals( 0, JsonParser.parseString( body ).getAsJsonArray().size() );
+
+        // Walk every order five at a time using the last id seen
+        long afterId = 0;
+        int seen = 0;
+        JsonArray page;
+        do {
+            body = mvc.perform( get( "/api/v1/orders?size=5&afterId=" + afterId ) ).andExpect( status().isOk() )
+                    .andReturn().getResponse().getContentAsString();
+            page = JsonParser.parseString( body ).getAsJsonArray();
+            for ( int i = 0; i < page.size(); i++ ) {
+                final long id = page.get( i ).getAsJsonObject().get( "id" ).getAsLong();
+                assertTrue( id > afterId );
+                afterId = id;
+                seen++;
+            }
+        }
+        while ( page.size() == 5 );
+        assertEquals( 12, seen );
+
+        mvc.perform( get( "/api/v1/orders?size=501" ) ).andExpect( status().isBadRequest() );
+    }
+
+    @Test
+    @Transactional
+    public void testStreamOrders () throws Exception {
+        final User manager = userService.findByName( "manager" );
+        for ( int i = 0; i < 10; i++ ) {
+            final Orders order = new Orders( null, i < 4 ? "Ready!" : "Preparing" );
+            order.setUser( manager );
+            order.setAmountPaid( i );
+            orderService.save( order );
+        }
+
+        String body = mvc.perform( get( "/api/v1/orders/stream" ) ).andExpect( status().isOk() ).andReturn()
+                .getResponse().getContentAsString();
+        final JsonArray all = JsonParser.parseString( body ).getAsJsonArray();
+        assertEquals( 10, all.size() );
+        assertEquals( "manager", all.get( 3 ).getAsJsonObject().get( "user" ).getAsString() );
+        assertEquals( 3, all.get( 3 ).getAsJsonObject().get( "amountPaid" ).getAsInt() );
+        assertTrue( all.get( 3 ).getAsJsonObject().get( "timePlaced" ).getAsLong() > 0 );
+
+        body = mvc.perform( get( "/api/v1/orders/stream?status=Ready!" ) ).andExpect( status().isOk() ).andReturn()
+                .getResponse().getContentAsString();
+        assertEquals( 4, JsonParser.parseString( body ).getAsJsonArray().size() );
+
+        body = mvc.perform( get( "/api/v1/orders/stream?user=nobody" ) ).andExpect( status().isOk() ).andReturn()
+                .getResponse().getContentAsString();
+        assertEquals( 0, JsonParser.parseString( body ).getAsJsonArray().size() );
+    }
+
+    @Test
+    @WithMockUser ( username = "staff", authorities = "ADD_INGREDIENTS" )
+    public void testOrderEventsResume () throws Exception {
+        final long before = events.getLastEventId();
+        events.publish( "created", new Orders( null, "Preparing" ) );
+        events.publish( "updated", new Orders( null, "Ready!" ) );
+        events.publish( "updated", new Orders( null, "Past Order" ) );
+
+        // Reconnecting after the first event should replay only the other two
+        final MvcResult result = mvc
+                .perform( get( "/api/v1/orders/events" ).header( "Last-Event-ID", before + 1 ) )
+                .andExpect( request().asyncStarted() ).andReturn();
+        final String body = awaitEvent( result, before + 3 );
+        assertFalse( body.contains( "id:" + ( before + 1 ) + "\n" ) );
+        assertTrue( body.contains( "id:" + ( before + 2 ) + "\n" ) );
+        assertTrue( body.contains( "Past Order" ) );
+
+        // Too far behind to catch up, so the client is told to start over
+        final MvcResult stale = mvc.perform( get( "/api/v1/orders/events?lastEventId=1" ) )
+                .andExpect( request().asyncStarted() ).andReturn();
+        assertTrue( awaitEvent( stale, events.getLastEventId() ).contains( "reset" ) );
+    }
+
+    @Test
+    @WithMockUser ( username = "customer" )
+    public void testOrderEventsOnlyOwnOrders () throws Exception {
+        final MvcResult result = mvc.perform( get( "/api/v1/orders/events" ) )
+                .andExpect( request().asyncStarted() ).andReturn();
+
+        final Orders theirs = new Orders( null, "Preparing" );
+        theirs.setUser( new User( "manager", "" ) );
+        events.publish( "created", theirs );
+        final Orders mine = new Orders( null, "Preparing" );
+        mine.setUser( new User( "customer", "" ) );
+        events.publish( "created", mine );
+
+        final String body = awaitEvent( result, events.getLastEventId() );
+        assertTrue( body.contains( "\"customer\"" ) );
+        assertFalse( body.contains( "\"manager\"" ) );
+    }
+
+    @Test
+    @WithMockUser ( username = "customer" )
+    public void testOrderEventsResumeOnlyOwnOrders () throws Exception {
+        final long before = events.getLastEventId();
+        final Orders theirs = new Orders( null, "Preparing" );
+        theirs.setUser( new User( "manager", "" ) );
+        events.publish( "created", theirs );
+        final Orders mine = new Orders( null, "Preparing" );
+        mine.setUser( new User( "customer", "" ) );
+        events.publish( "created", mine );
+
+        // The replay is filtered the same way as live events
+        final MvcResult result = mvc.perform( get( "/api/v1/orders/events" ).header( "Last-Event-ID", before ) )
+                .andExpect( request().asyncStarted() ).andReturn();
+        final String body = awaitEvent( result, before + 2 );
+        assertTrue( body.contains( "\"customer\"" ) );
+        assertFalse( body.contains( "\"manager\"" ) );
+        assertFalse( body.contains( "id:" + ( before + 1 ) + "\n" ) );
+    }
+
+    @Test
+    @WithMockUser ( username = "staff", authorities = "ADD_INGREDIENTS" )
+    public void testOrderEventsOnCreate () throws Exception {
+        final MvcResult result = mvc.perform( get( "/api/v1/orders/events" ) )
+                .andExpect( request().asyncStarted() ).andReturn();
+
+        mvc.perform( post( "/api/v1/orders" ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( new Orders( null, "Preparing" ) ) ) ).andExpect( status().isOk() );
+        final Long id = orderService.findAll().get( 0 ).getId();
+
+        final String body = awaitEvent( result, events.getLastEventId() );
+        assertTrue( body.contains( "\"type\":\"created\"" ) );
+        assertTrue( body.contains( "\"id\":" + id + "," ) );
+        orderService.deleteAll();
+    }
+
+    @Test
+    @WithMockUser ( username = "staff", authorities = "ADD_INGREDIENTS" )
+    public void testNextOrder () throws Exception {
+        final Orders walkIn = new Orders( null, Orders.STATUS_PREPARING );
+        orderService.save( walkIn );
+        final Orders mobile = new Orders( null, Orders.STATUS_PREPARING );
+        mobile.setLane( Orders.LANE_MOBILE );
+        orderService.save( mobile );
+
+        assertTrue( mvc.perform( get( "/api/v1/queue" ) ).andExpect( status().isOk() ).andReturn().getResponse()
+                .getContentAsString().contains( "\"mobile\":1" ) );
+        mvc.perform( get( "/api/v1/queue/next?lane=drive-thru" ) ).andExpect( status().isBadRequest() );
+
+        final String next = mvc.perform( get( "/api/v1/queue/next" ) ).andExpect( status().isOk() ).andReturn()
+                .getResponse().getContentAsString();
+        assertTrue( next.contains( "\"id\":" + mobile.getId() + "," ) );
+        assertTrue( next.contains( Orders.STATUS_BREWING ) );
+
+        mvc.perform( get( "/api/v1/queue/next?lane=mobile" ) ).andExpect( status().isNotFound() );
+        mvc.perform( get( "/api/v1/queue/next?lane=walk-in" ) ).andExpect( status().isOk() );
+        mvc.perform( get( "/api/v1/queue/next" ) ).andExpect( status().isNotFound() );
+        orderService.deleteAll();
+    }
+
+    @Test
+    @WithMockUser ( username = "customer" )
+    public void testNextOrderStaffOnly () throws Exception {
+        mvc.perform( get( "/api/v1/queue/next" ) ).andExpect( status().isForbidden() );
+    }
+
+    @Test
+    @WithMockUser ( username = "staff", authorities = "ADD_INGREDIENTS" )
+    public void testClaimOrders () throws Exception {
+        final Orders first = new Orders( null, Orders.STATUS_PREPARING );
+        orderService.save( first );
+        final Orders second = new Orders( null, Orders.STATUS_PREPARING );
+        orderService.save( second );
+
+        mvc.perform( post( "/api/v1/orders/claim?count=0" ) ).andExpect( status().isBadRequest() );
+        mvc.perform( post( "/api/v1/orders/claim?lane=drive-thru" ) ).andExpect( status().isBadRequest() );
+
+        final JsonArray claimed = JsonParser.parseString( mvc.perform( post( "/api/v1/orders/claim?count=5" ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString() ).getAsJsonArray();
+        assertEquals( 2, claimed.size() );
+        assertEquals( first.getId().longValue(), claimed.get( 0 ).getAsJsonObject().get( "id" ).getAsLong() );
+        assertEquals( Orders.STATUS_BREWING, claimed.get( 1 ).getAsJsonObject().get( "status" ).getAsString() );
+
+        assertEquals( "[]", mvc.perform( post( "/api/v1/orders/claim" ) ).andExpect( status().isOk() ).andReturn()
+                .getResponse().getContentAsString() );
+        orderService.deleteAll();
+    }
+
+    @Test
+    @WithMockUser ( username = "customer" )
+    public void testClaimOrdersStaffOnly () throws Exception {
+        mvc.perform( post( "/api/v1/orders/claim" ) ).andExpect( status().isForbidden() );
+    }
+
+    /**
+     * Waits for an event to arrive on a server-sent event stream.
+     *
+     * @param result
+     *            the open stream
+     * @param id
+     *            id of the event to wait for
+     * @return everything received so far
+     */
+    private String awaitEvent ( final MvcResult result, final long id ) throws Exception {
+        final long deadline = System.currentTimeMillis() + 5000;
+        String body = result.getResponse().getContentAsString();
+        while ( !body.contains( "id:" + id + "\n" ) && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 20 );
+            body = result.getResponse().getContentAsString();
+        }
+        assertTrue( body.contains( "id:" + id + "\n" ), "Never received event " + id + ", only: " + body );
+        return body;
+    }
 }
@@ -1,5 +1,6 @@
 package edu.ncsu.csc.CoffeeMaker.api;
 
+import static org.hamcrest.Matchers.contains;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -8,6 +9,8 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import javax.transaction.Transactional;
@@ -28,6 +31,7 @@ import org.springframework.web.context.WebApplicationContext;
 
 import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
 import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.models.RecipeToIngredient;
 import edu.ncsu.csc.CoffeeMaker.services.IngredientService;
 import edu.ncsu.csc.CoffeeMaker.services.RecipeService;
 
@@ -313,16 +317,121 @@ public class APIRecipeTest {
         assertEquals( 2, fromDB.getRecipeToIngredients().size() );
     }
 
+    @Test
+    @WithMockUser ( authorities = { "ADD_INGREDIENTS_TYPE" } )
+    public void testEditRecipeInPlace () throws Exception {
+        ingrService.save( new Ingredient( "Coffee", 3 ) );
+        ingrService.save( new Ingredient( "Milk", 4 ) );
+        ingrService.save( new Ingredient( "Tea", 5 ) );
+        mvc.perform( post( "/api/v1/recipes" ).contentType( MediaType.APPLICATION_JSON )
+                .content( createRecipe( "Chai", 10, 5, 5, 0 ).toJson() ) ).andExpect( status().isOk() );
+        final Long id = service.findByName( "Chai" ).getId();
+
+        /* Keep Coffee, drop Milk, add Tea, and rename */
+        mvc.perform( patch( "/api/v1/recipes/Chai" ).contentType( MediaType.APPLICATION_JSON )
+                .content( createRecipe( "Masala Chai", 4, 5, 0, 2 ).toJson() ) ).andExpect( status().isOk() );
+        final Recipe fromDB = service.findByName( "Masala Chai" );
+        assertEquals( id, fromDB.getId() );
+        assertEquals( 4, fromDB.getPrice() );
+        assertEquals( 2, fromDB.getRecipeToIngredients().size() );
+        for ( final RecipeToIngredient rti : fromDB.getRecipeToIngredients() ) {
+            assertEquals( "Coffee".equals( rti.getIngredient().getName() ) ? 5 : 2, rti.getCount() );
+            assertTrue( !"Milk".equals( rti.getIngredient().getName() ) );
+        }
+
+        /* Fields left out keep their values, ingredients included */
+        mvc.perform( patch( "/api/v1/recipes/Masala Chai" ).contentType( MediaType.APPLICATION_JSON )
+                .content( "{\"price\": 6}" ) ).andExpect( status().isOk() );
+        assertEquals( 6, service.findByName( "Masala Chai" ).getPrice() );
+        assertEquals( 2, service.findByName( "Masala Chai" ).getRecipeToIngredients().size() );
+        mvc.perform( patch( "/api/v1/recipes/Masala Chai" ).contentType( MediaType.APPLICATION_JSON )
+                .content( "{\"price\": 4, \"ingredients\": null}" ) ).andExpect( status().isOk() );
+        assertEquals( 2, service.findByName( "Masala Chai" ).getRecipeToIngredients().size() );
+        mvc.perform( patch( "/api/v1/recipes/Masala Chai" ).contentType( MediaType.APPLICATION_JSON )
+                .content( "[]" ) ).andExpect( status().isBadRequest() );
+
+        /* An unknown ingredient leaves the recipe as it was */
+        final String unknown = "{\"name\": \"Masala Chai\", \"price\": 1, \"ingredients\": "
+                + "[{\"ingredient\": {\"name\": \"Cocoa\"}, \"count\": 1}]}";
+        mvc.perform(
+                patch( "/api/v1/recipes/Masala Chai" ).contentType( MediaType.APPLICATION_JSON ).content( unknown ) )
+                .andExpect( status().isBadRequest() );
+        assertEquals( 4, service.findByName( "Masala Chai" ).getPrice() );
+        assertEquals( 2, service.findByName( "Masala Chai" ).getRecipeToIngredients().size() );
+
+        /* Renaming onto another recipe is refused */
+        mvc.perform( post( "/api/v1/recipes" ).contentType( MediaType.APPLICATION_JSON )
+                .content( createRecipe( "Latte", 3, 1, 1, 0 ).toJson() ) ).andExpect( status().isOk() );
+        mvc.perform( patch( "/api/v1/recipes/Latte" ).contentType( MediaType.APPLICATION_JSON )
+                .content( createRecipe( "Masala Chai", 3, 1, 1, 0 ).toJson() ) ).andExpect( status().isConflict() );
+
+        mvc.perform( patch( "/api/v1/recipes/Mocha" ).contentType( MediaType.APPLICATION_JSON )
+                .content( createRecipe( "Mocha", 3, 1, 1, 0 ).toJson() ) ).andExpect( status().isNotFound() );
+
+        /* An empty list is what removes every ingredient */
+        mvc.perform( patch( "/api/v1/recipes/Latte" ).contentType( MediaType.APPLICATION_JSON )
+                .content( "{\"ingredients\": []}" ) ).andExpect( status().isOk() );
+        assertEquals( 0, service.findByName( "Latte" ).getRecipeToIngredients().size() );
+        assertEquals( 3, service.findByName( "Latte" ).getPrice() );
+    }
+
+    @Test
+    @WithMockUser ( authorities = { "ADD_INGREDIENTS_TYPE" } )
+    public void testImportExport () throws Exception {
+        ingrService.save( new Ingredient( "Coffee", 3 ) );
+        ingrService.save( new Ingredient( "Milk", 4 ) );
+
+        final String body = String.join( "\n",
+                "{\"name\": \"Latte\", \"price\": 5, \"ingredients\": [{\"ingredient\": {\"name\": \"Coffee\"}, "
+                        + "\"count\": 1}, {\"ingredient\": {\"name\": \"Milk\"}, \"count\": 2}]}",
+                "not a recipe", "",
+                "{\"name\": \"Mocha\", \"price\": 4, \"ingredients\": [{\"ingredient\": {\"name\": \"Chocolate\"}, "
+                        + "\"count\": 1}]}",
+                "{\"name\": \"latte\", \"price\": 3}",
+                "{\"name\": \"Black\", \"price\": 2, \"ingredients\": [{\"ingredient\": {\"name\": \"coffee\"}, "
+                        + "\"count\": 2}]}",
+                "{\"name\": \"Cortado\", \"price\": 4}", "{\"name\": \"Americano\", \"price\": 4}" );
+        mvc.perform( post( "/api/v1/recipes/import" ).contentType( "application/x-ndjson" ).content( body ) )
+                .andExpect( status().isOk() ).andExpect( jsonPath( "$.imported" ).value( 3 ) )
+                .andExpect( jsonPath( "$.errors[*].line" ).value( contains( 2, 4, 5, 8 ) ) );
+
+        final Recipe latte = service.findByName( "Latte" );
+        assertEquals( 5, latte.getPrice() );
+        assertEquals( 2, latte.getRecipeToIngredients().size() );
+        assertEquals( 1, service.findByName( "Black" ).getRecipeToIngredients().size() );
+        assertEquals( 3, service.count() );
+
+        /* The export reads back in as the same recipes */
+        final String exported = mvc.perform( get( "/api/v1/recipes/export" ) ).andExpect( status().isOk() )
+                .andExpect( content().contentTypeCompatibleWith( "application/x-ndjson" ) ).andReturn().getResponse()
+                .getContentAsString();
+        assertEquals( 3, exported.trim().split( "\n" ).length );
+        service.deleteAll();
+        mvc.perform( post( "/api/v1/recipes/import" ).contentType( "application/x-ndjson" ).content( exported ) )
+                .andExpect( status().isOk() ).andExpect( jsonPath( "$.imported" ).value( 3 ) )
+                .andExpect( jsonPath( "$.errors" ).isEmpty() );
+        assertEquals( 2, service.findByName( "Latte" ).getRecipeToIngredients().size() );
+    }
+
     private Recipe createRecipe ( final String name, final Integer price, final Integer coffee, final Integer milk,
             final Integer tea ) {
         final Recipe recipe = new Recipe();
         recipe.setName( name );
         recipe.setPrice( price );
 
-        recipe.addIngredient( new Ingredient( "Coffee", 0 ), coffee );
-        recipe.addIngredient( new Ingredient( "Milk", 0 ), milk );
-        recipe.addIngredient( new Ingredient( "Tea", 0 ), tea );
+        recipe.addIngredient( findOrCreateIngredient( "Coffee" ), coffee );
+        recipe.addIngredient( findOrCreateIngredient( "Milk" ), milk );
+        recipe.addIngredient( findOrCreateIngredient( "Tea" ), tea );
         return recipe;
     }
 
+    /**
+     * Ingredient names are unique, so recipes must share the stored
+     * ingredient rather than each bringing their own copy
+     */
+    private Ingredient findOrCreateIngredient ( final String name ) {
+        final Ingredient ingredient = ingrService.findByName( name );
+        return null != ingredient ? ingredient : new Ingredient( name, 0 );
+    }
+
 }
@@ -121,6 +121,24 @@ public class APIUserTest {
 
     }
 
+    @Test
+    @Transactional
+    @WithMockUser ( authorities = { "ADD_STAFF_ACCOUNT" } )
+    public void testGetUserLeavesOutOrders () throws Exception {
+        final User user = new User( "Tom", "123" );
+        final Role role = new Role();
+        role.setRoleName( "Customer" );
+        user.setRole( role );
+        mvc.perform( post( "/api/v1/users" ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( user ) ) ).andExpect( status().isOk() );
+
+        // The order history is paged from /users/self/orders instead
+        final String res = mvc.perform( get( "/api/v1/users/Tom" ) ).andExpect( status().isOk() ).andReturn()
+                .getResponse().getContentAsString();
+        assertTrue( res.contains( "\"username\":\"Tom\"" ) );
+        Assertions.assertFalse( res.contains( "userOrders" ) );
+    }
+
     @Test
     @Transactional
     @WithMockUser ( authorities = { "MAKE_COFFEE", "ADD_INGREDIENTS", "ADD_INGREDIENTS_TYPE", "ADD_STAFF_ACCOUNT" } )
@@ -1,18 +1,24 @@
 package edu.ncsu.csc.CoffeeMaker.runners;
 
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.ApplicationArguments;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import edu.ncsu.csc.CoffeeMaker.models.Role;
 import edu.ncsu.csc.CoffeeMaker.models.User;
@@ -34,19 +40,47 @@ public class AutofillRolesRunnerTest {
     @Test
     public void testRun_createsRolesAndUsersWhenTheyDoNotExist () throws Exception {
         // Arrange
-        when( roleService.findByName( anyString() ) ).thenReturn( null );
-        when( userService.findByName( anyString() ) ).thenReturn( null );
+        when( roleService.findByNames( anyCollection() ) ).thenReturn( Collections.emptyList() );
+        when( userService.findByNames( anyCollection() ) ).thenReturn( Collections.emptyList() );
 
         final ApplicationArguments args = mock( ApplicationArguments.class );
 
         // Act
         autofillRolesRunner.run( args );
 
-        // Assert - Check that roles were created
-        verify( roleService, times( 3 ) ).save( any( Role.class ) );
+        // Assert - Check that roles were created, all at once
+        verify( roleService ).saveAll( argThat( ( final List<Role> roles ) -> roles.size() == 3 ) );
+
+        // Assert - Check that users were created, all at once
+        verify( userService ).saveAll( argThat( ( final List<User> users ) -> users.size() == 3 ) );
+    }
+
+    @Test
+    public void testRun_leavesExistingRolesAndUsersAlone () throws Exception {
+        when( roleService.findByNames( anyCollection() ) )
+                .thenReturn( List.of( role( "Customer" ), role( "Staff" ), role( "Manager" ) ) );
+        when( userService.findByNames( anyCollection() ) ).thenReturn(
+                List.of( new User( "manager", "x" ), new User( "customer", "x" ), new User( "staff", "x" ) ) );
+
+        autofillRolesRunner.run( mock( ApplicationArguments.class ) );
+
+        verify( roleService, never() ).saveAll( anyList() );
+        verify( userService, never() ).saveAll( anyList() );
+    }
+
+    @Test
+    public void testRun_off () throws Exception {
+        ReflectionTestUtils.setField( autofillRolesRunner, "mode", "off" );
+
+        autofillRolesRunner.run( mock( ApplicationArguments.class ) );
+
+        verifyNoInteractions( roleService, userService );
+    }
 
-        // Assert - Check that users were created
-        verify( userService, times( 3 ) ).save( any( User.class ) );
+    private static Role role ( final String name ) {
+        final Role role = new Role();
+        role.setRoleName( name );
+        return role;
     }
 
 }
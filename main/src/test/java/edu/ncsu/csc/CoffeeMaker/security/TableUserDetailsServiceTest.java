@@ -30,7 +30,7 @@ public class TableUserDetailsServiceTest {
         final String username = "testuser";
         final User mockUser = new User();
         mockUser.setUsername( username );
-        when( userService.findByName( username ) ).thenReturn( mockUser );
+        when( userService.findPrincipal( username ) ).thenReturn( mockUser );
 
         // Act
         final UserDetails userDetails = userDetailsService.loadUserByUsername( username );
@@ -38,6 +38,6 @@ public class TableUserDetailsServiceTest {
         // Assert
         assertNotNull( userDetails );
         assertEquals( username, userDetails.getUsername() );
-        verify( userService ).findByName( username );
+        verify( userService ).findPrincipal( username );
     }
 }
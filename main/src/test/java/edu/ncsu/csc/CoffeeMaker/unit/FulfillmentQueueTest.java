@@ -0,0 +1,123 @@
+package edu.ncsu.csc.CoffeeMaker.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.CoffeeMaker.TestConfig;
+import edu.ncsu.csc.CoffeeMaker.models.Orders;
+import edu.ncsu.csc.CoffeeMaker.repositories.OrdersRepository;
+import edu.ncsu.csc.CoffeeMaker.services.FulfillmentQueue;
+import edu.ncsu.csc.CoffeeMaker.services.OrdersService;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+public class FulfillmentQueueTest {
+
+    @Autowired
+    private FulfillmentQueue queue;
+
+    @Autowired
+    private OrdersService    service;
+
+    @Autowired
+    private OrdersRepository repository;
+
+    @BeforeEach
+    public void setup () {
+        service.deleteAll();
+    }
+
+    @AfterEach
+    public void teardown () {
+        service.deleteAll();
+    }
+
+    @Test
+    public void testMobileLaneFirst () {
+        final Orders walkIn1 = place( Orders.LANE_WALK_IN );
+        final Orders mobile = place( Orders.LANE_MOBILE );
+        final Orders walkIn2 = place( Orders.LANE_WALK_IN );
+        assertEquals( 1, queue.size( Orders.LANE_MOBILE ) );
+        assertEquals( 2, queue.size( Orders.LANE_WALK_IN ) );
+
+        assertEquals( mobile.getId(), queue.next( null ).getId() );
+        assertNull( queue.next( Orders.LANE_MOBILE ) );
+        assertEquals( walkIn1.getId(), queue.next( null ).getId() );
+        assertEquals( walkIn2.getId(), queue.next( Orders.LANE_WALK_IN ).getId() );
+        assertNull( queue.next( null ) );
+
+        // Only the transition was written
+        assertEquals( Orders.STATUS_BREWING, service.findById( walkIn1.getId() ).getStatus() );
+        assertEquals( 0, queue.size( Orders.LANE_WALK_IN ) );
+    }
+
+    @Test
+    public void testOrdersLeavingTheQueueAreSkipped () {
+        final Orders ready = place( Orders.LANE_WALK_IN );
+        final Orders deleted = place( Orders.LANE_WALK_IN );
+        final Orders gone = place( Orders.LANE_WALK_IN );
+        final Orders waiting = place( Orders.LANE_WALK_IN );
+
+        ready.setStatus( "Ready!" );
+        service.save( ready );
+        service.delete( deleted );
+        // Deleted behind the queue's back; the claim finds nothing to update
+        repository.deleteById( gone.getId() );
+        assertEquals( 2, queue.size( Orders.LANE_WALK_IN ) );
+
+        assertEquals( waiting.getId(), queue.next( null ).getId() );
+        assertNull( queue.next( null ) );
+    }
+
+    @Test
+    public void testChangingLane () {
+        final Orders order = place( Orders.LANE_WALK_IN );
+        order.setLane( Orders.LANE_MOBILE );
+        service.save( order );
+
+        assertNull( queue.next( Orders.LANE_WALK_IN ) );
+        assertEquals( order.getId(), queue.next( Orders.LANE_MOBILE ).getId() );
+    }
+
+    @Test
+    public void testRebuild () {
+        // Saved without the queue knowing, as if before a restart
+        final Orders first = new Orders( null, Orders.STATUS_PREPARING );
+        repository.saveAndFlush( first );
+        final Orders second = new Orders( null, Orders.STATUS_PREPARING );
+        second.setLane( Orders.LANE_MOBILE );
+        repository.saveAndFlush( second );
+        repository.saveAndFlush( new Orders( null, "Ready!" ) );
+        assertNull( queue.next( null ) );
+
+        queue.rebuild();
+        assertEquals( 1, queue.size( Orders.LANE_MOBILE ) );
+        assertEquals( 1, queue.size( Orders.LANE_WALK_IN ) );
+        assertEquals( second.getId(), queue.next( null ).getId() );
+        assertEquals( first.getId(), queue.next( null ).getId() );
+    }
+
+    /**
+     * Saves a new order waiting in a lane.
+     *
+     * @param lane
+     *            lane of the order
+     * @return the order
+     */
+    private Orders place ( final String lane ) {
+        final Orders order = new Orders( null, Orders.STATUS_PREPARING );
+        order.setLane( lane );
+        service.save( order );
+        return order;
+    }
+}
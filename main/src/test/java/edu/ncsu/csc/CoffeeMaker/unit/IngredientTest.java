@@ -3,6 +3,11 @@ package edu.ncsu.csc.CoffeeMaker.unit;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
 
 import javax.transaction.Transactional;
 
@@ -16,6 +21,8 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import edu.ncsu.csc.CoffeeMaker.TestConfig;
 import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
+import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.models.RecipeSnapshot;
 import edu.ncsu.csc.CoffeeMaker.services.IngredientService;
 import edu.ncsu.csc.CoffeeMaker.services.RecipeService;
 import edu.ncsu.csc.CoffeeMaker.services.RecipeToIngredientService;
@@ -61,6 +68,8 @@ public class IngredientTest {
         assertEquals( 100, i1s.getAmount() );
         assertEquals( "Ingredient [id=" + i1s.getId() + ", name=Name, amount=100]", i1s.toString() );
         assertEquals( 1, iService.count() );
+        assertTrue( iService.existsByName( "Name" ) );
+        assertFalse( iService.existsByName( "Other" ) );
     }
 
     @Test
@@ -103,4 +112,21 @@ public class IngredientTest {
         i1s = iService.findByName( "Test" );
         assertEquals( 80, i1s.getAmount() );
     }
+
+    @Test
+    public void testCreditUndoesDebit () {
+        iService.save( new Ingredient( "Coffee", 10 ) );
+        final Recipe recipe = new Recipe();
+        recipe.setName( "Coffee" );
+        recipe.setPrice( 50 );
+        rService.save( recipe );
+        recipe.addIngredient( iService.findByName( "Coffee" ), 3 );
+        rService.save( recipe );
+        final Map<RecipeSnapshot, Integer> cups = Collections.singletonMap( new RecipeSnapshot( recipe ), 2 );
+
+        iService.debit( cups );
+        assertEquals( 4, iService.findByName( "Coffee" ).getAmount() );
+        iService.credit( cups );
+        assertEquals( 10, iService.findByName( "Coffee" ).getAmount() );
+    }
 }
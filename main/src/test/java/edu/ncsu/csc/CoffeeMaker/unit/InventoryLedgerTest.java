@@ -0,0 +1,171 @@
+package edu.ncsu.csc.CoffeeMaker.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.CoffeeMaker.TestConfig;
+import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
+import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.models.RecipeSnapshot;
+import edu.ncsu.csc.CoffeeMaker.services.IngredientService;
+import edu.ncsu.csc.CoffeeMaker.services.InventoryLedger;
+import edu.ncsu.csc.CoffeeMaker.services.RecipeService;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class, properties = { "coffeemaker.inventory.ledger.enabled=true",
+        "coffeemaker.inventory.ledger.journal=target/ledger-test/inventory.journal",
+        "coffeemaker.inventory.ledger.flush-interval=3600000", "coffeemaker.inventory.ledger.batch-size=1000" } )
+public class InventoryLedgerTest {
+
+    @Autowired
+    private InventoryLedger   ledger;
+
+    @Autowired
+    private RecipeService     rService;
+
+    @Autowired
+    private IngredientService iService;
+
+    private RecipeSnapshot    latte;
+
+    @BeforeEach
+    public void setup () throws Exception {
+        rService.deleteAll();
+        iService.deleteAll();
+        ledger.recover();
+
+        iService.save( new Ingredient( "Coffee", 30 ) );
+        iService.save( new Ingredient( "Milk", 40 ) );
+        final Recipe recipe = new Recipe();
+        recipe.setName( "Latte" );
+        recipe.setPrice( 5 );
+        rService.save( recipe );
+        recipe.addIngredient( iService.findByName( "Coffee" ), 3 );
+        recipe.addIngredient( iService.findByName( "Milk" ), 4 );
+        rService.save( recipe );
+        latte = new RecipeSnapshot( recipe );
+    }
+
+    @AfterEach
+    public void teardown () {
+        rService.deleteAll();
+        iService.deleteAll();
+    }
+
+    @Test
+    public void testConcurrentDebits () throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool( 8 );
+        final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for ( int i = 0; i < 400; i++ ) {
+            results.add( pool.submit( () -> ledger.tryDebit( latte ) ) );
+        }
+        int brewed = 0;
+        for ( final Future<Boolean> result : results ) {
+            if ( result.get() ) {
+                brewed++;
+            }
+        }
+        pool.shutdown();
+
+        // Both ingredients allow exactly ten cups
+        assertEquals( 10, brewed );
+        assertFalse( ledger.canBrew( latte ) );
+        assertEquals( 0, (int) ledger.getAmount( iService.findByName( "Coffee" ).getId() ) );
+
+        // Nothing has been written back yet
+        assertEquals( 30, iService.findByName( "Coffee" ).getAmount() );
+
+        ledger.flush();
+        assertEquals( 0, iService.findByName( "Coffee" ).getAmount() );
+        assertEquals( 0, iService.findByName( "Milk" ).getAmount() );
+    }
+
+    @Test
+    public void testRecoverReplaysJournal () throws Exception {
+        assertTrue( ledger.tryDebit( latte ) );
+        assertTrue( ledger.tryDebit( latte ) );
+        assertEquals( 40, iService.findByName( "Milk" ).getAmount() );
+
+        // Simulate a restart before the changes were flushed
+        ledger.recover();
+
+        assertEquals( 24, iService.findByName( "Coffee" ).getAmount() );
+        assertEquals( 32, iService.findByName( "Milk" ).getAmount() );
+        assertEquals( 32, (int) ledger.getAmount( iService.findByName( "Milk" ).getId() ) );
+    }
+
+    @Test
+    public void testSetAmount () {
+        final Long milk = iService.findByName( "Milk" ).getId();
+        ledger.setAmount( milk, 3 );
+        assertFalse( ledger.canBrew( latte ) );
+        assertFalse( ledger.tryDebit( latte ) );
+
+        // A failed brew must not have taken any coffee
+        assertEquals( 30, (int) ledger.getAmount( iService.findByName( "Coffee" ).getId() ) );
+
+        ledger.setAmount( milk, 100 );
+        assertTrue( ledger.tryDebit( latte ) );
+        ledger.flush();
+        assertEquals( 96, iService.findByName( "Milk" ).getAmount() );
+        assertEquals( 27, iService.findByName( "Coffee" ).getAmount() );
+    }
+
+    @Test
+    public void testAdjust () {
+        final Long coffee = iService.findByName( "Coffee" ).getId();
+        final Long milk = iService.findByName( "Milk" ).getId();
+        final Map<Long, Integer> deltas = new HashMap<Long, Integer>();
+        deltas.put( coffee, 5 );
+        deltas.put( milk, -41 );
+
+        // Milk would go negative, so neither changes
+        assertNull( ledger.adjust( deltas ) );
+        assertEquals( 30, (int) ledger.getAmount( coffee ) );
+        assertEquals( 40, (int) ledger.getAmount( milk ) );
+
+        deltas.put( milk, -40 );
+        final Map<Long, Integer> amounts = ledger.adjust( deltas );
+        assertEquals( 35, (int) amounts.get( coffee ) );
+        assertEquals( 0, (int) amounts.get( milk ) );
+        assertFalse( ledger.canBrew( latte ) );
+        ledger.flush();
+        assertEquals( 35, iService.findByName( "Coffee" ).getAmount() );
+        assertEquals( 0, iService.findByName( "Milk" ).getAmount() );
+    }
+
+    @Test
+    public void testDebitCart () {
+        final Map<RecipeSnapshot, Integer> cups = new HashMap<RecipeSnapshot, Integer>();
+
+        // 11 lattes need 33 coffee; there are 30
+        cups.put( latte, 11 );
+        assertFalse( ledger.tryDebit( cups ) );
+        assertEquals( 40, (int) ledger.getAmount( iService.findByName( "Milk" ).getId() ) );
+
+        cups.put( latte, 10 );
+        assertTrue( ledger.tryDebit( cups ) );
+        assertEquals( 0, (int) ledger.getAmount( iService.findByName( "Coffee" ).getId() ) );
+        assertEquals( 0, (int) ledger.getAmount( iService.findByName( "Milk" ).getId() ) );
+    }
+}
@@ -0,0 +1,118 @@
+package edu.ncsu.csc.CoffeeMaker.unit;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.CoffeeMaker.TestConfig;
+import edu.ncsu.csc.CoffeeMaker.repositories.IngredientRepository;
+
+/**
+ * Measures how long a lookup by name takes once a table is large, with and
+ * without the unique index on the name. Slow, so only run on request:
+ * `mvn test -Dtest=LookupLatencyTest -Dcoffeemaker.loadtest=true`, optionally
+ * with `-Dcoffeemaker.loadtest.rows=...` (default one million).
+ */
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+@EnabledIfSystemProperty ( named = "coffeemaker.loadtest", matches = "true" )
+public class LookupLatencyTest {
+
+    /** Ids of the generated rows start here, clear of any real ingredient */
+    private static final long    FIRST_ID = 1_000_000_000L;
+
+    /** Rows inserted per JDBC batch */
+    private static final int     BATCH    = 10_000;
+
+    @Autowired
+    private JdbcTemplate         jdbc;
+
+    @Autowired
+    private IngredientRepository repository;
+
+    private final int            rows     = Integer.getInteger( "coffeemaker.loadtest.rows", 1_000_000 );
+
+    @BeforeEach
+    public void setup () {
+        final long start = System.nanoTime();
+        for ( int from = 0; from < rows; from += BATCH ) {
+            final List<Object[]> batch = new ArrayList<Object[]>();
+            for ( int i = from; i < Math.min( from + BATCH, rows ); i++ ) {
+                batch.add( new Object[] { FIRST_ID + i, "Ingredient " + i } );
+            }
+            jdbc.batchUpdate( "INSERT INTO ingredient (id, amount, name) VALUES (?, 0, ?)", batch );
+        }
+        System.out.printf( "Inserted %d ingredients in %.1f s%n", rows, ( System.nanoTime() - start ) / 1e9 );
+    }
+
+    @AfterEach
+    public void teardown () {
+        jdbc.update( "DELETE FROM ingredient WHERE id >= ?", FIRST_ID );
+    }
+
+    @Test
+    public void testLookupLatency () {
+        report( "With index", measure( 2000 ) );
+
+        jdbc.execute( "ALTER TABLE ingredient DROP INDEX uk_ingredient_name" );
+        try {
+            report( "Without index", measure( 20 ) );
+        }
+        finally {
+            jdbc.execute( "ALTER TABLE ingredient ADD CONSTRAINT uk_ingredient_name UNIQUE (name)" );
+        }
+    }
+
+    /**
+     * Looks up random ingredients by name.
+     *
+     * @param lookups
+     *            how many lookups to time
+     * @return the time each lookup took in nanoseconds, sorted
+     */
+    private long[] measure ( final int lookups ) {
+        final Random random = new Random( 42 );
+        // Warm up the connection and statement caches
+        for ( int i = 0; i < Math.min( lookups, 100 ); i++ ) {
+            repository.findByName( "Ingredient " + random.nextInt( rows ) );
+        }
+        final long[] times = new long[lookups];
+        for ( int i = 0; i < lookups; i++ ) {
+            final String name = "Ingredient " + random.nextInt( rows );
+            final long start = System.nanoTime();
+            assertNotNull( repository.findByName( name ) );
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort( times );
+        return times;
+    }
+
+    /**
+     * Prints latency percentiles.
+     *
+     * @param label
+     *            what was measured
+     * @param times
+     *            sorted lookup times in nanoseconds
+     */
+    private void report ( final String label, final long[] times ) {
+        System.out.printf( "%s, %d rows: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", label, rows,
+                times[times.length / 2] / 1e6, times[(int) ( times.length * 0.99 )] / 1e6,
+                times[times.length - 1] / 1e6 );
+    }
+}
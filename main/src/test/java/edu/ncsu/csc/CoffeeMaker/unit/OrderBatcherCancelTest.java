@@ -0,0 +1,65 @@
+package edu.ncsu.csc.CoffeeMaker.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.CoffeeMaker.TestConfig;
+import edu.ncsu.csc.CoffeeMaker.models.Orders;
+import edu.ncsu.csc.CoffeeMaker.repositories.OrdersRepository;
+import edu.ncsu.csc.CoffeeMaker.services.OrderBatcher;
+import edu.ncsu.csc.CoffeeMaker.services.OrdersService;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class, properties = { "coffeemaker.orders.batch-window=1000" } )
+public class OrderBatcherCancelTest {
+
+    @Autowired
+    private OrderBatcher     batcher;
+
+    @Autowired
+    private OrdersService    service;
+
+    @Autowired
+    private OrdersRepository repository;
+
+    @BeforeEach
+    public void setup () {
+        repository.deleteAllInBatch();
+    }
+
+    @AfterEach
+    public void teardown () {
+        repository.deleteAllInBatch();
+    }
+
+    @Test
+    public void testCancelledOrderIsNotSaved () {
+        // The long batch window keeps both orders waiting until well after
+        // the first is cancelled
+        final CompletableFuture<Orders> cancelled = batcher.submit( new Orders( null, "Preparing" ) );
+        final CompletableFuture<Orders> kept = batcher.submit( new Orders( null, "Ready!" ) );
+        assertTrue( cancelled.cancel( false ) );
+        assertThrows( CancellationException.class, cancelled::join );
+
+        kept.join();
+        assertEquals( 1, service.count() );
+        assertEquals( "Ready!", service.findAll().get( 0 ).getStatus() );
+        // Too late to cancel an order that was saved
+        assertFalse( kept.cancel( false ) );
+    }
+}
@@ -0,0 +1,102 @@
+package edu.ncsu.csc.CoffeeMaker.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.CoffeeMaker.TestConfig;
+import edu.ncsu.csc.CoffeeMaker.models.Orders;
+import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.repositories.OrdersRepository;
+import edu.ncsu.csc.CoffeeMaker.services.OrderBatcher;
+import edu.ncsu.csc.CoffeeMaker.services.OrdersService;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+public class OrderBatcherTest {
+
+    @Autowired
+    private OrderBatcher     batcher;
+
+    @Autowired
+    private OrdersService    service;
+
+    @Autowired
+    private OrdersRepository repository;
+
+    @BeforeEach
+    public void setup () {
+        repository.deleteAllInBatch();
+    }
+
+    @AfterEach
+    public void teardown () {
+        repository.deleteAllInBatch();
+    }
+
+    @Test
+    public void testConcurrentSubmits () throws Exception {
+        final long batchesBefore = batcher.getBatches();
+        final ExecutorService pool = Executors.newFixedThreadPool( 8 );
+        final List<Future<Orders>> results = new ArrayList<Future<Orders>>();
+        for ( int i = 0; i < 500; i++ ) {
+            results.add( pool.submit( () -> batcher.submit( new Orders( null, "Preparing" ) ).join() ) );
+        }
+        for ( final Future<Orders> result : results ) {
+            assertNotNull( result.get().getId() );
+        }
+        pool.shutdown();
+
+        assertEquals( 500, service.count() );
+        final long batches = batcher.getBatches() - batchesBefore;
+        assertTrue( batches < 500, "Orders should have been committed together, took " + batches + " batches" );
+    }
+
+    @Test
+    public void testSubmitSavesOrder () {
+        final CompletableFuture<Orders> saved = batcher.submit( new Orders( null, "Preparing" ) );
+        final Orders order = saved.join();
+
+        final Orders found = service.findById( order.getId() );
+        assertNotNull( found );
+        assertEquals( "Preparing", found.getStatus() );
+    }
+
+    @Test
+    public void testFailedBatchRetriesEachOrder () {
+        // An order for a recipe that was never saved fails the whole batch
+        final CompletableFuture<Orders> bad = batcher.submit( new Orders( new Recipe(), "Preparing" ) );
+        final List<CompletableFuture<Orders>> good = new ArrayList<CompletableFuture<Orders>>();
+        for ( int i = 0; i < 5; i++ ) {
+            good.add( batcher.submit( new Orders( null, "Preparing" ) ) );
+        }
+
+        assertThrows( CompletionException.class, bad::join );
+        for ( final CompletableFuture<Orders> saved : good ) {
+            // The id handed back must be the one the order was stored under
+            final Orders order = saved.join();
+            final Orders found = service.findById( order.getId() );
+            assertNotNull( found, "No order stored under id " + order.getId() );
+        }
+        assertEquals( 5, service.count() );
+    }
+}
@@ -0,0 +1,52 @@
+package edu.ncsu.csc.CoffeeMaker.unit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import edu.ncsu.csc.CoffeeMaker.TestConfig;
+import edu.ncsu.csc.CoffeeMaker.services.OrderClaimer;
+
+/**
+ * Runs every OrderClaimerTest again with claims made through `SELECT ... FOR
+ * UPDATE SKIP LOCKED`. Skipped on databases that do not support it, such as
+ * MariaDB before 10.6, unless `coffeemaker.test.require-skip-locked` is set,
+ * as the `skip-locked` Maven profile does.
+ */
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class, properties = "coffeemaker.orders.skip-locked=on" )
+public class OrderClaimerSkipLockedTest extends OrderClaimerTest {
+
+    @Autowired
+    private DataSource   dataSource;
+
+    @Autowired
+    private OrderClaimer skipLockedClaimer;
+
+    @Value ( "${coffeemaker.test.require-skip-locked:false}" )
+    private boolean      required;
+
+    @BeforeEach
+    public void requireSkipLocked () throws Exception {
+        try ( Connection connection = dataSource.getConnection() ) {
+            final DatabaseMetaData meta = connection.getMetaData();
+            final boolean supported = OrderClaimer.supportsSkipLocked( meta.getDatabaseProductName(),
+                    meta.getDatabaseProductVersion() );
+            if ( required ) {
+                assertTrue( supported, "SKIP LOCKED is not supported by " + meta.getDatabaseProductVersion() );
+            }
+            assumeTrue( supported, "SKIP LOCKED is not supported by this database" );
+        }
+        assertTrue( skipLockedClaimer.isSkipLocked() );
+    }
+}
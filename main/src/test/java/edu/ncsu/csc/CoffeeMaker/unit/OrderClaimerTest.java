@@ -0,0 +1,160 @@
+package edu.ncsu.csc.CoffeeMaker.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.CoffeeMaker.TestConfig;
+import edu.ncsu.csc.CoffeeMaker.models.Orders;
+import edu.ncsu.csc.CoffeeMaker.services.FulfillmentQueue;
+import edu.ncsu.csc.CoffeeMaker.services.OrderClaimer;
+import edu.ncsu.csc.CoffeeMaker.services.OrdersService;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+public class OrderClaimerTest {
+
+    @Autowired
+    private OrderClaimer     claimer;
+
+    @Autowired
+    private OrdersService    service;
+
+    @Autowired
+    private FulfillmentQueue queue;
+
+    @Autowired
+    private JdbcTemplate     jdbc;
+
+    @BeforeEach
+    public void setup () {
+        service.deleteAll();
+    }
+
+    @AfterEach
+    public void teardown () {
+        service.deleteAll();
+    }
+
+    @Test
+    public void testClaimOldestByLane () {
+        final Orders walkIn = place( Orders.LANE_WALK_IN );
+        final Orders mobile1 = place( Orders.LANE_MOBILE );
+        final Orders mobile2 = place( Orders.LANE_MOBILE );
+        final Orders ready = place( Orders.LANE_MOBILE );
+        ready.setStatus( "Ready!" );
+        service.save( ready );
+
+        final List<Orders> claimed = claimer.claim( null, 2 );
+        assertEquals( 2, claimed.size() );
+        assertEquals( mobile1.getId(), claimed.get( 0 ).getId() );
+        assertEquals( mobile2.getId(), claimed.get( 1 ).getId() );
+        assertEquals( Orders.STATUS_BREWING, service.findById( mobile1.getId() ).getStatus() );
+        // The local queue no longer hands them out
+        assertEquals( 0, queue.size( Orders.LANE_MOBILE ) );
+
+        assertTrue( claimer.claim( Orders.LANE_MOBILE, 5 ).isEmpty() );
+        assertEquals( walkIn.getId(), claimer.claim( null, 5 ).get( 0 ).getId() );
+        assertTrue( claimer.claim( null, 5 ).isEmpty() );
+    }
+
+    @Test
+    public void testClaimByTimePlaced () {
+        // Each server numbers orders from its own block of ids, so a lower id
+        // can belong to a newer order
+        final Orders newer = place( Orders.LANE_WALK_IN );
+        final Orders older = place( Orders.LANE_WALK_IN );
+        jdbc.update( "UPDATE orders SET time_placed = ? WHERE id = ?", newer.getTimePlaced() + 60_000,
+                newer.getId() );
+
+        assertEquals( older.getId(), claimer.claim( null, 1 ).get( 0 ).getId() );
+        assertEquals( newer.getId(), claimer.claim( null, 1 ).get( 0 ).getId() );
+    }
+
+    @Test
+    public void testConcurrentClaimers () throws Exception {
+        final int orders = 300;
+        final List<Orders> placed = new ArrayList<Orders>();
+        for ( int i = 0; i < orders; i++ ) {
+            final Orders order = new Orders( null, Orders.STATUS_PREPARING );
+            order.setLane( i % 3 == 0 ? Orders.LANE_MOBILE : Orders.LANE_WALK_IN );
+            placed.add( order );
+        }
+        service.saveAll( placed );
+
+        // Each station keeps claiming small batches until nothing is left
+        final int stations = 12;
+        final ExecutorService pool = Executors.newFixedThreadPool( stations );
+        final List<Future<List<Long>>> results = new ArrayList<Future<List<Long>>>();
+        for ( int i = 0; i < stations; i++ ) {
+            final int count = 1 + i % 4;
+            results.add( pool.submit( (Callable<List<Long>>) () -> {
+                final List<Long> mine = new ArrayList<Long>();
+                List<Orders> batch = claimer.claim( null, count );
+                while ( !batch.isEmpty() ) {
+                    assertTrue( batch.size() <= count );
+                    batch.forEach( order -> mine.add( order.getId() ) );
+                    batch = claimer.claim( null, count );
+                }
+                return mine;
+            } ) );
+        }
+        final Set<Long> claimed = new HashSet<Long>();
+        for ( final Future<List<Long>> result : results ) {
+            for ( final Long id : result.get() ) {
+                assertTrue( claimed.add( id ), "Order " + id + " was claimed twice" );
+            }
+        }
+        pool.shutdown();
+
+        assertEquals( orders, claimed.size() );
+        for ( final Orders order : service.findAll() ) {
+            assertEquals( Orders.STATUS_BREWING, order.getStatus() );
+        }
+    }
+
+    @Test
+    public void testSupportsSkipLocked () {
+        assertTrue( OrderClaimer.supportsSkipLocked( "MySQL", "8.0.33" ) );
+        assertFalse( OrderClaimer.supportsSkipLocked( "MySQL", "5.7.42-log" ) );
+        assertTrue( OrderClaimer.supportsSkipLocked( "MariaDB", "10.6.12-MariaDB" ) );
+        assertTrue( OrderClaimer.supportsSkipLocked( "MySQL", "5.5.5-11.1.2-MariaDB" ) );
+        assertFalse( OrderClaimer.supportsSkipLocked( "MySQL", "5.5.5-10.4.31-MariaDB" ) );
+        assertFalse( OrderClaimer.supportsSkipLocked( "MySQL", "10.2.11-MariaDB" ) );
+        assertFalse( OrderClaimer.supportsSkipLocked( "H2", "1.4.200 (2019-10-14)" ) );
+    }
+
+    /**
+     * Saves a new order waiting in a lane.
+     *
+     * @param lane
+     *            lane of the order
+     * @return the order
+     */
+    private Orders place ( final String lane ) {
+        final Orders order = new Orders( null, Orders.STATUS_PREPARING );
+        order.setLane( lane );
+        service.save( order );
+        return order;
+    }
+}
@@ -16,6 +16,9 @@ import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
 import edu.ncsu.csc.CoffeeMaker.TestConfig;
 import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
 import edu.ncsu.csc.CoffeeMaker.models.Orders;
@@ -137,4 +140,22 @@ class OrdersTest {
         assertFalse( o2.hashCode() == o.hashCode() );
     }
 
+    @Test
+    @Transactional
+    void testToJson () {
+        final Orders o = new Orders( rService.findByName( "Latte" ), "Preparing your order" );
+        final User user1 = new User( "Tom", "123" );
+        o.setUser( user1 );
+
+        final JsonObject json = JsonParser.parseString( o.toJson() ).getAsJsonObject();
+        assertEquals( "Tom", json.getAsJsonObject( "user" ).get( "username" ).getAsString() );
+        assertFalse( json.getAsJsonObject( "user" ).has( "userOrders" ) );
+        assertEquals( "Latte", json.getAsJsonObject( "recipe" ).get( "name" ).getAsString() );
+        assertFalse( json.getAsJsonObject( "recipe" ).has( "ingredients" ) );
+
+        // Serializing again gives the same answer from the shared instance
+        assertEquals( o.toJson(), o.toJson() );
+        assertFalse( JsonParser.parseString( user1.toJson() ).getAsJsonObject().has( "userOrders" ) );
+    }
+
 }
@@ -0,0 +1,113 @@
+package edu.ncsu.csc.CoffeeMaker.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.CoffeeMaker.TestConfig;
+import edu.ncsu.csc.CoffeeMaker.models.Role;
+import edu.ncsu.csc.CoffeeMaker.models.User;
+import edu.ncsu.csc.CoffeeMaker.repositories.OrdersRepository;
+import edu.ncsu.csc.CoffeeMaker.security.PrincipalCache;
+import edu.ncsu.csc.CoffeeMaker.services.RoleService;
+import edu.ncsu.csc.CoffeeMaker.services.UserService;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class, properties = { "coffeemaker.security.principal-cache.ttl=200",
+        "coffeemaker.security.principal-cache.size=2" } )
+public class PrincipalCacheTest {
+
+    @Autowired
+    private PrincipalCache   cache;
+
+    @Autowired
+    private UserService      uService;
+
+    @Autowired
+    private RoleService      rService;
+
+    @Autowired
+    private OrdersRepository ordersRepository;
+
+    @BeforeEach
+    public void setup () {
+        ordersRepository.deleteAllInBatch();
+        uService.deleteAll();
+        rService.deleteAll();
+
+        final Role role = new Role();
+        role.setRoleName( "Customer" );
+        role.setMakeCoffee( true );
+        rService.save( role );
+        for ( final String name : new String[] { "alice", "bob", "carol" } ) {
+            final User user = new User( name, "pw" );
+            user.setRole( rService.findByName( "Customer" ) );
+            uService.save( user );
+        }
+    }
+
+    @AfterEach
+    public void teardown () {
+        uService.deleteAll();
+        rService.deleteAll();
+    }
+
+    @Test
+    public void testReadThrough () {
+        final long misses = cache.getMisses();
+        final User alice = uService.findPrincipal( "alice" );
+        assertEquals( "alice", alice.getUsername() );
+        assertEquals( "MAKE_COFFEE", alice.getAuthorities().iterator().next().getAuthority() );
+        assertSame( alice, uService.findPrincipal( "alice" ) );
+        assertEquals( misses + 1, cache.getMisses() );
+
+        assertNull( uService.findPrincipal( "nobody" ) );
+    }
+
+    @Test
+    public void testInvalidatedOnWrite () {
+        final User alice = uService.findPrincipal( "alice" );
+
+        final User changed = uService.findByName( "alice" );
+        changed.setPassword( "new" );
+        uService.save( changed );
+        assertEquals( "new", uService.findPrincipal( "alice" ).getPassword() );
+
+        final User before = uService.findPrincipal( "alice" );
+        final Role role = rService.findByName( "Customer" );
+        role.setAddIngredients( true );
+        rService.save( role );
+        final User after = uService.findPrincipal( "alice" );
+        assertNotSame( before, after );
+        assertEquals( 2, after.getAuthorities().size() );
+
+        uService.delete( uService.findByName( "alice" ) );
+        assertNull( uService.findPrincipal( "alice" ) );
+        assertNotSame( alice, after );
+    }
+
+    @Test
+    public void testExpiryAndSize () throws Exception {
+        final User alice = uService.findPrincipal( "alice" );
+        uService.findPrincipal( "bob" );
+        uService.findPrincipal( "carol" );
+        assertEquals( 2, cache.size() );
+
+        final User bob = uService.findPrincipal( "bob" );
+        Thread.sleep( 300 );
+        assertNotSame( bob, uService.findPrincipal( "bob" ) );
+        assertNotSame( alice, uService.findPrincipal( "alice" ) );
+    }
+
+}
@@ -0,0 +1,120 @@
+package edu.ncsu.csc.CoffeeMaker.unit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.CoffeeMaker.TestConfig;
+import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
+import edu.ncsu.csc.CoffeeMaker.models.Recipe;
+import edu.ncsu.csc.CoffeeMaker.models.RecipeSnapshot;
+import edu.ncsu.csc.CoffeeMaker.services.IngredientService;
+import edu.ncsu.csc.CoffeeMaker.services.RecipeCatalog;
+import edu.ncsu.csc.CoffeeMaker.services.RecipeService;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class, properties = { "coffeemaker.recipes.cache-size=2" } )
+public class RecipeCatalogTest {
+
+    @Autowired
+    private RecipeCatalog     catalog;
+
+    @Autowired
+    private RecipeService     rService;
+
+    @Autowired
+    private IngredientService iService;
+
+    @BeforeEach
+    public void setup () {
+        rService.deleteAll();
+        iService.deleteAll();
+
+        iService.save( new Ingredient( "Coffee", 100 ) );
+        iService.save( new Ingredient( "Milk", 100 ) );
+        for ( final String name : new String[] { "Coffee", "Latte", "Mocha" } ) {
+            final Recipe r = new Recipe();
+            r.setName( name );
+            r.setPrice( 5 );
+            rService.save( r );
+            r.addIngredient( iService.findByName( "Coffee" ), 3 );
+            r.addIngredient( iService.findByName( "Milk" ), 1 );
+            rService.save( r );
+        }
+    }
+
+    @Test
+    public void testReadThrough () {
+        final long misses = catalog.getMisses();
+        final long hits = catalog.getHits();
+
+        final RecipeSnapshot latte = catalog.findByName( "Latte" );
+        assertEquals( "Latte", latte.getName() );
+        assertEquals( 5, latte.getPrice() );
+        assertEquals( 2, latte.getIngredients().size() );
+        assertEquals( misses + 1, catalog.getMisses() );
+
+        assertSame( latte, catalog.findByName( "Latte" ) );
+        assertSame( latte, catalog.findById( latte.getId() ) );
+        assertEquals( hits + 2, catalog.getHits() );
+
+        assertNull( catalog.findByName( "Espresso" ) );
+        assertEquals( 3, catalog.findAll().size() );
+    }
+
+    @Test
+    public void testIgnoresCase () {
+        final RecipeSnapshot mocha = catalog.findByName( "mocha" );
+        assertEquals( "Mocha", mocha.getName() );
+
+        final long misses = catalog.getMisses();
+        assertSame( mocha, catalog.findByName( "Mocha" ) );
+        assertSame( mocha, catalog.findByName( "MOCHA" ) );
+        assertEquals( misses, catalog.getMisses() );
+        assertEquals( 1, catalog.size() );
+    }
+
+    @Test
+    public void testInvalidatedOnWrite () {
+        assertEquals( 5, catalog.findByName( "Latte" ).getPrice() );
+        assertEquals( 3, catalog.findAll().size() );
+
+        final Recipe latte = rService.findByName( "Latte" );
+        latte.setPrice( 7 );
+        rService.save( latte );
+        assertEquals( 7, catalog.findByName( "Latte" ).getPrice() );
+
+        rService.delete( rService.findByName( "Mocha" ) );
+        assertNull( catalog.findByName( "Mocha" ) );
+        assertEquals( 2, catalog.findAll().size() );
+    }
+
+    @Test
+    public void testEviction () {
+        final long evictions = catalog.getEvictions();
+        catalog.findByName( "Coffee" );
+        catalog.findByName( "Latte" );
+        // Touch Coffee so that Latte is the least recently used
+        catalog.findByName( "Coffee" );
+        catalog.findByName( "Mocha" );
+
+        assertEquals( 2, catalog.size() );
+        assertEquals( evictions + 1, catalog.getEvictions() );
+
+        final long misses = catalog.getMisses();
+        catalog.findByName( "Coffee" );
+        assertEquals( misses, catalog.getMisses() );
+        catalog.findByName( "Latte" );
+        assertEquals( misses + 1, catalog.getMisses() );
+    }
+
+}
@@ -16,6 +16,9 @@ import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
 import edu.ncsu.csc.CoffeeMaker.TestConfig;
 import edu.ncsu.csc.CoffeeMaker.models.Ingredient;
 import edu.ncsu.csc.CoffeeMaker.models.Recipe;
@@ -151,4 +154,21 @@ public class RecipeTest {
         final Recipe r2 = new Recipe();
         assertTrue( r1.equals( r2 ) );
     }
+
+    @Test
+    @Transactional
+    public void testToJsonEscapes () {
+        final Recipe r1 = new Recipe();
+        r1.setName( "The \"Big\" One\\" );
+        r1.setPrice( 5 );
+        r1.addIngredient( new Ingredient( "Caf\u00e9 <Blend>", 100 ), 2 );
+
+        final JsonObject json = JsonParser.parseString( r1.toJson() ).getAsJsonObject();
+        assertTrue( json.get( "id" ).isJsonNull() );
+        assertEquals( "The \"Big\" One\\", json.get( "name" ).getAsString() );
+        assertEquals( 5, json.get( "price" ).getAsInt() );
+        final JsonObject rti = json.getAsJsonArray( "ingredients" ).get( 0 ).getAsJsonObject();
+        assertEquals( "Caf\u00e9 <Blend>", rti.getAsJsonObject( "ingredient" ).get( "name" ).getAsString() );
+        assertEquals( 2, rti.get( "count" ).getAsInt() );
+    }
 }
@@ -66,6 +66,9 @@ public class RoleTest {
         assertEquals( "Manager", r1.getRoleName() );
 
         assertEquals( r1.getAuthorities().get( 0 ).getAuthority(), "MAKE_COFFEE" );
+        assertEquals( 4, r1.getAuthorities().size() );
+        // Built once and reused until a permission changes
+        assertTrue( r1.getAuthorities() == r1.getAuthorities() );
 
         r1.setAddIngredients( false );
         r1.setAddIngredientType( false );
@@ -79,6 +82,7 @@ public class RoleTest {
         assertFalse( r1.getAddStaffAccount() );
         assertFalse( r1.getMakeCoffee() );
         assertEquals( "Customer", r1.getRoleName() );
+        assertTrue( r1.getAuthorities().isEmpty() );
 
     }
 
@@ -0,0 +1,54 @@
+package edu.ncsu.csc.CoffeeMaker.unit;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import edu.ncsu.csc.CoffeeMaker.CoffeeMakerApplication;
+
+/**
+ * Measures how long the application takes to start with each way Hibernate
+ * can treat the schema. Slow, so only run on request:
+ * `mvn test -Dtest=StartupTimeTest -Dcoffeemaker.loadtest=true`
+ */
+@EnabledIfSystemProperty ( named = "coffeemaker.loadtest", matches = "true" )
+public class StartupTimeTest {
+
+    /** Starts timed for each setting */
+    private static final int RUNS = 5;
+
+    @Test
+    public void testStartupTime () {
+        // The first start in a JVM pays for class loading; leave it out
+        start( "validate" );
+        for ( final String mode : new String[] { "update", "validate", "none" } ) {
+            final long[] times = new long[RUNS];
+            for ( int i = 0; i < RUNS; i++ ) {
+                times[i] = start( mode );
+            }
+            Arrays.sort( times );
+            System.out.printf( "ddl-auto %-8s median %d ms, min %d ms%n", mode, times[RUNS / 2], times[0] );
+        }
+    }
+
+    /**
+     * Starts and stops the application.
+     *
+     * @param mode
+     *            value for `spring.jpa.hibernate.ddl-auto`
+     * @return milliseconds until the application was ready
+     */
+    private long start ( final String mode ) {
+        final long start = System.nanoTime();
+        // Arguments rather than default properties, which application.yml
+        // would override
+        final ConfigurableApplicationContext context = new SpringApplicationBuilder( CoffeeMakerApplication.class )
+                .run( "--spring.jpa.hibernate.ddl-auto=" + mode, "--server.port=0", "--spring.jpa.show-sql=false" );
+        final long elapsed = ( System.nanoTime() - start ) / 1_000_000;
+        context.close();
+        return elapsed;
+    }
+}